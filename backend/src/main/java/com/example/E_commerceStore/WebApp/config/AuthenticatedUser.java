@@ -0,0 +1,55 @@
+package com.example.E_commerceStore.WebApp.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.Principal;
+import java.util.Optional;
+
+/**
+ * 🔑 ผู้ใช้ที่ยืนยันตัวตนด้วย JWT (Authorization: Bearer)
+ *
+ * Built by JwtAuthenticationFilter from the token's claims alone, so reading
+ * the current user id costs no session lookup and no database query.
+ */
+public record AuthenticatedUser(Long id, String email, String role) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    /**
+     * ผู้ใช้จาก JWT ของ request ปัจจุบัน (ถ้ามี)
+     */
+    public static Optional<AuthenticatedUser> current() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return Optional.of(user);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * user id ของ request: จาก JWT ก่อน แล้วค่อยดู session เดิม (ไม่สร้าง session ใหม่)
+     */
+    public static Long currentUserId(HttpServletRequest request) {
+        Optional<AuthenticatedUser> user = current();
+        if (user.isPresent()) {
+            return user.get().id();
+        }
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        Object userId = session.getAttribute("userId");
+        if (userId instanceof Long id) {
+            return id;
+        }
+        return session.getAttribute("user") instanceof com.example.E_commerceStore.WebApp.model.User sessionUser
+            ? sessionUser.getId()
+            : null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.E_commerceStore.WebApp.config;
+
+import com.example.E_commerceStore.WebApp.util.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Id generator ต่อ node: แต่ละ instance ต้องตั้ง app.id.node-id ไม่ซ้ำกัน (0-1023)
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(@Value("${app.id.node-id:0}") long nodeId) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(nodeId);
+        SnowflakeIdGenerator.setDefault(generator);
+        return generator;
+    }
+}
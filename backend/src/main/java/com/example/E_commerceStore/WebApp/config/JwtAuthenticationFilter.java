@@ -0,0 +1,94 @@
+package com.example.E_commerceStore.WebApp.config;
+
+import com.example.E_commerceStore.WebApp.model.UserRole;
+import com.example.E_commerceStore.WebApp.service.UserRoleService;
+import com.example.E_commerceStore.WebApp.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 🔐 ยืนยันตัวตนจาก Authorization: Bearer &lt;JWT&gt; แบบ stateless
+ *
+ * The token is verified once and its uid claim becomes an AuthenticatedUser in
+ * the SecurityContext for this request only; nothing is written to the session,
+ * so any node can serve the request. The role claim must match users.role
+ * (cached briefly by UserRoleService): authorities always come from the table.
+ * A missing, invalid or expired token, a deleted user or a role mismatch leaves
+ * the request anonymous and the session-based login still applies.
+ * Registered inside the security chain by SecurityConfig, not as a servlet filter.
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtUtil jwtUtil;
+    private final UserRoleService userRoleService;
+
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserRoleService userRoleService) {
+        this.jwtUtil = jwtUtil;
+        this.userRoleService = userRoleService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            AuthenticatedUser user = verifyRole(toUser(jwtUtil.parseAccessToken(header.substring(BEARER_PREFIX.length()).trim())));
+            if (user != null) {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    user, null, authorities(user.role()));
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(authentication);
+                SecurityContextHolder.setContext(context);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    // the claim is not trusted on its own: it must still be the user's role in the database
+    private AuthenticatedUser verifyRole(AuthenticatedUser user) {
+        if (user == null) {
+            return null;
+        }
+        Optional<UserRole> role = userRoleService.getRole(user.id());
+        if (role.isEmpty() || !role.get().name().equals(user.role())) {
+            return null;
+        }
+        return user;
+    }
+
+    // tokens issued before the uid claim existed carry no id: treat them as anonymous
+    private static AuthenticatedUser toUser(Claims claims) {
+        if (claims == null) {
+            return null;
+        }
+        Long id = claims.get(JwtUtil.USER_ID_CLAIM, Long.class);
+        String role = claims.get(JwtUtil.ROLE_CLAIM, String.class);
+        if (id == null || role == null) {
+            return null;
+        }
+        return new AuthenticatedUser(id, claims.getSubject(), role);
+    }
+
+    // every signed-in user is a USER (CUSTOMER is the legacy name); ADMIN/MODERATOR add their own role
+    private static List<SimpleGrantedAuthority> authorities(String role) {
+        Set<String> roles = new LinkedHashSet<>(List.of("ROLE_USER", "ROLE_" + role));
+        return roles.stream().map(SimpleGrantedAuthority::new).toList();
+    }
+}
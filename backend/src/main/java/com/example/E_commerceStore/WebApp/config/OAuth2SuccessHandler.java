@@ -80,7 +80,7 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
             System.out.println("💾 User saved to database!");
             
             // Generate JWT token
-            String token = jwtUtil.generateToken(user.getEmail());
+            String token = jwtUtil.generateToken(user);
             
             // 🔑 เซ็ต Session หลังจาก OAuth2 login สำเร็จ
             // ไม่ต้อง invalidate session เพราะ Spring Security จัดการให้แล้ว
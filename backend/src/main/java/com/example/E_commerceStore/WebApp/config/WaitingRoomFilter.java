@@ -0,0 +1,85 @@
+package com.example.E_commerceStore.WebApp.config;
+
+import com.example.E_commerceStore.WebApp.service.WaitingRoomService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Admission control in front of checkout and cart mutations.
+ *
+ * When the waiting room is enabled, guarded requests need an admitted
+ * X-Queue-Token issued to the same user (or guest session); everyone else gets
+ * a 429 with their queue position, built from memory without reaching the
+ * controllers or the database.
+ */
+@Component
+public class WaitingRoomFilter extends OncePerRequestFilter {
+
+    public static final String TOKEN_HEADER = "X-Queue-Token";
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Value("${app.waiting-room.guarded-paths:/api/orders/checkout,/api/session-cart,/api/cart,/api/payments/create-intent}")
+    private List<String> guardedPaths;
+
+    /**
+     * ผู้ถือ token: user id ถ้าล็อกอินแล้ว ไม่งั้น session ของ guest (null ถ้ายังไม่มี session และไม่ได้ขอให้สร้าง)
+     */
+    public static String subjectOf(HttpServletRequest request, boolean createSession) {
+        Long userId = AuthenticatedUser.currentUserId(request);
+        if (userId != null) {
+            return "user:" + userId;
+        }
+        HttpSession session = request.getSession(createSession);
+        return session != null ? "session:" + session.getId() : null;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!waitingRoomService.isEnabled()) {
+            return true;
+        }
+        String method = request.getMethod();
+        if ("GET".equals(method) || "OPTIONS".equals(method) || "HEAD".equals(method)) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        return guardedPaths.stream().noneMatch(path::startsWith);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = request.getHeader(TOKEN_HEADER);
+        String subject = subjectOf(request, false);
+        if (waitingRoomService.isAdmitted(token, subject)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long ticket = waitingRoomService.parseTicket(token, subject);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader("Retry-After", String.valueOf(ticket > 0 ? Math.max(1, waitingRoomService.getEstimatedWaitSeconds(ticket)) : 1));
+        if (ticket > 0) {
+            response.getWriter().write("{\"success\":false,\"queued\":true,\"position\":" + waitingRoomService.getPosition(ticket)
+                + ",\"estimatedWaitSeconds\":" + waitingRoomService.getEstimatedWaitSeconds(ticket) + "}");
+        } else {
+            response.getWriter().write("{\"success\":false,\"queued\":false,"
+                + "\"message\":\"Join the waiting room at /api/waiting-room/join first\"}");
+        }
+    }
+}
@@ -49,7 +49,7 @@ public class AuthController {
             );
             
             // Generate JWT token
-            String token = jwtUtil.generateToken(user.getEmail());
+            String token = jwtUtil.generateToken(user);
             
             // Store user in session
             session.setAttribute("user", user);
@@ -78,7 +78,7 @@ public class AuthController {
             User user = userService.authenticate(request.getEmail(), request.getPassword());
             
             // Generate JWT token
-            String token = jwtUtil.generateToken(user.getEmail());
+            String token = jwtUtil.generateToken(user);
             
             // Store user in session
             session.setAttribute("user", user);
@@ -282,7 +282,7 @@ public class AuthController {
             User user = userService.createOrUpdateOAuth2User(email, firstName, lastName, provider, providerId);
             
             // Generate JWT token
-            String token = jwtUtil.generateToken(user.getEmail());
+            String token = jwtUtil.generateToken(user);
             
             // Store user in session
             session.setAttribute("user", user);
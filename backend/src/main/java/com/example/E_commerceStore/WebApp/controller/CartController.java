@@ -1,12 +1,14 @@
 package com.example.E_commerceStore.WebApp.controller;
 
 import com.example.E_commerceStore.WebApp.model.Cart;
-import com.example.E_commerceStore.WebApp.model.CartItem;
 import com.example.E_commerceStore.WebApp.model.Product;
 import com.example.E_commerceStore.WebApp.model.User;
 import com.example.E_commerceStore.WebApp.service.CartService;
 import com.example.E_commerceStore.WebApp.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,6 +18,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import static com.example.E_commerceStore.WebApp.controller.CartVersionHeaders.parseIfMatch;
+import static com.example.E_commerceStore.WebApp.controller.CartVersionHeaders.withVersion;
+
 @RestController
 @RequestMapping("/api/cart")
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"})
@@ -31,7 +36,8 @@ public class CartController {
      * เพิ่มสินค้าลงตะกร้า
      */
     @PostMapping("/add")
-    public ResponseEntity<?> addToCart(@RequestBody AddToCartRequest request) {
+    public ResponseEntity<?> addToCart(@RequestBody AddToCartRequest request,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             Optional<User> userOpt = userService.findById(request.getUserId());
             if (userOpt.isEmpty()) {
@@ -39,9 +45,11 @@ public class CartController {
             }
             
             User user = userOpt.get();
-            CartItem cartItem = cartService.addToCart(user, request.getProductId(), request.getQuantity());
+            CartService.CartItemChange change = cartService.addToCart(user, request.getProductId(), request.getQuantity(), parseIfMatch(ifMatch));
             
-            return ResponseEntity.ok(cartItem);
+            return withVersion(ResponseEntity.ok(), change.version()).body(change.cartItem());
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflict(request.getUserId());
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -58,18 +66,10 @@ public class CartController {
                 return ResponseEntity.badRequest().body("User not found");
             }
             
-            User user = userOpt.get();
-            Cart cart = cartService.getUserCart(user);
-            
             // สร้างข้อมูลสรุปตะกร้า
-            Map<String, Object> cartSummary = new HashMap<>();
-            cartSummary.put("cart", cart);
-            cartSummary.put("items", cart.getCartItems());
-            cartSummary.put("totalItems", cart.getTotalItems());
-            cartSummary.put("totalAmount", cart.getTotalAmount());
-            cartSummary.put("isEmpty", cart.isEmpty());
+            Map<String, Object> cartSummary = buildCartSummary(userOpt.get());
             
-            return ResponseEntity.ok(cartSummary);
+            return withVersion(ResponseEntity.ok(), (Long) cartSummary.get("version")).body(cartSummary);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error retrieving cart: " + e.getMessage());
         }
@@ -81,7 +81,8 @@ public class CartController {
     @PutMapping("/item/{cartItemId}")
     public ResponseEntity<?> updateCartItem(
             @PathVariable Long cartItemId,
-            @RequestBody UpdateCartRequest request) {
+            @RequestBody UpdateCartRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             Optional<User> userOpt = userService.findById(request.getUserId());
             if (userOpt.isEmpty()) {
@@ -89,9 +90,11 @@ public class CartController {
             }
             
             User user = userOpt.get();
-            CartItem cartItem = cartService.updateCartItem(user, cartItemId, request.getQuantity());
+            CartService.CartItemChange change = cartService.updateCartItem(user, cartItemId, request.getQuantity(), parseIfMatch(ifMatch));
             
-            return ResponseEntity.ok(cartItem);
+            return withVersion(ResponseEntity.ok(), change.version()).body(change.cartItem());
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflict(request.getUserId());
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -103,7 +106,8 @@ public class CartController {
     @DeleteMapping("/item/{cartItemId}")
     public ResponseEntity<?> removeFromCart(
             @PathVariable Long cartItemId,
-            @RequestParam Long userId) {
+            @RequestParam Long userId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             Optional<User> userOpt = userService.findById(userId);
             if (userOpt.isEmpty()) {
@@ -111,9 +115,11 @@ public class CartController {
             }
             
             User user = userOpt.get();
-            cartService.removeFromCart(user, cartItemId);
+            Long version = cartService.removeFromCart(user, cartItemId, parseIfMatch(ifMatch));
             
-            return ResponseEntity.ok("Item removed from cart successfully");
+            return withVersion(ResponseEntity.ok(), version).body("Item removed from cart successfully");
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflict(userId);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -123,7 +129,8 @@ public class CartController {
      * ล้างตะกร้าทั้งหมด
      */
     @DeleteMapping("/{userId}")
-    public ResponseEntity<?> clearCart(@PathVariable Long userId) {
+    public ResponseEntity<?> clearCart(@PathVariable Long userId,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             Optional<User> userOpt = userService.findById(userId);
             if (userOpt.isEmpty()) {
@@ -131,9 +138,11 @@ public class CartController {
             }
             
             User user = userOpt.get();
-            cartService.clearCart(user);
+            Long version = cartService.clearCart(user, parseIfMatch(ifMatch));
             
-            return ResponseEntity.ok("Cart cleared successfully");
+            return withVersion(ResponseEntity.ok(), version).body("Cart cleared successfully");
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflict(userId);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -192,6 +201,33 @@ public class CartController {
         }
     }
     
+    private Map<String, Object> buildCartSummary(User user) {
+        Cart cart = cartService.getUserCart(user);
+        
+        Map<String, Object> cartSummary = new HashMap<>();
+        cartSummary.put("cart", cart);
+        cartSummary.put("items", cart.getCartItems());
+        cartSummary.put("totalItems", cart.getTotalItems());
+        cartSummary.put("totalAmount", cart.getTotalAmount());
+        cartSummary.put("isEmpty", cart.isEmpty());
+        cartSummary.put("version", cart.getVersion());
+        return cartSummary;
+    }
+    
+    /**
+     * ตะกร้าถูกแก้จากที่อื่น: ตอบ 409 พร้อมตะกร้าล่าสุดและเวอร์ชัน (ETag) ให้ client merge หรือ reload
+     */
+    private ResponseEntity<?> conflict(Long userId) {
+        Optional<User> userOpt = userService.findById(userId);
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+        Map<String, Object> response = buildCartSummary(userOpt.get());
+        response.put("conflict", true);
+        response.put("message", "Cart was modified by another session. Please reload the cart and try again.");
+        return withVersion(ResponseEntity.status(HttpStatus.CONFLICT), (Long) response.get("version")).body(response);
+    }
+
     // Request DTOs
     public static class AddToCartRequest {
         private Long userId;
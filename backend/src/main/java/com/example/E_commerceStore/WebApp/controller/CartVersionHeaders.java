@@ -0,0 +1,36 @@
+package com.example.E_commerceStore.WebApp.controller;
+
+import org.springframework.http.ResponseEntity;
+
+/**
+ * เวอร์ชันตะกร้าใน HTTP header: ส่งออกเป็น ETag และรับกลับมาทาง If-Match
+ * (ใช้ร่วมกันระหว่าง CartController และ SessionCartController)
+ */
+final class CartVersionHeaders {
+
+    private CartVersionHeaders() {
+    }
+
+    static ResponseEntity.BodyBuilder withVersion(ResponseEntity.BodyBuilder builder, Long version) {
+        return version != null ? builder.eTag("\"" + version + "\"") : builder;
+    }
+
+    /**
+     * แปลงค่า If-Match (เช่น "3" หรือ W/"3") เป็นเวอร์ชันตะกร้า; ไม่ส่งมาหรือ * = ไม่ตรวจ
+     */
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        value = value.replace("\"", "");
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid If-Match header: " + ifMatch);
+        }
+    }
+}
@@ -1,69 +1,87 @@
 package com.example.E_commerceStore.WebApp.controller;
 
+import com.example.E_commerceStore.WebApp.config.AuthenticatedUser;
+import com.example.E_commerceStore.WebApp.dto.CommentDTO;
+import com.example.E_commerceStore.WebApp.dto.RatingSummary;
 import com.example.E_commerceStore.WebApp.model.Comment;
 import com.example.E_commerceStore.WebApp.model.User;
+import com.example.E_commerceStore.WebApp.repository.UserRepository;
 import com.example.E_commerceStore.WebApp.service.CommentService;
+import com.example.E_commerceStore.WebApp.service.CommentStreamService;
+import com.example.E_commerceStore.WebApp.service.CommentVoteService;
+import com.example.E_commerceStore.WebApp.service.LatestCommentFeedService;
 import com.example.E_commerceStore.WebApp.service.OrderService;
+import com.example.E_commerceStore.WebApp.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/comments")
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174", "http://localhost:5175"}, allowCredentials = "true")
 public class CommentController {
     
+    // helpful_score changes as votes come in, so a (created_at, id) cursor cannot page that order
+    private static final String HELPFUL_CURSOR_ERROR = "cursor is not supported with sort=helpful, use page and size";
+    
     @Autowired
     private CommentService commentService;
     
     @Autowired
     private OrderService orderService;
     
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private CommentVoteService commentVoteService;
+    
+    @Autowired
+    private CommentStreamService commentStreamService;
+    
+    @Autowired
+    private LatestCommentFeedService latestCommentFeedService;
+    
     /**
      * เพิ่ม comment ใหม่ให้สินค้า
      */
     @PostMapping("/product/{productId}")
     public ResponseEntity<?> addComment(
-            @AuthenticationPrincipal OAuth2User principal,
+            HttpServletRequest httpRequest,
             @PathVariable Long productId,
-            @RequestBody CommentRequest request,
-            HttpSession session) {
+            @RequestBody CommentRequest request) {
         
-        if (principal == null) {
+        User user = currentUser(httpRequest);
+        if (user == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
         }
         
         try {
-            Long userId = (Long) session.getAttribute("userId");
-            if (userId == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(Map.of("error", "Session not found"));
-            }
-            
             // ตรวจสอบว่าผู้ใช้ซื้อสินค้านี้แล้วหรือยัง
-            boolean hasPurchased = orderService.hasUserPurchasedProduct(userId, productId);
+            boolean hasPurchased = orderService.hasUserPurchasedProduct(user.getId(), productId);
             if (!hasPurchased) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "You can only review products you have purchased"));
             }
             
-            User user = getCurrentUser(principal);
             Comment comment = commentService.addComment(user, productId, request.getContent(), request.getRating());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Review submitted successfully");
+            response.put("message", comment.isApproved()
+                ? "Review submitted successfully"
+                : "Review submitted and is waiting for moderation");
+            response.put("moderationStatus", comment.getModerationStatus());
             response.put("comment", comment);
             
             return ResponseEntity.ok(response);
@@ -77,16 +95,16 @@ public class CommentController {
      */
     @PostMapping("/{commentId}/reply")
     public ResponseEntity<?> addReply(
-            @AuthenticationPrincipal OAuth2User principal,
+            HttpServletRequest httpRequest,
             @PathVariable Long commentId,
             @RequestBody CommentRequest request) {
         
-        if (principal == null) {
+        User user = currentUser(httpRequest);
+        if (user == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
         }
         
         try {
-            User user = getCurrentUser(principal);
             Comment reply = commentService.addReply(user, commentId, request.getContent());
             return ResponseEntity.ok(reply);
         } catch (RuntimeException e) {
@@ -99,17 +117,17 @@ public class CommentController {
      */
     @PutMapping("/{commentId}")
     public ResponseEntity<?> updateComment(
-            @AuthenticationPrincipal OAuth2User principal,
+            HttpServletRequest httpRequest,
             @PathVariable Long commentId,
             @RequestBody CommentRequest request) {
         
-        if (principal == null) {
+        User user = currentUser(httpRequest);
+        if (user == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
         }
         
         try {
-            User user = getCurrentUser(principal);
-            Comment comment = commentService.updateComment(user, commentId, request.getContent());
+            Comment comment = commentService.updateComment(user, commentId, request.getContent(), request.getRating());
             return ResponseEntity.ok(comment);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -121,15 +139,15 @@ public class CommentController {
      */
     @DeleteMapping("/{commentId}")
     public ResponseEntity<?> deleteComment(
-            @AuthenticationPrincipal OAuth2User principal,
+            HttpServletRequest httpRequest,
             @PathVariable Long commentId) {
         
-        if (principal == null) {
+        User user = currentUser(httpRequest);
+        if (user == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
         }
         
         try {
-            User user = getCurrentUser(principal);
             commentService.deleteComment(user, commentId);
             return ResponseEntity.ok(Map.of("message", "Comment deleted successfully"));
         } catch (RuntimeException e) {
@@ -138,35 +156,62 @@ public class CommentController {
     }
     
     /**
-     * ดู comments ของสินค้า (แบบ pagination)
+     * ดู comments ของสินค้า (แบบ pagination) พร้อม replies ซ้อนใน "replies"
+     * ส่ง cursor (ว่างได้สำหรับหน้าแรก) เพื่อใช้ keyset pagination แทน page
+     * sort=helpful เรียงตามคะแนนโหวตว่ามีประโยชน์ (ใช้ page/size เท่านั้น ส่ง cursor มาจะได้ 400)
      */
     @GetMapping("/product/{productId}")
     @PreAuthorize("permitAll()")
     public ResponseEntity<?> getProductComments(
             @PathVariable Long productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "newest") String sort,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
         try {
-            Page<Comment> comments = commentService.getProductComments(productId, page, size);
+            boolean byHelpful = isHelpfulSort(sort);
+            if (cursor != null && byHelpful) {
+                return ResponseEntity.badRequest().body(Map.of("error", HELPFUL_CURSOR_ERROR));
+            }
+            if (cursor != null) {
+                int limit = pageLimit(size);
+                return ResponseEntity.ok(keysetPage(
+                    commentService.getProductCommentThreadsBefore(productId, null, KeysetCursor.decode(cursor), limit + 1), limit));
+            }
+            Page<CommentDTO> comments = commentService.getProductCommentThreads(productId, null, byHelpful, page, Math.min(size, 100));
             return ResponseEntity.ok(comments);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
     
+    /**
+     * รับรีวิวใหม่ของสินค้าแบบ live (Server-Sent Events: comment-created / reply-created)
+     */
+    @GetMapping(value = "/product/{productId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<?> streamProductComments(@PathVariable Long productId) {
+        try {
+            return ResponseEntity.ok(commentStreamService.subscribe(productId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     /**
      * ดู comment เดียว พร้อม replies
      */
     @GetMapping("/{commentId}")
     public ResponseEntity<?> getComment(@PathVariable Long commentId) {
         try {
-            Comment comment = commentService.getComment(commentId);
-            List<Comment> replies = commentService.getCommentReplies(commentId);
+            CommentDTO comment = commentService.getCommentThread(commentId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("comment", comment);
-            response.put("replies", replies);
+            response.put("replies", comment.replies);
             
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
@@ -180,28 +225,80 @@ public class CommentController {
     @GetMapping("/{commentId}/replies")
     public ResponseEntity<?> getCommentReplies(@PathVariable Long commentId) {
         try {
-            List<Comment> replies = commentService.getCommentReplies(commentId);
+            List<CommentDTO> replies = commentService.getCommentThread(commentId).replies;
             return ResponseEntity.ok(replies);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
     
+    /**
+     * โหวตว่ารีวิวมีประโยชน์หรือไม่ body: {"helpful": true | false}
+     */
+    @PostMapping("/{commentId}/vote")
+    public ResponseEntity<?> voteComment(
+            @PathVariable Long commentId,
+            @RequestBody Map<String, Boolean> request,
+            HttpServletRequest httpRequest) {
+        
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Authentication required"));
+        }
+        Boolean helpful = request.get("helpful");
+        if (helpful == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "helpful must be true or false"));
+        }
+        
+        try {
+            commentVoteService.vote(userId, commentId, helpful);
+            return ResponseEntity.ok(Map.of("success", true, "commentId", commentId, "helpful", helpful));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * ยกเลิกโหวตรีวิว
+     */
+    @DeleteMapping("/{commentId}/vote")
+    public ResponseEntity<?> removeVote(@PathVariable Long commentId, HttpServletRequest httpRequest) {
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Authentication required"));
+        }
+        
+        try {
+            commentVoteService.vote(userId, commentId, null);
+            return ResponseEntity.ok(Map.of("success", true, "commentId", commentId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     /**
      * ดู comments ของ user
      */
     @GetMapping("/user/my-comments")
     public ResponseEntity<?> getMyComments(
-            @AuthenticationPrincipal OAuth2User principal,
+            HttpServletRequest httpRequest,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        if (principal == null) {
+        User user = currentUser(httpRequest);
+        if (user == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
         }
         
         try {
-            User user = getCurrentUser(principal);
+            if (cursor != null) {
+                int limit = pageLimit(size);
+                return ResponseEntity.ok(keysetPage(
+                    commentService.getUserCommentsBefore(user.getId(), KeysetCursor.decode(cursor), limit + 1), limit));
+            }
             Page<Comment> comments = commentService.getUserComments(user.getId(), page, size);
             return ResponseEntity.ok(comments);
         } catch (Exception e) {
@@ -229,14 +326,27 @@ public class CommentController {
     @GetMapping("/product/{productId}/rating/{rating}")
     public ResponseEntity<?> getCommentsByRating(
             @PathVariable Long productId,
-            @PathVariable Integer rating) {
+            @PathVariable Integer rating,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
         
         try {
             if (rating < 1 || rating > 5) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Rating must be between 1 and 5"));
             }
+            boolean byHelpful = isHelpfulSort(sort);
+            if (cursor != null && byHelpful) {
+                return ResponseEntity.badRequest().body(Map.of("error", HELPFUL_CURSOR_ERROR));
+            }
+            if (cursor != null) {
+                int limit = pageLimit(size);
+                return ResponseEntity.ok(keysetPage(
+                    commentService.getProductCommentThreadsBefore(productId, rating, KeysetCursor.decode(cursor), limit + 1), limit));
+            }
             
-            List<Comment> comments = commentService.getCommentsByRating(productId, rating);
+            List<CommentDTO> comments = commentService.getProductCommentThreads(productId, rating, byHelpful, page, Math.min(size, 100)).getContent();
             return ResponseEntity.ok(comments);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -248,11 +358,17 @@ public class CommentController {
      */
     @GetMapping("/latest")
     public ResponseEntity<?> getLatestComments(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
         try {
-            Page<Comment> comments = commentService.getLatestComments(page, size);
+            if (cursor != null) {
+                int limit = pageLimit(size);
+                return ResponseEntity.ok(keysetPage(
+                    latestCommentFeedService.getBefore(KeysetCursor.decode(cursor), limit + 1), limit));
+            }
+            Page<CommentDTO> comments = latestCommentFeedService.getPage(Math.max(page, 0), pageLimit(size));
             return ResponseEntity.ok(comments);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -264,15 +380,15 @@ public class CommentController {
      */
     @GetMapping("/product/{productId}/user-commented")
     public ResponseEntity<?> hasUserCommented(
-            @AuthenticationPrincipal OAuth2User principal,
+            HttpServletRequest httpRequest,
             @PathVariable Long productId) {
         
-        if (principal == null) {
+        User user = currentUser(httpRequest);
+        if (user == null) {
             return ResponseEntity.ok(Map.of("hasCommented", false));
         }
         
         try {
-            User user = getCurrentUser(principal);
             boolean hasCommented = commentService.hasUserCommented(user.getId(), productId);
             return ResponseEntity.ok(Map.of("hasCommented", hasCommented));
         } catch (Exception e) {
@@ -287,41 +403,12 @@ public class CommentController {
     @PreAuthorize("permitAll()")
     public ResponseEntity<?> getProductRating(@PathVariable Long productId) {
         try {
-            List<Comment> comments = commentService.getCommentsByProductId(productId);
-            
-            if (comments.isEmpty()) {
-                Map<String, Object> emptyRating = new HashMap<>();
-                emptyRating.put("averageRating", 0.0);
-                emptyRating.put("totalComments", 0);
-                emptyRating.put("ratingDistribution", Map.of(
-                    "1", 0, "2", 0, "3", 0, "4", 0, "5", 0
-                ));
-                return ResponseEntity.ok(emptyRating);
-            }
-            
-            // Calculate average rating
-            double averageRating = comments.stream()
-                .mapToInt(Comment::getRating)
-                .average()
-                .orElse(0.0);
-            
-            // Calculate rating distribution
-            Map<String, Long> distribution = comments.stream()
-                .collect(Collectors.groupingBy(
-                    comment -> String.valueOf(Math.max(1, Math.min(5, comment.getRating()))),
-                    Collectors.counting()
-                ));
-            
-            // Ensure all rating levels are present
-            Map<String, Long> ratingDistribution = new HashMap<>();
-            for (int i = 1; i <= 5; i++) {
-                ratingDistribution.put(String.valueOf(i), distribution.getOrDefault(String.valueOf(i), 0L));
-            }
+            RatingSummary summary = commentService.getProductRatingSummary(productId);
             
             Map<String, Object> ratingData = new HashMap<>();
-            ratingData.put("averageRating", Math.round(averageRating * 10.0) / 10.0);
-            ratingData.put("totalComments", comments.size());
-            ratingData.put("ratingDistribution", ratingDistribution);
+            ratingData.put("averageRating", Math.round(summary.averageRating() * 10.0) / 10.0);
+            ratingData.put("totalComments", summary.totalComments());
+            ratingData.put("ratingDistribution", summary.distribution());
             
             return ResponseEntity.ok(ratingData);
         } catch (Exception e) {
@@ -330,25 +417,37 @@ public class CommentController {
         }
     }
     
+    private static boolean isHelpfulSort(String sort) {
+        return "helpful".equalsIgnoreCase(sort);
+    }
+    
+    private static int pageLimit(int size) {
+        return Math.min(Math.max(size, 1), 100);
+    }
+    
     /**
-     * Helper method เพื่อดึงข้อมูล user จาก OAuth2User
+     * ผลลัพธ์แบบ keyset: rows ถูกดึงเกินมา 1 แถวเพื่อรู้ว่ามีหน้าถัดไปหรือไม่
      */
-    private User getCurrentUser(OAuth2User principal) {
-        String email = principal.getAttribute("email");
-        String name = principal.getAttribute("name");
-        String picture = principal.getAttribute("picture");
-        
-        // สร้าง User object จากข้อมูล OAuth2
-        User user = new User();
-        user.setEmail(email);
-        user.setName(name);
-        user.setPicture(picture);
+    private static Map<String, Object> keysetPage(List<CommentDTO> rows, int limit) {
+        boolean hasMore = rows.size() > limit;
+        List<CommentDTO> content = hasMore ? rows.subList(0, limit) : rows;
         
-        // ในการใช้งานจริงควร query จากฐานข้อมูลเพื่อใช้ ID ที่แท้จริง
-        // ตอนนี้จะใช้ email เป็น unique identifier
-        user.setId(Long.valueOf(email.hashCode() & Integer.MAX_VALUE));
-        
-        return user;
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", content);
+        result.put("hasMore", hasMore);
+        if (hasMore) {
+            CommentDTO last = content.get(content.size() - 1);
+            result.put("nextCursor", new KeysetCursor(LocalDateTime.parse(last.createdAt), last.id).encode());
+        }
+        return result;
+    }
+    
+    /**
+     * ผู้ใช้ปัจจุบันจาก JWT หรือ session (reference by id: no query until a field other than the id is read)
+     */
+    private User currentUser(HttpServletRequest httpRequest) {
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        return userId != null ? userRepository.getReferenceById(userId) : null;
     }
     
     /**
@@ -0,0 +1,75 @@
+package com.example.E_commerceStore.WebApp.controller;
+
+import com.example.E_commerceStore.WebApp.service.CommentImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * 📥 นำเข้ารีวิวจำนวนมากจาก marketplace อื่น (CSV หรือ NDJSON) สำหรับ admin
+ * ต้องเป็น ADMIN ตาม /api/admin/** ใน SecurityConfig
+ *
+ * The file is sent as the raw request body (no multipart size limit) and
+ * spooled to a temp file; the import itself runs in the background.
+ */
+@RestController
+@RequestMapping("/api/admin/comments/import")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"}, allowCredentials = "true")
+public class CommentImportController {
+
+    @Autowired
+    private CommentImportService commentImportService;
+
+    /**
+     * 🚀 เริ่มงานนำเข้า: คืน jobId ไว้ถามสถานะ
+     * CSV ต้องมี header user_id, product_id, content (rating, created_at ไม่บังคับ); NDJSON ใช้ key ชื่อเดียวกัน
+     */
+    @PostMapping
+    public ResponseEntity<?> startImport(HttpServletRequest request,
+                                         @RequestParam(required = false) String format) {
+        Path file = null;
+        try {
+            CommentImportService.Format importFormat = CommentImportService.formatOf(format, request.getContentType());
+            file = Files.createTempFile("comment-import-", "." + importFormat.name().toLowerCase());
+            try (InputStream body = request.getInputStream()) {
+                Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            CommentImportService.ImportJob job = commentImportService.submit(file, importFormat);
+            return ResponseEntity.accepted().body(Map.of("success", true, "jobId", job.getId(), "status", job.getStatus()));
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * 📊 ความคืบหน้าของงาน (จำนวนที่อ่าน / โหลด / รอตรวจ / ข้าม และตัวอย่าง error)
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(commentImportService.getJob(jobId).snapshot());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // temp file
+        }
+    }
+}
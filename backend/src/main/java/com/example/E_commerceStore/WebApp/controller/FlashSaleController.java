@@ -0,0 +1,65 @@
+package com.example.E_commerceStore.WebApp.controller;
+
+import com.example.E_commerceStore.WebApp.service.FlashSaleInventoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ⚡ Flash sale admin endpoints (เปิด/ปิด flash sale ต่อสินค้า)
+ * ต้องเป็น ADMIN ตาม /api/admin/** ใน SecurityConfig
+ */
+@RestController
+@RequestMapping("/api/admin/flash-sales")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"}, allowCredentials = "true")
+public class FlashSaleController {
+
+    @Autowired
+    private FlashSaleInventoryService flashSaleInventoryService;
+
+    /**
+     * 📊 สถานะ flash sale บน node นี้ (หน่วยที่ดึงจาก DB มาไว้ใน counter แล้วยังขายไม่หมด)
+     */
+    @GetMapping
+    public ResponseEntity<?> getActiveSales() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("sales", flashSaleInventoryService.getActiveSales());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * ▶️ เริ่ม flash sale ของสินค้า
+     */
+    @PostMapping("/{productId}/start")
+    public ResponseEntity<?> startSale(@PathVariable Long productId) {
+        try {
+            int remaining = flashSaleInventoryService.startSale(productId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("productId", productId);
+            response.put("remaining", remaining);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * ⏹️ จบ flash sale และคืนหน่วยที่ยังไม่ได้ขายกลับเข้าฐานข้อมูล
+     */
+    @PostMapping("/{productId}/end")
+    public ResponseEntity<?> endSale(@PathVariable Long productId) {
+        try {
+            Map<String, Object> response = new HashMap<>(flashSaleInventoryService.endSale(productId));
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+}
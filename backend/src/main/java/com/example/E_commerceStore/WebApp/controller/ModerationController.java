@@ -0,0 +1,80 @@
+package com.example.E_commerceStore.WebApp.controller;
+
+import com.example.E_commerceStore.WebApp.model.Comment;
+import com.example.E_commerceStore.WebApp.service.CommentService;
+import com.example.E_commerceStore.WebApp.service.ModerationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 🛡️ คิวตรวจเนื้อหารีวิว (comments ที่ตัวกรองพักไว้) สำหรับ admin
+ * ต้องเป็น ADMIN ตาม /api/admin/** ใน SecurityConfig
+ */
+@RestController
+@RequestMapping("/api/admin/moderation")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"}, allowCredentials = "true")
+public class ModerationController {
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private ModerationService moderationService;
+
+    /**
+     * 📋 comments ที่รอตรวจ (เก่าสุดก่อน) พร้อมเหตุผลที่ถูกพัก
+     */
+    @GetMapping("/queue")
+    public ResponseEntity<?> getQueue(@RequestParam(defaultValue = "50") int size) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("pending", commentService.getModerationQueueSize());
+        response.put("comments", commentService.getModerationQueue(Math.min(Math.max(size, 1), 200)));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * ✅ อนุมัติให้แสดง
+     */
+    @PostMapping("/comments/{commentId}/approve")
+    public ResponseEntity<?> approve(@PathVariable Long commentId) {
+        try {
+            Comment comment = commentService.approveComment(commentId);
+            return ResponseEntity.ok(Map.of("success", true, "commentId", commentId,
+                "moderationStatus", comment.getModerationStatus()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * ❌ ปฏิเสธ (ซ่อนถาวร)
+     */
+    @PostMapping("/comments/{commentId}/reject")
+    public ResponseEntity<?> reject(@PathVariable Long commentId) {
+        try {
+            Comment comment = commentService.rejectComment(commentId);
+            return ResponseEntity.ok(Map.of("success", true, "commentId", commentId,
+                "moderationStatus", comment.getModerationStatus()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * 🔄 โหลดรายการคำต้องห้ามใหม่ทันที
+     */
+    @PostMapping("/terms/reload")
+    public ResponseEntity<?> reloadTerms() {
+        try {
+            int terms = moderationService.reload();
+            return ResponseEntity.ok(Map.of("success", true, "terms", terms));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.example.E_commerceStore.WebApp.controller;
 
+import com.example.E_commerceStore.WebApp.config.AuthenticatedUser;
+import com.example.E_commerceStore.WebApp.model.CheckoutJob;
 import com.example.E_commerceStore.WebApp.model.Order;
 import com.example.E_commerceStore.WebApp.model.User;
+import com.example.E_commerceStore.WebApp.model.UserRole;
+import com.example.E_commerceStore.WebApp.dto.CheckoutValidationReport;
+import com.example.E_commerceStore.WebApp.dto.OrderSummaryView;
+import com.example.E_commerceStore.WebApp.service.CartService;
+import com.example.E_commerceStore.WebApp.service.CheckoutQueueService;
+import com.example.E_commerceStore.WebApp.service.IdempotencyService;
 import com.example.E_commerceStore.WebApp.service.OrderService;
+import com.example.E_commerceStore.WebApp.service.UserRoleService;
 import com.example.E_commerceStore.WebApp.service.UserService;
+import com.example.E_commerceStore.WebApp.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -11,11 +21,9 @@ import org.springframework.data.domain.Pageable;
 import com.example.E_commerceStore.WebApp.dto.OrderDTO;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,34 +39,38 @@ public class OrderController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private UserRoleService userRoleService;
+    
+    @Autowired
+    private CartService cartService;
+    
+    @Autowired
+    private CheckoutQueueService checkoutQueueService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
     /**
-     * Create order from cart
+     * Revalidate cart prices and stock before payment
      */
-    @PostMapping("/checkout")
-    public ResponseEntity<?> createOrder(
-            @RequestBody CheckoutRequest request,
-            HttpSession session) {
+    @PostMapping("/checkout/validate")
+    public ResponseEntity<?> validateCheckout(HttpServletRequest httpRequest) {
         
-        Long userId = (Long) session.getAttribute("userId");
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Please login to checkout"));
         }
         
         try {
-            Order order = orderService.createOrderFromCart(
-                userId, 
-                request.getShippingAddress(), 
-                request.getPhoneNumber()
-            );
+            CheckoutValidationReport report = cartService.validateCheckout(userId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Order created successfully");
-            response.put("orderId", order.getId());
-            response.put("orderNumber", order.getOrderNumber());
-            response.put("totalAmount", order.getTotalAmount());
-            response.put("estimatedDelivery", order.getEstimatedDelivery());
+            response.put("valid", report.isValid());
+            response.put("canCheckout", !report.isEmpty() && !report.hasStockIssues());
+            response.put("report", report);
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -67,22 +79,125 @@ public class OrderController {
         }
     }
     
+    /**
+     * Create order from cart (send an Idempotency-Key header to make retries safe)
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<?> createOrder(
+            @RequestBody CheckoutRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletRequest httpRequest) {
+        
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Please login to checkout"));
+        }
+        
+        return idempotencyService.execute("user:" + userId, idempotencyKey, "POST /api/orders/checkout", request, () -> {
+            try {
+                Order order = orderService.createOrderFromCart(
+                    userId, 
+                    request.getShippingAddress(), 
+                    request.getPhoneNumber()
+                );
+            
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "Order created successfully");
+                response.put("orderId", order.getId());
+                response.put("orderNumber", order.getOrderNumber());
+                response.put("totalAmount", order.getTotalAmount());
+                response.put("estimatedDelivery", order.getEstimatedDelivery());
+            
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return IdempotencyService.errorResponse(e);
+            }
+        });
+    }
+    
+    /**
+     * Queue checkout for asynchronous processing (202 + token to poll)
+     */
+    @PostMapping("/checkout/async")
+    public ResponseEntity<?> createOrderAsync(
+            @RequestBody CheckoutRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletRequest httpRequest) {
+        
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Please login to checkout"));
+        }
+        
+        return idempotencyService.execute("user:" + userId, idempotencyKey, "POST /api/orders/checkout/async", request, () -> {
+            try {
+                CheckoutJob job = checkoutQueueService.enqueue(
+                    userId,
+                    request.getShippingAddress(),
+                    request.getPhoneNumber()
+                );
+            
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("token", job.getToken());
+                response.put("status", job.getStatus());
+                response.put("statusUrl", "/api/orders/checkout/jobs/" + job.getToken());
+            
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            } catch (Exception e) {
+                return IdempotencyService.errorResponse(e);
+            }
+        });
+    }
+    
+    /**
+     * Poll the status of a queued checkout
+     */
+    @GetMapping("/checkout/jobs/{token}")
+    public ResponseEntity<?> getCheckoutJob(
+            @PathVariable String token,
+            HttpServletRequest httpRequest) {
+        
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Authentication required"));
+        }
+        
+        CheckoutJob job = checkoutQueueService.getJob(token).orElse(null);
+        if (job == null || !job.getUserId().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", "Checkout not found"));
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", job.getToken());
+        response.put("status", job.getStatus());
+        response.put("orderId", job.getOrderId());
+        response.put("orderNumber", job.getOrderNumber());
+        response.put("error", job.getErrorMessage());
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Get order details
      */
     @GetMapping("/{orderId}")
     public ResponseEntity<?> getOrder(
             @PathVariable Long orderId,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
         
-        Long userId = (Long) session.getAttribute("userId");
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Authentication required"));
         }
         
         try {
-            Order order = orderService.getOrderById(orderId)
+            Order order = orderService.getOrderWithItems(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
             
             // Verify order belongs to user
@@ -91,7 +206,7 @@ public class OrderController {
                     .body(Map.of("error", "Access denied"));
             }
             
-            return ResponseEntity.ok(order);
+            return ResponseEntity.ok(new OrderDTO(order));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(Map.of("error", e.getMessage()));
@@ -104,16 +219,16 @@ public class OrderController {
     @GetMapping("/number/{orderNumber}")
     public ResponseEntity<?> getOrderByNumber(
             @PathVariable String orderNumber,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
         
-        Long userId = (Long) session.getAttribute("userId");
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Authentication required"));
         }
         
         try {
-            Order order = orderService.getOrderByOrderNumber(orderNumber)
+            Order order = orderService.getOrderWithItemsByOrderNumber(orderNumber)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
             
             // Verify order belongs to user
@@ -122,7 +237,7 @@ public class OrderController {
                     .body(Map.of("error", "Access denied"));
             }
             
-            return ResponseEntity.ok(order);
+            return ResponseEntity.ok(new OrderDTO(order));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(Map.of("error", e.getMessage()));
@@ -136,10 +251,9 @@ public class OrderController {
     public ResponseEntity<?> getUserOrders(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            HttpSession session) {
-        String sessionId = session.getId();
-        Long userId = (Long) session.getAttribute("userId");
-        System.out.println("[OrderController] /my-orders sessionId=" + sessionId + ", userId=" + userId);
+            HttpServletRequest httpRequest) {
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        System.out.println("[OrderController] /my-orders userId=" + userId);
         if (userId == null) {
             System.out.println("[OrderController] /my-orders: userId is null, returning 401");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -163,15 +277,51 @@ public class OrderController {
         }
     }
     
+    /**
+     * Get user's order summaries (keyset pagination, no order items)
+     */
+    @GetMapping("/my-orders/summary")
+    public ResponseEntity<?> getUserOrderSummaries(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest httpRequest) {
+        
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Authentication required"));
+        }
+        
+        try {
+            int limit = Math.min(Math.max(size, 1), 100);
+            // ดึงเกินมา 1 แถวเพื่อรู้ว่ามีหน้าถัดไปหรือไม่
+            List<OrderSummaryView> rows = orderService.getUserOrderSummaries(userId, KeysetCursor.decode(cursor), limit + 1);
+            boolean hasMore = rows.size() > limit;
+            List<OrderSummaryView> content = hasMore ? rows.subList(0, limit) : rows;
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("content", content);
+            result.put("hasMore", hasMore);
+            if (hasMore) {
+                OrderSummaryView last = content.get(content.size() - 1);
+                result.put("nextCursor", new KeysetCursor(last.getCreatedAt(), last.getId()).encode());
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     /**
      * Cancel order
      */
     @PutMapping("/{orderId}/cancel")
     public ResponseEntity<?> cancelOrder(
             @PathVariable Long orderId,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
         
-        Long userId = (Long) session.getAttribute("userId");
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Authentication required"));
@@ -183,7 +333,7 @@ public class OrderController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Order cancelled successfully");
-            response.put("order", order);
+            response.put("order", new OrderDTO(order));
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -199,17 +349,16 @@ public class OrderController {
     public ResponseEntity<?> updateOrderStatus(
             @PathVariable Long orderId,
             @RequestBody Map<String, String> request,
-            @AuthenticationPrincipal OAuth2User principal) {
+            HttpServletRequest httpRequest) {
         
-        if (principal == null) {
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Authentication required"));
         }
         
-        // Check if user is admin (implement your admin check logic)
-        String email = principal.getAttribute("email");
-        // For now, simple check - in production, check user role from database
-        boolean isAdmin = email != null && email.contains("admin");
+        // role จากตาราง users (ไม่เชื่อค่าใน token หรือ email)
+        boolean isAdmin = userRoleService.getRole(userId).filter(role -> role == UserRole.ADMIN).isPresent();
         
         if (!isAdmin) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -225,7 +374,7 @@ public class OrderController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Order status updated successfully");
-            response.put("order", order);
+            response.put("order", new OrderDTO(order));
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -240,9 +389,9 @@ public class OrderController {
     @GetMapping("/check-purchase/{productId}")
     public ResponseEntity<?> checkProductPurchase(
             @PathVariable Long productId,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
         
-        Long userId = (Long) session.getAttribute("userId");
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Authentication required"));
@@ -257,7 +406,7 @@ public class OrderController {
             
             if (hasPurchased) {
                 List<Order> orders = orderService.getUserOrdersForProduct(userId, productId);
-                response.put("purchaseOrders", orders);
+                response.put("purchaseOrders", orders.stream().map(OrderDTO::new).toList());
             }
             
             return ResponseEntity.ok(response);
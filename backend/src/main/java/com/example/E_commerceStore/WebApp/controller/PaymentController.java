@@ -1,14 +1,25 @@
 package com.example.E_commerceStore.WebApp.controller;
 
+import com.example.E_commerceStore.WebApp.config.AuthenticatedUser;
 import com.example.E_commerceStore.WebApp.dto.PaymentIntentRequest;
 import com.example.E_commerceStore.WebApp.dto.CheckoutSessionRequest;
+import com.example.E_commerceStore.WebApp.model.Money;
+import com.example.E_commerceStore.WebApp.model.Order;
+import com.example.E_commerceStore.WebApp.service.IdempotencyService;
+import com.example.E_commerceStore.WebApp.service.OrderService;
 import com.example.E_commerceStore.WebApp.service.StripeService;
+import com.stripe.exception.CardException;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.checkout.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,31 +31,77 @@ public class PaymentController {
     @Autowired
     private StripeService stripeService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private OrderService orderService;
+
     /**
      * Create Payment Intent for direct card payments
+     * (send an Idempotency-Key header to make retries safe; it is also passed on to Stripe)
      */
     @PostMapping("/create-intent")
-    public ResponseEntity<Map<String, Object>> createPaymentIntent(@RequestBody PaymentIntentRequest request) {
-        try {
-            PaymentIntent paymentIntent = stripeService.createPaymentIntent(
-                request.getAmount(),
-                request.getCurrency(),
-                request.getProducts()
-            );
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("id", paymentIntent.getId());
-            response.put("client_secret", paymentIntent.getClientSecret());
-            response.put("amount", paymentIntent.getAmount());
-            response.put("currency", paymentIntent.getCurrency());
-            response.put("status", paymentIntent.getStatus());
+    public ResponseEntity<?> createPaymentIntent(
+            @RequestBody PaymentIntentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletRequest httpRequest) {
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        String owner = userId != null ? "user:" + userId : "session:" + httpRequest.getSession().getId();
+        String stripeKey = idempotencyKey != null && !idempotencyKey.isBlank() ? "pi:" + owner + ":" + idempotencyKey : null;
+
+        return idempotencyService.execute(owner, idempotencyKey, "POST /api/payments/create-intent", request, () -> {
+            try {
+                // For a stored order the amount and currency come from the order, never from the client
+                Long amount = request.getAmount();
+                String currency = request.getCurrency() != null && !request.getCurrency().isBlank()
+                    ? request.getCurrency() : Money.DEFAULT_CURRENCY;
+                if (request.getOrderNumber() != null && !request.getOrderNumber().isBlank()) {
+                    Order order = orderService.getOrderByOrderNumber(request.getOrderNumber())
+                        .filter(o -> userId != null && o.getUserId().equals(userId))
+                        .orElseThrow(() -> new RuntimeException("Order not found"));
+                    if (!Money.DEFAULT_CURRENCY.equalsIgnoreCase(currency)) {
+                        throw new IllegalArgumentException("Currency mismatch: order is in " + Money.DEFAULT_CURRENCY);
+                    }
+                    Money total = Money.of(order.getTotalAmount());
+                    amount = total.amount();
+                    currency = total.currency();
+                }
+
+                PaymentIntent paymentIntent = stripeService.createPaymentIntent(
+                    amount,
+                    currency.toLowerCase(),
+                    request.getProducts(),
+                    request.getOrderNumber(),
+                    stripeKey
+                );
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("id", paymentIntent.getId());
+                response.put("client_secret", paymentIntent.getClientSecret());
+                response.put("amount", paymentIntent.getAmount());
+                response.put("currency", paymentIntent.getCurrency());
+                response.put("status", paymentIntent.getStatus());
+
+                return ResponseEntity.ok(response);
+            } catch (StripeException e) {
+                return stripeErrorResponse(e);
+            } catch (Exception e) {
+                return IdempotencyService.errorResponse(e);
+            }
+        });
+    }
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", e.getMessage());
-            return ResponseEntity.badRequest().body(errorResponse);
+    // Card declines and invalid parameters are final; outages, rate limits and auth problems are not
+    private static ResponseEntity<?> stripeErrorResponse(StripeException e) {
+        boolean deterministic = e instanceof CardException
+            || (e instanceof InvalidRequestException && !(e instanceof RateLimitException));
+        if (deterministic) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
         }
+        System.err.println("[Payment] Stripe unavailable: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+            .body(Map.of("error", "Payment provider is unavailable, please retry"));
     }
 
     /**
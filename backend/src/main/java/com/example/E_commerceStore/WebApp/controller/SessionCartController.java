@@ -1,5 +1,6 @@
 package com.example.E_commerceStore.WebApp.controller;
 
+import com.example.E_commerceStore.WebApp.config.AuthenticatedUser;
 import com.example.E_commerceStore.WebApp.dto.CartItemDTO;
 import com.example.E_commerceStore.WebApp.model.Cart;
 import com.example.E_commerceStore.WebApp.model.CartItem;
@@ -7,23 +8,24 @@ import com.example.E_commerceStore.WebApp.model.User;
 import com.example.E_commerceStore.WebApp.repository.UserRepository;
 import com.example.E_commerceStore.WebApp.service.CartService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static com.example.E_commerceStore.WebApp.controller.CartVersionHeaders.parseIfMatch;
+import static com.example.E_commerceStore.WebApp.controller.CartVersionHeaders.withVersion;
+
 /**
  * 🛒 Session-based Cart Controller
- * ใช้ Session เพื่อระบุผู้ใช้แทนการส่ง userId ใน URL
- * เหมาะสำหรับระบบที่มี Authentication Session
+ * ระบุผู้ใช้จาก JWT (Authorization: Bearer) หรือ session แทนการส่ง userId ใน URL
  */
 @RestController
 @RequestMapping("/api/session-cart")
@@ -40,30 +42,18 @@ public class SessionCartController {
      * 🛒 ดูตะกร้าของผู้ใช้ปัจจุบัน
      */
     @GetMapping
-    public ResponseEntity<?> getCart(HttpSession session) {
+    public ResponseEntity<?> getCart(HttpServletRequest httpRequest) {
         try {
-            User user = getCurrentUser(session);
+            User user = getCurrentUser(httpRequest);
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(createErrorResponse("กรุณาเข้าสู่ระบบก่อนใช้งานตะกร้า"));
             }
             
-            Cart cart = cartService.getUserCart(user);
-            List<CartItem> cartItems = cartService.getCartItems(user);
-            
-            // Convert to DTOs for frontend
-            List<CartItemDTO> cartItemDTOs = cartItems.stream()
-                .map(CartItemDTO::new)
-                .collect(Collectors.toList());
-            
-            Map<String, Object> response = new HashMap<>();
+            Map<String, Object> response = buildCartSnapshot(user);
             response.put("success", true);
-            response.put("items", cartItemDTOs);
-            response.put("totalItems", cart.getTotalItems());
-            response.put("totalAmount", cart.getTotalAmount());
-            response.put("isEmpty", cart.isEmpty());
             
-            return ResponseEntity.ok(response);
+            return withVersion(ResponseEntity.ok(), (Long) response.get("version")).body(response);
             
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -75,23 +65,28 @@ public class SessionCartController {
      * ➕ เพิ่มสินค้าลงตะกร้า
      */
     @PostMapping("/add")
-    public ResponseEntity<?> addToCart(@RequestBody AddToCartRequest request, HttpSession session) {
+    public ResponseEntity<?> addToCart(@RequestBody AddToCartRequest request,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                       HttpServletRequest httpRequest) {
+        User user = null;
         try {
-            User user = getCurrentUser(session);
+            user = getCurrentUser(httpRequest);
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(createErrorResponse("กรุณาเข้าสู่ระบบก่อนเพิ่มสินค้าลงตะกร้า"));
             }
             
-            CartItem cartItem = cartService.addToCart(user, request.getProductId(), request.getQuantity());
+            CartService.CartItemChange change = cartService.addToCart(user, request.getProductId(), request.getQuantity(), parseIfMatch(ifMatch));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "เพิ่มสินค้าลงตะกร้าสำเร็จ");
-            response.put("cartItem", cartItem);
+            response.put("cartItem", change.cartItem());
             
-            return ResponseEntity.ok(response);
+            return withCartVersion(ResponseEntity.ok(), change.version(), response);
             
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflictResponse(user);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
@@ -105,23 +100,27 @@ public class SessionCartController {
     public ResponseEntity<?> updateCartItem(
             @PathVariable Long cartItemId,
             @RequestBody UpdateCartRequest request,
-            HttpSession session) {
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            HttpServletRequest httpRequest) {
+        User user = null;
         try {
-            User user = getCurrentUser(session);
+            user = getCurrentUser(httpRequest);
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(createErrorResponse("กรุณาเข้าสู่ระบบก่อนแก้ไขตะกร้า"));
             }
             
-            CartItem cartItem = cartService.updateCartItem(user, cartItemId, request.getQuantity());
+            CartService.CartItemChange change = cartService.updateCartItem(user, cartItemId, request.getQuantity(), parseIfMatch(ifMatch));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "อัปเดตจำนวนสินค้าสำเร็จ");
-            response.put("cartItem", cartItem);
+            response.put("cartItem", change.cartItem());
             
-            return ResponseEntity.ok(response);
+            return withCartVersion(ResponseEntity.ok(), change.version(), response);
             
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflictResponse(user);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
@@ -132,22 +131,27 @@ public class SessionCartController {
      * 🗑️ ลบสินค้าออกจากตะกร้า
      */
     @DeleteMapping("/remove/{cartItemId}")
-    public ResponseEntity<?> removeFromCart(@PathVariable Long cartItemId, HttpSession session) {
+    public ResponseEntity<?> removeFromCart(@PathVariable Long cartItemId,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                            HttpServletRequest httpRequest) {
+        User user = null;
         try {
-            User user = getCurrentUser(session);
+            user = getCurrentUser(httpRequest);
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(createErrorResponse("กรุณาเข้าสู่ระบบก่อนลบสินค้าจากตะกร้า"));
             }
             
-            cartService.removeFromCart(user, cartItemId);
+            Long version = cartService.removeFromCart(user, cartItemId, parseIfMatch(ifMatch));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "ลบสินค้าจากตะกร้าสำเร็จ");
             
-            return ResponseEntity.ok(response);
+            return withCartVersion(ResponseEntity.ok(), version, response);
             
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflictResponse(user);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
@@ -158,22 +162,26 @@ public class SessionCartController {
      * 🧹 ล้างตะกร้าทั้งหมด
      */
     @DeleteMapping("/clear")
-    public ResponseEntity<?> clearCart(HttpSession session) {
+    public ResponseEntity<?> clearCart(@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                       HttpServletRequest httpRequest) {
+        User user = null;
         try {
-            User user = getCurrentUser(session);
+            user = getCurrentUser(httpRequest);
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(createErrorResponse("กรุณาเข้าสู่ระบบก่อนล้างตะกร้า"));
             }
             
-            cartService.clearCart(user);
+            Long version = cartService.clearCart(user, parseIfMatch(ifMatch));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "ล้างตะกร้าสำเร็จ");
             
-            return ResponseEntity.ok(response);
+            return withCartVersion(ResponseEntity.ok(), version, response);
             
+        } catch (CartService.CartVersionConflictException | OptimisticLockingFailureException e) {
+            return conflictResponse(user);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
@@ -184,9 +192,9 @@ public class SessionCartController {
      * 📊 นับจำนวนสินค้าในตะกร้า
      */
     @GetMapping("/count")
-    public ResponseEntity<?> getCartCount(HttpSession session) {
+    public ResponseEntity<?> getCartCount(HttpServletRequest httpRequest) {
         try {
-            User user = getCurrentUser(session);
+            User user = getCurrentUser(httpRequest);
             if (user == null) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
@@ -209,57 +217,77 @@ public class SessionCartController {
     }
 
     /**
-     * 🛠️ Helper Methods
+     * ⏳ ต่ออายุการจองสต็อกของสินค้าในตะกร้า (เรียกเป็นระยะระหว่างอยู่หน้า checkout)
      */
-    
-    private User getCurrentUser(HttpSession session) {
-        if (session == null) {
-            System.out.println("🚨 Session is null!");
-            return null;
-        }
-        
-        String sessionId = session.getId();
-        User user = (User) session.getAttribute("user");
-        
-        System.out.println("🔍 Session Debug:");
-        System.out.println("  - Session ID: " + sessionId);
-        System.out.println("  - User in session: " + (user != null ? user.getEmail() : "null"));
-        System.out.println("  - Session attributes: " + java.util.Collections.list(session.getAttributeNames()));
-        
-        // ถ้าไม่มี user ใน session ลองหาจาก SecurityContext สำหรับ OAuth2
-        if (user == null) {
-            System.out.println("🔍 User not found in session, checking SecurityContext...");
+    @PostMapping("/reservations/extend")
+    public ResponseEntity<?> extendReservations(HttpServletRequest httpRequest) {
+        try {
+            User user = getCurrentUser(httpRequest);
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(createErrorResponse("กรุณาเข้าสู่ระบบก่อนใช้งานตะกร้า"));
+            }
             
-            org.springframework.security.core.Authentication auth = 
-                org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
+            List<Long> unavailableProductIds = cartService.extendReservations(user);
             
-            if (auth != null && auth.isAuthenticated() && 
-                auth instanceof org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken) {
-                
-                org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken oauth2Token = 
-                    (org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken) auth;
-                
-                org.springframework.security.oauth2.core.user.OAuth2User oauth2User = oauth2Token.getPrincipal();
-                String email = oauth2User.getAttribute("email");
-                
-                System.out.println("🔍 Found OAuth2 user in SecurityContext: " + email);
-                
-                if (email != null) {
-                    // หา user จากฐานข้อมูลด้วย email
-                    java.util.Optional<com.example.E_commerceStore.WebApp.model.User> userOptional = 
-                        userRepository.findByEmail(email);
-                    
-                    if (userOptional.isPresent()) {
-                        user = userOptional.get();
-                        // เก็บ user ใน session สำหรับการใช้งานครั้งต่อไป
-                        session.setAttribute("user", user);
-                        System.out.println("✅ Found user from OAuth2 and stored in session: " + email);
-                    }
-                }
-            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", unavailableProductIds.isEmpty());
+            response.put("unavailableProductIds", unavailableProductIds);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse(e.getMessage()));
         }
+    }
+
+    /**
+     * 🛠️ Helper Methods
+     */
+    
+    private User getCurrentUser(HttpServletRequest httpRequest) {
+        // user id จาก JWT (หรือ session เดิม): reference only, no query unless a field other than the id is read
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        return userId != null ? userRepository.getReferenceById(userId) : null;
+    }
+    
+    /**
+     * ข้อมูลตะกร้าปัจจุบันพร้อมเวอร์ชัน (ใช้ทั้งตอนดูตะกร้าและตอนตอบ 409)
+     */
+    private Map<String, Object> buildCartSnapshot(User user) {
+        Cart cart = cartService.getUserCart(user);
+        List<CartItem> cartItems = cartService.getCartItems(user);
+        
+        // Convert to DTOs for frontend
+        List<CartItemDTO> cartItemDTOs = cartItems.stream()
+            .map(CartItemDTO::new)
+            .collect(Collectors.toList());
         
-        return user;
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", cartItemDTOs);
+        response.put("totalItems", cart.getTotalItems());
+        response.put("totalAmount", cart.getTotalAmount());
+        response.put("isEmpty", cart.isEmpty());
+        response.put("version", cart.getVersion());
+        return response;
+    }
+    
+    /**
+     * ตะกร้าถูกแก้จากแท็บ/อุปกรณ์อื่น: ตอบ 409 พร้อมตะกร้าล่าสุดให้ client merge หรือ reload
+     */
+    private ResponseEntity<?> conflictResponse(User user) {
+        Map<String, Object> response = buildCartSnapshot(user);
+        response.put("success", false);
+        response.put("conflict", true);
+        response.put("message", "ตะกร้าถูกแก้ไขจากที่อื่น กรุณาตรวจสอบตะกร้าอีกครั้ง");
+        return withVersion(ResponseEntity.status(HttpStatus.CONFLICT), (Long) response.get("version")).body(response);
+    }
+    
+    // version คือค่าที่การแก้ไขนี้สร้าง ไม่อ่านใหม่หลัง commit (อาจเป็นของคำขออื่นที่แทรกเข้ามา)
+    private ResponseEntity<?> withCartVersion(ResponseEntity.BodyBuilder builder, Long version, Map<String, Object> response) {
+        response.put("version", version);
+        return withVersion(builder, version).body(response);
     }
     
     private Map<String, Object> createErrorResponse(String message) {
@@ -1,16 +1,19 @@
 package com.example.E_commerceStore.WebApp.controller;
 
+import com.example.E_commerceStore.WebApp.config.AuthenticatedUser;
 import com.example.E_commerceStore.WebApp.model.Store;
-import com.example.E_commerceStore.WebApp.model.User;
+import com.example.E_commerceStore.WebApp.repository.UserRepository;
+import com.example.E_commerceStore.WebApp.dto.StoreRatingSummary;
+import com.example.E_commerceStore.WebApp.service.StoreRatingService;
 import com.example.E_commerceStore.WebApp.service.StoreService;
-import com.example.E_commerceStore.WebApp.service.UserService;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import org.springframework.security.oauth2.core.user.OAuth2User;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -21,35 +24,43 @@ public class StoreController {
     private StoreService storeService;
 
     @Autowired
-    private UserService userService;
+    private UserRepository userRepository;
+
+    @Autowired
+    private StoreRatingService storeRatingService;
 
 
     @PostMapping
-    public ResponseEntity<Store> createStore(@RequestBody Store store, @AuthenticationPrincipal OAuth2User principal) {
-        // ดึง user ปัจจุบันจาก principal (OAuth2User)
-        String email = principal.getAttribute("email");
-        com.example.E_commerceStore.WebApp.model.User user = userService.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
-        store.setOwner(user);
+    public ResponseEntity<Store> createStore(@RequestBody Store store, HttpServletRequest httpRequest) {
+        // ผู้ใช้ปัจจุบันจาก JWT หรือ session
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        store.setOwner(userRepository.getReferenceById(userId));
         Store created = storeService.createStore(store);
         return ResponseEntity.ok(created);
     }
     // ดึงร้านค้าทั้งหมดของ user ปัจจุบัน
     @GetMapping("/my")
-    public ResponseEntity<List<Store>> getMyStores(@AuthenticationPrincipal OAuth2User principal) {
-        String email = principal.getAttribute("email");
-        com.example.E_commerceStore.WebApp.model.User user = userService.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
-        List<Store> stores = storeService.getStoresByOwnerId(user.getId());
-        return ResponseEntity.ok(stores);
+    public ResponseEntity<List<Store>> getMyStores(HttpServletRequest httpRequest) {
+        Long userId = AuthenticatedUser.currentUserId(httpRequest);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        List<Store> stores = storeService.getStoresByOwnerId(userId);
+        return ResponseEntity.ok(withRatings(stores));
     }
 
     @GetMapping
     public ResponseEntity<List<Store>> getAllStores() {
-        return ResponseEntity.ok(storeService.getAllStores());
+        return ResponseEntity.ok(withRatings(storeService.getAllStores()));
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<Store> getStoreById(@PathVariable Long id) {
         Optional<Store> store = storeService.getStoreById(id);
+        store.ifPresent(s -> s.setRating(storeRatingService.getSummary(s.getId())));
         return store.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
@@ -70,6 +81,13 @@ public class StoreController {
         return ResponseEntity.ok(updated);
     }
 
+    // คะแนนของทุกร้านในรายการ: cache ก่อน ที่เหลือ query รวมครั้งเดียว
+    private List<Store> withRatings(List<Store> stores) {
+        Map<Long, StoreRatingSummary> ratings = storeRatingService.getSummaries(stores.stream().map(Store::getId).toList());
+        stores.forEach(store -> store.setRating(ratings.get(store.getId())));
+        return stores;
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteStore(@PathVariable Long id) {
         storeService.deleteStore(id);
@@ -0,0 +1,103 @@
+package com.example.E_commerceStore.WebApp.controller;
+
+import com.example.E_commerceStore.WebApp.config.WaitingRoomFilter;
+import com.example.E_commerceStore.WebApp.service.WaitingRoomService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 🚦 Virtual waiting room: รับคิว / เช็คสถานะคิว (ตอบจากหน่วยความจำล้วน)
+ * และ endpoint admin สำหรับเปิด/ปิดและปรับอัตราการปล่อยคิว
+ */
+@RestController
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"}, allowCredentials = "true")
+public class WaitingRoomController {
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    /**
+     * 🎫 รับตั๋วคิว
+     */
+    @PostMapping("/api/waiting-room/join")
+    public ResponseEntity<?> join(@RequestHeader(value = WaitingRoomFilter.TOKEN_HEADER, required = false) String existingToken,
+                                  HttpServletRequest request) {
+        // token ผูกกับผู้ใช้ หรือ session ของ guest (สร้าง session ถ้ายังไม่มี)
+        String subject = WaitingRoomFilter.subjectOf(request, true);
+        // ยังถือ token ที่ใช้ได้อยู่ = ไม่ต้องต่อคิวใหม่
+        long ticket = waitingRoomService.parseTicket(existingToken, subject);
+        String token = existingToken;
+        if (ticket <= 0) {
+            WaitingRoomService.Ticket issued = waitingRoomService.join(subject);
+            ticket = issued.number();
+            token = issued.token();
+        }
+        Map<String, Object> response = statusOf(ticket);
+        response.put("token", token);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 🔄 เช็คตำแหน่งในคิว
+     */
+    @GetMapping("/api/waiting-room/status")
+    public ResponseEntity<?> status(@RequestHeader(value = WaitingRoomFilter.TOKEN_HEADER, required = false) String token,
+                                    HttpServletRequest request) {
+        long ticket = waitingRoomService.parseTicket(token, WaitingRoomFilter.subjectOf(request, false));
+        if (ticket <= 0) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("enabled", waitingRoomService.isEnabled());
+            response.put("message", "Invalid or expired queue token");
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(statusOf(ticket));
+    }
+
+    /**
+     * 📊 สถานะ waiting room (admin)
+     */
+    @GetMapping("/api/admin/waiting-room")
+    public ResponseEntity<?> getSettings() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("enabled", waitingRoomService.isEnabled());
+        response.put("admitPerSecond", waitingRoomService.getAdmitPerSecond());
+        response.put("queueLength", waitingRoomService.getQueueLength());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * ⚙️ เปิด/ปิด waiting room และปรับอัตราการปล่อยคิว (admin)
+     */
+    @PutMapping("/api/admin/waiting-room")
+    public ResponseEntity<?> updateSettings(@RequestBody Map<String, Object> request) {
+        try {
+            if (request.get("enabled") != null) {
+                waitingRoomService.setEnabled(Boolean.parseBoolean(request.get("enabled").toString()));
+            }
+            if (request.get("admitPerSecond") != null) {
+                waitingRoomService.setAdmitPerSecond(Integer.parseInt(request.get("admitPerSecond").toString()));
+            }
+            return getSettings();
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> statusOf(long ticket) {
+        long position = waitingRoomService.isEnabled() ? waitingRoomService.getPosition(ticket) : 0;
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("ticket", ticket);
+        response.put("position", position);
+        response.put("admitted", position == 0);
+        response.put("estimatedWaitSeconds", waitingRoomService.isEnabled() ? waitingRoomService.getEstimatedWaitSeconds(ticket) : 0);
+        return response;
+    }
+}
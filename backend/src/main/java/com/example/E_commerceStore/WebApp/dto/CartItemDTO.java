@@ -29,7 +29,7 @@ public class CartItemDTO {
         this.quantity = cartItem.getQuantity();
         this.stock = cartItem.getProduct().getStock();
         this.description = cartItem.getProduct().getDescription();
-        this.totalPrice = cartItem.getPriceAtTime().multiply(BigDecimal.valueOf(cartItem.getQuantity()));
+        this.totalPrice = cartItem.getTotalPrice();
     }
 
     // Default constructor
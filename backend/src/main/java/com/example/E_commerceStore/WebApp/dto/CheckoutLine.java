@@ -0,0 +1,102 @@
+package com.example.E_commerceStore.WebApp.dto;
+
+import com.example.E_commerceStore.WebApp.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+
+/**
+ * ผลตรวจหนึ่งรายการในตะกร้าก่อนชำระเงิน (ราคา/สต็อกปัจจุบันเทียบกับตอนใส่ตะกร้า)
+ */
+public class CheckoutLine {
+    
+    public enum Status {
+        OK,
+        PRICE_CHANGED,
+        QUANTITY_REDUCED,
+        OUT_OF_STOCK
+    }
+    
+    private Long cartItemId;
+    private Long productId;
+    private String productName;
+    private Integer requestedQuantity;
+    private Integer availableQuantity;
+    private BigDecimal priceAtTime;
+    private BigDecimal currentPrice;
+    private Integer stock;
+    private boolean priceChanged;
+    private Status status = Status.OK;
+    
+    public CheckoutLine() {}
+    
+    // ใช้กับ JPQL constructor expression ใน CartItemRepository
+    public CheckoutLine(Long cartItemId, Long productId, String productName, Integer requestedQuantity,
+                        BigDecimal priceAtTime, BigDecimal currentPrice, Integer stock) {
+        this.cartItemId = cartItemId;
+        this.productId = productId;
+        this.productName = productName;
+        this.requestedQuantity = requestedQuantity;
+        this.priceAtTime = priceAtTime;
+        this.currentPrice = currentPrice;
+        this.stock = stock;
+    }
+    
+    /**
+     * จำนวนที่จะซื้อได้จริง คูณราคาปัจจุบัน
+     */
+    public BigDecimal getLineTotal() {
+        return Money.toBigDecimal(getLineTotalMinor(), Money.DEFAULT_CURRENCY);
+    }
+    
+    // ยอดของบรรทัดเป็นหน่วยย่อย (สตางค์) สำหรับรวมยอดโดยไม่สร้าง BigDecimal
+    long getLineTotalMinor() {
+        if (currentPrice == null || availableQuantity == null) {
+            return 0;
+        }
+        return Math.multiplyExact(Money.minorUnits(currentPrice), Math.min(requestedQuantity, availableQuantity));
+    }
+    
+    long getPreviousTotalMinor() {
+        if (priceAtTime == null) {
+            return 0;
+        }
+        return Math.multiplyExact(Money.minorUnits(priceAtTime), requestedQuantity);
+    }
+    
+    public boolean hasStockIssue() {
+        return status == Status.OUT_OF_STOCK || status == Status.QUANTITY_REDUCED;
+    }
+    
+    // Getters and Setters
+    public Long getCartItemId() { return cartItemId; }
+    public void setCartItemId(Long cartItemId) { this.cartItemId = cartItemId; }
+    
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    
+    public String getProductName() { return productName; }
+    public void setProductName(String productName) { this.productName = productName; }
+    
+    public Integer getRequestedQuantity() { return requestedQuantity; }
+    public void setRequestedQuantity(Integer requestedQuantity) { this.requestedQuantity = requestedQuantity; }
+    
+    public Integer getAvailableQuantity() { return availableQuantity; }
+    public void setAvailableQuantity(Integer availableQuantity) { this.availableQuantity = availableQuantity; }
+    
+    public BigDecimal getPriceAtTime() { return priceAtTime; }
+    public void setPriceAtTime(BigDecimal priceAtTime) { this.priceAtTime = priceAtTime; }
+    
+    public BigDecimal getCurrentPrice() { return currentPrice; }
+    public void setCurrentPrice(BigDecimal currentPrice) { this.currentPrice = currentPrice; }
+    
+    @JsonIgnore
+    public Integer getStock() { return stock; }
+    public void setStock(Integer stock) { this.stock = stock; }
+    
+    public boolean isPriceChanged() { return priceChanged; }
+    public void setPriceChanged(boolean priceChanged) { this.priceChanged = priceChanged; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+}
@@ -0,0 +1,64 @@
+package com.example.E_commerceStore.WebApp.dto;
+
+import com.example.E_commerceStore.WebApp.model.Money;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * รายงานตรวจตะกร้าก่อนชำระเงิน: รายการที่ราคาเปลี่ยน สินค้าหมด หรือถูกลดจำนวน
+ * พร้อมยอดรวมเดิม (ราคาตอนใส่ตะกร้า) และยอดรวมใหม่ (ราคา/จำนวนที่ซื้อได้จริง)
+ */
+public class CheckoutValidationReport {
+    
+    private List<CheckoutLine> lines;
+    private BigDecimal previousTotal;
+    private BigDecimal currentTotal;
+    
+    public CheckoutValidationReport() {}
+    
+    public CheckoutValidationReport(List<CheckoutLine> lines) {
+        this.lines = lines;
+        long previous = 0;
+        long current = 0;
+        for (CheckoutLine line : lines) {
+            previous = Math.addExact(previous, line.getPreviousTotalMinor());
+            current = Math.addExact(current, line.getLineTotalMinor());
+        }
+        this.previousTotal = Money.toBigDecimal(previous, Money.DEFAULT_CURRENCY);
+        this.currentTotal = Money.toBigDecimal(current, Money.DEFAULT_CURRENCY);
+    }
+    
+    /**
+     * ไม่มีอะไรเปลี่ยน ชำระเงินต่อได้ทันที
+     */
+    public boolean isValid() {
+        return lines.stream().allMatch(line -> line.getStatus() == CheckoutLine.Status.OK);
+    }
+    
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+    
+    public boolean hasStockIssues() {
+        return lines.stream().anyMatch(CheckoutLine::hasStockIssue);
+    }
+    
+    public boolean hasPriceChanges() {
+        return lines.stream().anyMatch(CheckoutLine::isPriceChanged);
+    }
+    
+    public List<CheckoutLine> getIssues() {
+        return lines.stream().filter(line -> line.getStatus() != CheckoutLine.Status.OK).toList();
+    }
+    
+    // Getters and Setters
+    public List<CheckoutLine> getLines() { return lines; }
+    public void setLines(List<CheckoutLine> lines) { this.lines = lines; }
+    
+    public BigDecimal getPreviousTotal() { return previousTotal; }
+    public void setPreviousTotal(BigDecimal previousTotal) { this.previousTotal = previousTotal; }
+    
+    public BigDecimal getCurrentTotal() { return currentTotal; }
+    public void setCurrentTotal(BigDecimal currentTotal) { this.currentTotal = currentTotal; }
+}
@@ -0,0 +1,51 @@
+package com.example.E_commerceStore.WebApp.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comment สำหรับส่งให้ frontend พร้อม replies ซ้อนกันเป็น tree
+ * Same field names as the Comment entity JSON (user.id/name/picture, isEdited).
+ */
+public class CommentDTO {
+    public Long id;
+    public Long parentId;
+    public Long productId;
+    public UserDTO user;
+    public String content;
+    public Integer rating;
+    public String createdAt;
+    public String updatedAt;
+    public Boolean isEdited;
+    public long helpfulCount;
+    public long unhelpfulCount;
+    public String moderationStatus;
+    public List<CommentDTO> replies = new ArrayList<>();
+
+    public CommentDTO(CommentView view) {
+        this.id = view.getId();
+        this.parentId = view.getParentId();
+        this.productId = view.getProductId();
+        this.user = new UserDTO(view.getUserId(), view.getUserName(), view.getUserPicture());
+        this.content = view.getContent();
+        this.rating = view.getRating();
+        this.createdAt = view.getCreatedAt() != null ? view.getCreatedAt().toString() : null;
+        this.updatedAt = view.getUpdatedAt() != null ? view.getUpdatedAt().toString() : null;
+        this.isEdited = view.getIsEdited();
+        this.helpfulCount = view.getHelpfulCount() != null ? view.getHelpfulCount() : 0;
+        this.unhelpfulCount = view.getUnhelpfulCount() != null ? view.getUnhelpfulCount() : 0;
+        this.moderationStatus = view.getModerationStatus();
+    }
+
+    public static class UserDTO {
+        public Long id;
+        public String name;
+        public String picture;
+
+        public UserDTO(Long id, String name, String picture) {
+            this.id = id;
+            this.name = name;
+            this.picture = picture;
+        }
+    }
+}
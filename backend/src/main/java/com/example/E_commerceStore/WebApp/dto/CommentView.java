@@ -0,0 +1,25 @@
+package com.example.E_commerceStore.WebApp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * แถว comment พร้อมข้อมูลผู้เขียนที่ใช้แสดงผล (projection ของ native query)
+ * Used by the thread loader so no Comment/User entity is ever loaded or serialized.
+ */
+public interface CommentView {
+    Long getId();
+    Long getParentId();
+    Long getProductId();
+    String getContent();
+    Integer getRating();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+    Boolean getIsEdited();
+    Long getHelpfulCount();
+    Long getUnhelpfulCount();
+    String getModerationStatus();
+    String getModerationReason();
+    Long getUserId();
+    String getUserName();
+    String getUserPicture();
+}
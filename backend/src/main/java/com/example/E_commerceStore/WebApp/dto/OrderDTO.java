@@ -1,19 +1,24 @@
 package com.example.E_commerceStore.WebApp.dto;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 import com.example.E_commerceStore.WebApp.model.Order;
 import com.example.E_commerceStore.WebApp.model.OrderItem;
 import com.example.E_commerceStore.WebApp.model.Product;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 public class OrderDTO {
     public Long id;
     public String orderNumber;
     public String createdAt;
     public String status;
-    public Double totalAmount;
+    public String statusDisplayName;
+    public BigDecimal totalAmount;
     public String shippingAddress;
     public String phoneNumber;
+    public String estimatedDelivery;
     public List<OrderItemDTO> orderItems;
 
     public OrderDTO(Order order) {
@@ -21,18 +26,21 @@ public class OrderDTO {
         this.orderNumber = order.getOrderNumber();
         this.createdAt = order.getCreatedAt() != null ? order.getCreatedAt().toString() : null;
         this.status = order.getStatus() != null ? order.getStatus().name() : null;
+        this.statusDisplayName = order.getStatus() != null ? order.getStatus().getDisplayName() : null;
         this.totalAmount = order.getTotalAmount();
         this.shippingAddress = order.getShippingAddress();
         this.phoneNumber = order.getPhoneNumber();
+        this.estimatedDelivery = order.getEstimatedDelivery() != null ? order.getEstimatedDelivery().toString() : null;
         this.orderItems = order.getOrderItems() != null ? order.getOrderItems().stream().map(OrderItemDTO::new).collect(Collectors.toList()) : null;
     }
 
     public static class OrderItemDTO {
+        @JsonSerialize(using = ToStringSerializer.class) // snowflake id, beyond JS number precision
         public Long id;
         public ProductDTO product;
         public Integer quantity;
-        public Double priceAtTime;
-        public Double subtotal;
+        public BigDecimal priceAtTime;
+        public BigDecimal subtotal;
 
         public OrderItemDTO(OrderItem item) {
             this.id = item.getId();
@@ -0,0 +1,18 @@
+package com.example.E_commerceStore.WebApp.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * แถวสรุปคำสั่งซื้อสำหรับหน้ารายการ (ไม่โหลด order items ทั้งหมด)
+ * Projection ของ OrderRepository.findOrderSummaries
+ */
+public interface OrderSummaryView {
+    Long getId();
+    String getOrderNumber();
+    String getStatus();
+    BigDecimal getTotalAmount();
+    LocalDateTime getCreatedAt();
+    Long getItemCount();
+    String getThumbnailUrl();
+}
@@ -6,6 +6,7 @@ public class PaymentIntentRequest {
     private Long amount; // Amount in cents
     private String currency;
     private List<ProductItem> products;
+    private String orderNumber; // Optional: order this payment is for
 
     // Constructors
     public PaymentIntentRequest() {}
@@ -41,6 +42,14 @@ public class PaymentIntentRequest {
         this.products = products;
     }
 
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+
     // Inner class for product items
     public static class ProductItem {
         private String id;
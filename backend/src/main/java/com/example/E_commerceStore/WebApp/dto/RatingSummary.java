@@ -0,0 +1,47 @@
+package com.example.E_commerceStore.WebApp.dto;
+
+import com.example.E_commerceStore.WebApp.model.ProductRatingStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * สรุปคะแนนรีวิวของสินค้า (snapshot ที่ไม่เปลี่ยนแปลง ใช้เก็บใน cache ได้)
+ */
+public record RatingSummary(long productId, long totalComments, long ratedComments, long ratingSum,
+                            long oneStar, long twoStar, long threeStar, long fourStar, long fiveStar) {
+
+    public static RatingSummary empty(long productId) {
+        return new RatingSummary(productId, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public static RatingSummary of(ProductRatingStats stats) {
+        return new RatingSummary(stats.getProductId(), stats.getCommentCount(), stats.getRatingCount(),
+            stats.getRatingSum(), stats.getStar1(), stats.getStar2(), stats.getStar3(),
+            stats.getStar4(), stats.getStar5());
+    }
+
+    public double averageRating() {
+        return ratedComments > 0 ? (double) ratingSum / ratedComments : 0.0;
+    }
+
+    public long count(int stars) {
+        return switch (stars) {
+            case 1 -> oneStar;
+            case 2 -> twoStar;
+            case 3 -> threeStar;
+            case 4 -> fourStar;
+            case 5 -> fiveStar;
+            default -> 0;
+        };
+    }
+
+    // "1".."5" -> count, the shape the product page expects
+    public Map<String, Long> distribution() {
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (int stars = 1; stars <= 5; stars++) {
+            distribution.put(String.valueOf(stars), count(stars));
+        }
+        return distribution;
+    }
+}
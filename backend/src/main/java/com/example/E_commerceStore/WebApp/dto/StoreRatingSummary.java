@@ -0,0 +1,36 @@
+package com.example.E_commerceStore.WebApp.dto;
+
+import com.example.E_commerceStore.WebApp.model.StoreRatingStats;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * สรุปคะแนนรีวิวรวมของร้านค้า (snapshot ที่ไม่เปลี่ยนแปลง ใช้เก็บใน cache ได้)
+ * Serialized as is on store responses.
+ */
+public record StoreRatingSummary(long storeId, double averageRating, long totalReviews, long ratedReviews,
+                                 Map<String, Long> ratingDistribution) {
+
+    public static StoreRatingSummary empty(long storeId) {
+        return new StoreRatingSummary(storeId, 0.0, 0, 0, distribution(0, 0, 0, 0, 0));
+    }
+
+    public static StoreRatingSummary of(StoreRatingStats stats) {
+        double average = stats.getRatingCount() > 0
+            ? Math.round((double) stats.getRatingSum() / stats.getRatingCount() * 10.0) / 10.0
+            : 0.0;
+        return new StoreRatingSummary(stats.getStoreId(), average, stats.getCommentCount(), stats.getRatingCount(),
+            distribution(stats.getStar1(), stats.getStar2(), stats.getStar3(), stats.getStar4(), stats.getStar5()));
+    }
+
+    // "1".."5" -> count, same shape as the product rating endpoint
+    private static Map<String, Long> distribution(long... counts) {
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (int stars = 1; stars <= 5; stars++) {
+            distribution.put(String.valueOf(stars), counts[stars - 1]);
+        }
+        return Collections.unmodifiableMap(distribution);
+    }
+}
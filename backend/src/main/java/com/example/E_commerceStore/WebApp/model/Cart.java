@@ -31,6 +31,10 @@ public class Cart {
     @Column
     private String sessionId; // สำหรับ guest users (ถ้าต้องการในอนาคต)
     
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version; // optimistic locking / ETag ของตะกร้า
+    
     // Constructors
     public Cart() {}
     
@@ -57,6 +61,9 @@ public class Cart {
     public String getSessionId() { return sessionId; }
     public void setSessionId(String sessionId) { this.sessionId = sessionId; }
     
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    
     // Helper methods
     public void addCartItem(CartItem cartItem) {
         cartItems.add(cartItem);
@@ -71,9 +78,12 @@ public class Cart {
     }
     
     public BigDecimal getTotalAmount() {
-        return cartItems.stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Summed in minor units; one BigDecimal for the result instead of one per line
+        long total = 0;
+        for (CartItem item : cartItems) {
+            total = Math.addExact(total, Math.multiplyExact(Money.minorUnits(item.getPriceAtTime()), item.getQuantity()));
+        }
+        return Money.toBigDecimal(total, Money.DEFAULT_CURRENCY);
     }
     
     public int getTotalItems() {
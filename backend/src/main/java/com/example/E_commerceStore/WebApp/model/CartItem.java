@@ -6,7 +6,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_cart_items_cart_product", columnNames = {"cart_id", "product_id"})
+})
 public class CartItem {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -38,6 +40,11 @@ public class CartItem {
     @Column
     private LocalDateTime updatedAt = LocalDateTime.now();
     
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private Long version;
+    
     // Constructors
     public CartItem() {}
     
@@ -76,9 +83,12 @@ public class CartItem {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
     
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    
     // Helper methods
     public BigDecimal getTotalPrice() {
-        return priceAtTime.multiply(BigDecimal.valueOf(quantity));
+        return Money.of(priceAtTime).times(quantity).toBigDecimal();
     }
     
     public boolean isValidQuantity() {
@@ -0,0 +1,130 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import com.example.E_commerceStore.WebApp.util.SnowflakeId;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * คำขอ checkout ที่รอประมวลผลแบบ async (ตารางนี้คือคิว)
+ * Workers lock QUEUED rows with FOR UPDATE SKIP LOCKED for the duration of the
+ * transaction that creates the orders, so several workers/nodes can share the
+ * queue and a crashed worker simply releases its rows. Enqueue locks the
+ * user's row before checking for a QUEUED job, so a user has at most one job
+ * in flight (the partial unique index uk_checkout_jobs_user_in_flight from V15
+ * backs this up where the migration has been applied).
+ */
+@Entity
+@Table(name = "checkout_jobs", indexes = {
+    @Index(name = "idx_checkout_jobs_status_id", columnList = "status, id"),
+    @Index(name = "idx_checkout_jobs_user_status", columnList = "user_id, status")
+})
+public class CheckoutJob {
+    @Id
+    @SnowflakeId
+    private Long id;
+    
+    @Column(name = "token", unique = true, nullable = false, length = 36)
+    private String token;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "shipping_address")
+    private String shippingAddress;
+    
+    @Column(name = "phone_number")
+    private String phoneNumber;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.QUEUED;
+    
+    @Column(name = "order_id")
+    private Long orderId;
+    
+    @Column(name = "order_number")
+    private String orderNumber;
+    
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+    
+    // attempts that hit a transient database error (deadlock, lock timeout); the job stays QUEUED
+    @Column(name = "attempts", nullable = false, columnDefinition = "integer default 0 not null")
+    private int attempts;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+    
+    // Constructors
+    public CheckoutJob() {}
+    
+    public CheckoutJob(Long userId, String shippingAddress, String phoneNumber) {
+        this.token = UUID.randomUUID().toString();
+        this.userId = userId;
+        this.shippingAddress = shippingAddress;
+        this.phoneNumber = phoneNumber;
+    }
+    
+    @PreUpdate
+    public void preUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    public void complete(Order order) {
+        this.status = Status.COMPLETED;
+        this.orderId = order.getId();
+        this.orderNumber = order.getOrderNumber();
+        this.errorMessage = null;
+    }
+    
+    public void fail(String errorMessage) {
+        this.status = Status.FAILED;
+        this.errorMessage = errorMessage;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getToken() { return token; }
+    public void setToken(String token) { this.token = token; }
+    
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public String getShippingAddress() { return shippingAddress; }
+    public void setShippingAddress(String shippingAddress) { this.shippingAddress = shippingAddress; }
+    
+    public String getPhoneNumber() { return phoneNumber; }
+    public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+    
+    public String getOrderNumber() { return orderNumber; }
+    public void setOrderNumber(String orderNumber) { this.orderNumber = orderNumber; }
+    
+    public int getAttempts() { return attempts; }
+    
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    public enum Status {
+        QUEUED,
+        COMPLETED,
+        FAILED
+    }
+}
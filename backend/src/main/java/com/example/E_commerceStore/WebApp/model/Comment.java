@@ -5,7 +5,13 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+    @Index(name = "idx_comments_product_parent_created", columnList = "product_id, parent_comment_id, created_at, id"),
+    @Index(name = "idx_comments_user_created", columnList = "user_id, created_at, id"),
+    @Index(name = "idx_comments_created", columnList = "created_at, id"),
+    @Index(name = "idx_comments_product_parent_helpful", columnList = "product_id, parent_comment_id, helpful_score, id"),
+    @Index(name = "idx_comments_moderation_created", columnList = "moderation_status, created_at, id")
+})
 public class Comment {
     
     @Id
@@ -37,6 +43,25 @@ public class Comment {
     @Column(name = "is_edited", nullable = false)
     private Boolean isEdited = false;
     
+    // โหวตรีวิว: อัปเดตแบบ batch โดย CommentVoteService (ไม่แก้ผ่าน entity)
+    @Column(name = "helpful_count", insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+    private long helpfulCount;
+    
+    @Column(name = "unhelpful_count", insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+    private long unhelpfulCount;
+    
+    // Wilson lower bound ของสัดส่วน helpful ใช้เรียง sort=helpful
+    @Column(name = "helpful_score", insertable = false, updatable = false, columnDefinition = "double precision default 0 not null")
+    private double helpfulScore;
+    
+    // ผลตรวจเนื้อหา: PENDING = รอ admin ตรวจ (ไม่แสดงต่อสาธารณะ)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "moderation_status", length = 20, columnDefinition = "varchar(20) default 'APPROVED' not null")
+    private ModerationStatus moderationStatus = ModerationStatus.APPROVED;
+    
+    @Column(name = "moderation_reason", length = 500)
+    private String moderationReason;
+    
     // Parent comment for replies (self-referencing)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_comment_id")
@@ -125,6 +150,38 @@ public class Comment {
         this.isEdited = isEdited;
     }
     
+    public long getHelpfulCount() {
+        return helpfulCount;
+    }
+    
+    public long getUnhelpfulCount() {
+        return unhelpfulCount;
+    }
+    
+    public double getHelpfulScore() {
+        return helpfulScore;
+    }
+    
+    public ModerationStatus getModerationStatus() {
+        return moderationStatus;
+    }
+    
+    public void setModerationStatus(ModerationStatus moderationStatus) {
+        this.moderationStatus = moderationStatus;
+    }
+    
+    public String getModerationReason() {
+        return moderationReason;
+    }
+    
+    public void setModerationReason(String moderationReason) {
+        this.moderationReason = moderationReason;
+    }
+    
+    public boolean isApproved() {
+        return moderationStatus == ModerationStatus.APPROVED;
+    }
+    
     public Comment getParentComment() {
         return parentComment;
     }
@@ -0,0 +1,64 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import com.example.E_commerceStore.WebApp.util.SnowflakeId;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * โหวตว่ารีวิวมีประโยชน์หรือไม่ (หนึ่งโหวตต่อผู้ใช้ต่อ comment)
+ * Source of truth for the helpful/unhelpful counters on comments, which are
+ * aggregated from these rows asynchronously by CommentVoteService.
+ */
+@Entity
+@Table(name = "comment_votes",
+    uniqueConstraints = @UniqueConstraint(name = "uk_comment_votes_comment_user", columnNames = {"comment_id", "user_id"}))
+public class CommentVote {
+    @Id
+    @SnowflakeId
+    private Long id;
+    
+    @Column(name = "comment_id", nullable = false)
+    private Long commentId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    // true = มีประโยชน์, false = ไม่มีประโยชน์
+    @Column(name = "helpful", nullable = false)
+    private boolean helpful;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    public CommentVote() {}
+    
+    public CommentVote(Long commentId, Long userId, boolean helpful) {
+        this.commentId = commentId;
+        this.userId = userId;
+        this.helpful = helpful;
+    }
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getCommentId() { return commentId; }
+    public void setCommentId(Long commentId) { this.commentId = commentId; }
+    
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public boolean isHelpful() { return helpful; }
+    public void setHelpful(boolean helpful) {
+        this.helpful = helpful;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,98 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import com.example.E_commerceStore.WebApp.util.SnowflakeId;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * ผลลัพธ์ของ request ที่มี Idempotency-Key (ต่อผู้ใช้) เก็บไว้ replay จนหมดอายุ
+ * A row is IN_PROGRESS while the first request runs and COMPLETED with the
+ * serialized response afterwards; the unique (owner, key) constraint makes
+ * sure only one request per key ever executes.
+ */
+@Entity
+@Table(name = "idempotency_records",
+    uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_owner_key", columnNames = {"owner", "idempotency_key"}),
+    indexes = @Index(name = "idx_idempotency_expires", columnList = "expires_at"))
+public class IdempotencyRecord {
+    @Id
+    @SnowflakeId
+    private Long id;
+    
+    // "user:<id>" or "session:<id>" for anonymous callers
+    @Column(name = "owner", nullable = false, length = 100)
+    private String owner;
+    
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+    
+    @Column(name = "request_path", nullable = false)
+    private String requestPath;
+    
+    // SHA-256 of the request body; the same key with a different body is rejected
+    @Column(name = "fingerprint", nullable = false, length = 64)
+    private String fingerprint;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.IN_PROGRESS;
+    
+    @Column(name = "response_status")
+    private Integer responseStatus;
+    
+    @Column(name = "response_body", columnDefinition = "text")
+    private String responseBody;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    // Constructors
+    public IdempotencyRecord() {}
+    
+    public IdempotencyRecord(String owner, String idempotencyKey, String requestPath, String fingerprint, LocalDateTime expiresAt) {
+        this.owner = owner;
+        this.idempotencyKey = idempotencyKey;
+        this.requestPath = requestPath;
+        this.fingerprint = fingerprint;
+        this.expiresAt = expiresAt;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+    
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+    
+    public String getRequestPath() { return requestPath; }
+    public void setRequestPath(String requestPath) { this.requestPath = requestPath; }
+    
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    
+    public Integer getResponseStatus() { return responseStatus; }
+    public void setResponseStatus(Integer responseStatus) { this.responseStatus = responseStatus; }
+    
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+}
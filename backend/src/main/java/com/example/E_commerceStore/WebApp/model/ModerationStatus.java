@@ -0,0 +1,8 @@
+package com.example.E_commerceStore.WebApp.model;
+
+// สถานะการตรวจเนื้อหาของ comment (PENDING = รอ admin ตรวจ ยังไม่แสดงต่อสาธารณะ)
+public enum ModerationStatus {
+    APPROVED,
+    PENDING,
+    REJECTED
+}
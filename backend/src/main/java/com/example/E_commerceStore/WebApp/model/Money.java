@@ -0,0 +1,107 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * จำนวนเงินแบบแม่นยำ เก็บเป็นหน่วยย่อยที่สุด (สตางค์/เซนต์) เป็น long พร้อมสกุลเงิน
+ *
+ * Arithmetic is plain long math (overflow-checked), so totals are exact and do
+ * not allocate a BigDecimal per line. BigDecimal is only used at the edges:
+ * reading prices from entities and writing numeric(12,2) columns / JSON.
+ * The minor-unit amount is also what Stripe expects.
+ */
+public record Money(long amount, String currency) implements Comparable<Money> {
+
+    // ร้านนี้ขายเป็นบาท
+    public static final String DEFAULT_CURRENCY = "THB";
+
+    public Money {
+        if (currency == null || currency.isBlank()) {
+            throw new IllegalArgumentException("Currency is required");
+        }
+        currency = currency.toUpperCase();
+    }
+
+    public static Money zero(String currency) {
+        return new Money(0, currency);
+    }
+
+    public static Money ofMinor(long amount, String currency) {
+        return new Money(amount, currency);
+    }
+
+    /**
+     * From a major-unit amount (e.g. 1099.99 baht), rounded half-up to the currency's fraction digits
+     */
+    public static Money of(BigDecimal major, String currency) {
+        return new Money(minorUnits(major, currency), currency);
+    }
+
+    public static Money of(BigDecimal major) {
+        return of(major, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Primitive conversion for hot loops: major-unit amount to minor units without creating a Money
+     */
+    public static long minorUnits(BigDecimal major, String currency) {
+        if (major == null) {
+            return 0;
+        }
+        return major.setScale(fractionDigits(currency), RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static long minorUnits(BigDecimal major) {
+        return minorUnits(major, DEFAULT_CURRENCY);
+    }
+
+    public static BigDecimal toBigDecimal(long amount, String currency) {
+        return BigDecimal.valueOf(amount, fractionDigits(currency));
+    }
+
+    private static int fractionDigits(String currency) {
+        int digits = Currency.getInstance(currency.toUpperCase()).getDefaultFractionDigits();
+        return Math.max(digits, 0);
+    }
+
+    public Money plus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.addExact(amount, other.amount), currency);
+    }
+
+    public Money minus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.subtractExact(amount, other.amount), currency);
+    }
+
+    public Money times(long quantity) {
+        return new Money(Math.multiplyExact(amount, quantity), currency);
+    }
+
+    public boolean isZero() {
+        return amount == 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(amount, currency);
+    }
+
+    private void checkCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(amount, other.amount);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+}
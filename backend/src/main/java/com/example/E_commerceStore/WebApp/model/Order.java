@@ -1,12 +1,18 @@
 package com.example.E_commerceStore.WebApp.model;
 
+import com.example.E_commerceStore.WebApp.util.SnowflakeIdGenerator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+    @Index(name = "idx_orders_user_created", columnList = "user_id, created_at, id")
+})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -18,8 +24,8 @@ public class Order {
     @Column(name = "user_id", nullable = false)
     private Long userId;
     
-    @Column(name = "total_amount", nullable = false)
-    private Double totalAmount;
+    @Column(name = "total_amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalAmount;
     
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
@@ -40,7 +46,12 @@ public class Order {
     @Column(name = "estimated_delivery")
     private LocalDateTime estimatedDelivery;
     
-    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    // last failed payment attempt (Stripe payment_intent.payment_failed); the order stays pending
+    @Column(name = "payment_error", length = 500)
+    private String paymentError;
+    
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @BatchSize(size = 50)
     private List<OrderItem> orderItems = new ArrayList<>();
     
     // Constructors
@@ -50,18 +61,18 @@ public class Order {
         this.orderNumber = generateOrderNumber();
     }
     
-    public Order(Long userId, Double totalAmount, String shippingAddress, String phoneNumber) {
+    public Order(Long userId, Money totalAmount, String shippingAddress, String phoneNumber) {
         this();
         this.userId = userId;
-        this.totalAmount = totalAmount;
+        this.totalAmount = totalAmount.toBigDecimal();
         this.shippingAddress = shippingAddress;
         this.phoneNumber = phoneNumber;
         this.estimatedDelivery = LocalDateTime.now().plusDays(3); // Default 3 days
     }
     
-    // Generate unique order number
+    // Generate unique, time-ordered order number
     private String generateOrderNumber() {
-        return "ORD" + System.currentTimeMillis() + (int)(Math.random() * 1000);
+        return "ORD" + SnowflakeIdGenerator.getDefault().nextId();
     }
     
     @PreUpdate
@@ -94,14 +105,19 @@ public class Order {
         this.userId = userId;
     }
     
-    public Double getTotalAmount() {
+    public BigDecimal getTotalAmount() {
         return totalAmount;
     }
     
-    public void setTotalAmount(Double totalAmount) {
+    public void setTotalAmount(BigDecimal totalAmount) {
         this.totalAmount = totalAmount;
     }
     
+    @JsonIgnore
+    public Money getTotal() {
+        return Money.of(totalAmount);
+    }
+    
     public OrderStatus getStatus() {
         return status;
     }
@@ -150,6 +166,14 @@ public class Order {
         this.estimatedDelivery = estimatedDelivery;
     }
     
+    public String getPaymentError() {
+        return paymentError;
+    }
+    
+    public void setPaymentError(String paymentError) {
+        this.paymentError = paymentError;
+    }
+    
     public List<OrderItem> getOrderItems() {
         return orderItems;
     }
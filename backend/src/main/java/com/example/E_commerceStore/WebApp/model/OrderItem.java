@@ -1,42 +1,54 @@
 package com.example.E_commerceStore.WebApp.model;
 
+import com.example.E_commerceStore.WebApp.util.SnowflakeId;
 import jakarta.persistence.*;
-import com.fasterxml.jackson.annotation.JsonBackReference;
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import java.math.BigDecimal;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 @Entity
 @Table(name = "order_items")
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId // pre-assigned so an order's items are inserted in one JDBC batch
+    @JsonSerialize(using = ToStringSerializer.class) // 64-bit ids exceed JS number precision
     private Long id;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id", nullable = false)
+    @JsonIgnore // Prevent circular reference
     private Order order;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
+    @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     private Product product;
     
     @Column(name = "quantity", nullable = false)
     private Integer quantity;
     
-    @Column(name = "price_at_time", nullable = false)
-    private Double priceAtTime;
+    @Column(name = "price_at_time", nullable = false, precision = 12, scale = 2)
+    private BigDecimal priceAtTime;
     
-    @Column(name = "subtotal", nullable = false)
-    private Double subtotal;
+    @Column(name = "subtotal", nullable = false, precision = 12, scale = 2)
+    private BigDecimal subtotal;
     
     // Constructors
     public OrderItem() {}
     
-    public OrderItem(Order order, Product product, Integer quantity, Double priceAtTime) {
+    public OrderItem(Order order, Product product, Integer quantity, BigDecimal priceAtTime) {
         this.order = order;
         this.product = product;
         this.quantity = quantity;
         this.priceAtTime = priceAtTime;
-        this.subtotal = quantity * priceAtTime;
+        this.subtotal = calculateSubtotal();
+    }
+    
+    // Exact price x quantity in minor units
+    private BigDecimal calculateSubtotal() {
+        return Money.of(priceAtTime).times(quantity).toBigDecimal();
     }
     
     // Getters and Setters
@@ -72,27 +84,27 @@ public class OrderItem {
         this.quantity = quantity;
         // Recalculate subtotal when quantity changes
         if (this.priceAtTime != null) {
-            this.subtotal = quantity * this.priceAtTime;
+            this.subtotal = calculateSubtotal();
         }
     }
     
-    public Double getPriceAtTime() {
+    public BigDecimal getPriceAtTime() {
         return priceAtTime;
     }
     
-    public void setPriceAtTime(Double priceAtTime) {
+    public void setPriceAtTime(BigDecimal priceAtTime) {
         this.priceAtTime = priceAtTime;
         // Recalculate subtotal when price changes
         if (this.quantity != null) {
-            this.subtotal = this.quantity * priceAtTime;
+            this.subtotal = calculateSubtotal();
         }
     }
     
-    public Double getSubtotal() {
+    public BigDecimal getSubtotal() {
         return subtotal;
     }
     
-    public void setSubtotal(Double subtotal) {
+    public void setSubtotal(BigDecimal subtotal) {
         this.subtotal = subtotal;
     }
 }
@@ -0,0 +1,125 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import com.example.E_commerceStore.WebApp.util.SnowflakeId;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * งานเบื้องหลังที่ต้องทำหลัง commit (อีเมล, ยืนยัน order, คืน stock ฯลฯ)
+ * Rows are inserted in the same transaction as the change that causes them,
+ * so a side effect is recorded if and only if that change commits. The outbox
+ * relay delivers them to in-process handlers afterwards, at least once.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+    @Index(name = "idx_outbox_events_status_next", columnList = "status, next_attempt_at, id")
+})
+public class OutboxEvent {
+    // Event types
+    public static final String PAYMENT_SUCCEEDED = "PAYMENT_SUCCEEDED";
+    public static final String PAYMENT_FAILED = "PAYMENT_FAILED";
+    public static final String PAYMENT_CANCELED = "PAYMENT_CANCELED";
+    public static final String ORDER_CONFIRMED = "ORDER_CONFIRMED";
+    public static final String ORDER_CANCELLED = "ORDER_CANCELLED";
+    
+    @Id
+    @SnowflakeId
+    private Long id;
+    
+    @Column(name = "event_type", nullable = false, length = 50)
+    private String eventType;
+    
+    @Column(name = "aggregate_type", nullable = false, length = 50)
+    private String aggregateType;
+    
+    @Column(name = "aggregate_id", nullable = false)
+    private String aggregateId;
+    
+    // Optional de-duplication key (e.g. the Stripe event id of a webhook that may be redelivered)
+    @Column(name = "event_key", unique = true)
+    private String eventKey;
+    
+    @Column(name = "payload", nullable = false, columnDefinition = "text")
+    private String payload;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.PENDING;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts = 0;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+    
+    // relay batch that currently holds the lease; results are only written by that holder
+    @Column(name = "lease_owner", length = 36)
+    private String leaseOwner;
+    
+    // Constructors
+    public OutboxEvent() {}
+    
+    public OutboxEvent(String eventType, String aggregateType, String aggregateId, String payload) {
+        this.eventType = eventType;
+        this.aggregateType = aggregateType;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    
+    public String getAggregateType() { return aggregateType; }
+    public void setAggregateType(String aggregateType) { this.aggregateType = aggregateType; }
+    
+    public String getAggregateId() { return aggregateId; }
+    public void setAggregateId(String aggregateId) { this.aggregateId = aggregateId; }
+    
+    public String getEventKey() { return eventKey; }
+    public void setEventKey(String eventKey) { this.eventKey = eventKey; }
+    
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getProcessedAt() { return processedAt; }
+    public void setProcessedAt(LocalDateTime processedAt) { this.processedAt = processedAt; }
+    
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    
+    public enum Status {
+        PENDING,
+        PROCESSED,
+        FAILED
+    }
+}
@@ -44,6 +44,10 @@ public class Product {
     @Column(nullable = true)
     private Integer stock = 0;
 
+    // สินค้า flash sale: ตัดสต็อกจาก DB เป็นก้อนด้วย conditional UPDATE แล้วขายจาก striped counter ในหน่วยความจำ (ดู FlashSaleInventoryService)
+    @Column(nullable = true)
+    private Boolean flashSale = false;
+
     @Column(nullable = true)
     private LocalDateTime createdAt = LocalDateTime.now();
 
@@ -97,6 +101,9 @@ public class Product {
         this.updatedAt = LocalDateTime.now();
     }
 
+    public boolean isFlashSale() { return Boolean.TRUE.equals(flashSale); }
+    public void setFlashSale(Boolean flashSale) { this.flashSale = flashSale; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
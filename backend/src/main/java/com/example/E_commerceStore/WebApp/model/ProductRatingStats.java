@@ -0,0 +1,78 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * สถิติรีวิวของสินค้า (นับเฉพาะ comment หลัก ไม่รวม reply)
+ * Maintained incrementally by ProductRatingService in the same transaction as
+ * the comment change, so reading it never scans the comments table.
+ */
+@Entity
+@Table(name = "product_rating_stats")
+public class ProductRatingStats {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+    
+    @Column(name = "comment_count", nullable = false)
+    private long commentCount;
+    
+    @Column(name = "rating_count", nullable = false)
+    private long ratingCount;
+    
+    @Column(name = "rating_sum", nullable = false)
+    private long ratingSum;
+    
+    @Column(name = "star1", nullable = false)
+    private long star1;
+    
+    @Column(name = "star2", nullable = false)
+    private long star2;
+    
+    @Column(name = "star3", nullable = false)
+    private long star3;
+    
+    @Column(name = "star4", nullable = false)
+    private long star4;
+    
+    @Column(name = "star5", nullable = false)
+    private long star5;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public ProductRatingStats() {}
+    
+    // Getters and Setters
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    
+    public long getCommentCount() { return commentCount; }
+    public void setCommentCount(long commentCount) { this.commentCount = commentCount; }
+    
+    public long getRatingCount() { return ratingCount; }
+    public void setRatingCount(long ratingCount) { this.ratingCount = ratingCount; }
+    
+    public long getRatingSum() { return ratingSum; }
+    public void setRatingSum(long ratingSum) { this.ratingSum = ratingSum; }
+    
+    public long getStar1() { return star1; }
+    public void setStar1(long star1) { this.star1 = star1; }
+    
+    public long getStar2() { return star2; }
+    public void setStar2(long star2) { this.star2 = star2; }
+    
+    public long getStar3() { return star3; }
+    public void setStar3(long star3) { this.star3 = star3; }
+    
+    public long getStar4() { return star4; }
+    public void setStar4(long star4) { this.star4 = star4; }
+    
+    public long getStar5() { return star5; }
+    public void setStar5(long star5) { this.star5 = star5; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -2,6 +2,8 @@ package com.example.E_commerceStore.WebApp.model;
 
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.example.E_commerceStore.WebApp.dto.StoreRatingSummary;
 import java.time.LocalDateTime;
 
 @Entity
@@ -32,6 +34,11 @@ public class Store {
     @Column(nullable = false)
     private String status = "active";
 
+    // คะแนนรวมของร้าน (จาก store_rating_stats) ใส่โดย controller ตอนตอบกลับ ไม่เก็บในตาราง stores
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private StoreRatingSummary rating;
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -54,4 +61,6 @@ public class Store {
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+    public StoreRatingSummary getRating() { return rating; }
+    public void setRating(StoreRatingSummary rating) { this.rating = rating; }
 }
@@ -0,0 +1,78 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * สถิติรีวิวรวมของร้านค้า (ผลรวมของ product_rating_stats ทุกสินค้าในร้าน)
+ * Maintained incrementally by StoreRatingService alongside the product row, so a
+ * store page never aggregates over its products or their comments.
+ */
+@Entity
+@Table(name = "store_rating_stats")
+public class StoreRatingStats {
+    @Id
+    @Column(name = "store_id")
+    private Long storeId;
+    
+    @Column(name = "comment_count", nullable = false)
+    private long commentCount;
+    
+    @Column(name = "rating_count", nullable = false)
+    private long ratingCount;
+    
+    @Column(name = "rating_sum", nullable = false)
+    private long ratingSum;
+    
+    @Column(name = "star1", nullable = false)
+    private long star1;
+    
+    @Column(name = "star2", nullable = false)
+    private long star2;
+    
+    @Column(name = "star3", nullable = false)
+    private long star3;
+    
+    @Column(name = "star4", nullable = false)
+    private long star4;
+    
+    @Column(name = "star5", nullable = false)
+    private long star5;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public StoreRatingStats() {}
+    
+    // Getters and Setters
+    public Long getStoreId() { return storeId; }
+    public void setStoreId(Long storeId) { this.storeId = storeId; }
+    
+    public long getCommentCount() { return commentCount; }
+    public void setCommentCount(long commentCount) { this.commentCount = commentCount; }
+    
+    public long getRatingCount() { return ratingCount; }
+    public void setRatingCount(long ratingCount) { this.ratingCount = ratingCount; }
+    
+    public long getRatingSum() { return ratingSum; }
+    public void setRatingSum(long ratingSum) { this.ratingSum = ratingSum; }
+    
+    public long getStar1() { return star1; }
+    public void setStar1(long star1) { this.star1 = star1; }
+    
+    public long getStar2() { return star2; }
+    public void setStar2(long star2) { this.star2 = star2; }
+    
+    public long getStar3() { return star3; }
+    public void setStar3(long star3) { this.star3 = star3; }
+    
+    public long getStar4() { return star4; }
+    public void setStar4(long star4) { this.star4 = star4; }
+    
+    public long getStar5() { return star5; }
+    public void setStar5(long star5) { this.star5 = star5; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -1,9 +1,11 @@
 package com.example.E_commerceStore.WebApp.repository;
 
+import com.example.E_commerceStore.WebApp.dto.CheckoutLine;
 import com.example.E_commerceStore.WebApp.model.CartItem;
 import com.example.E_commerceStore.WebApp.model.User;
 import com.example.E_commerceStore.WebApp.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -19,9 +21,42 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     // Find all cart items for a user ID
     List<CartItem> findByUserId(Long userId);
     
+    // Cart lines with their products in one query (checkout)
+    @Query("SELECT c FROM CartItem c JOIN FETCH c.product WHERE c.user.id = :userId ORDER BY c.id")
+    List<CartItem> findByUserIdWithProduct(@Param("userId") Long userId);
+    
+    // Current price and stock for every line of the user's cart, in one query
+    @Query("SELECT new com.example.E_commerceStore.WebApp.dto.CheckoutLine(" +
+           "c.id, p.id, p.name, c.quantity, c.priceAtTime, p.price, p.stock) " +
+           "FROM CartItem c JOIN c.product p WHERE c.user.id = :userId ORDER BY c.id")
+    List<CheckoutLine> findCheckoutLinesByUserId(@Param("userId") Long userId);
+    
     // Find specific cart item by user and product
     Optional<CartItem> findByUserAndProduct(User user, Product product);
     
+    // Find the (unique) line for a product in a cart
+    @Query("SELECT c FROM CartItem c WHERE c.cart.id = :cartId AND c.product.id = :productId")
+    Optional<CartItem> findByCartIdAndProductId(@Param("cartId") Long cartId, @Param("productId") Long productId);
+    
+    /**
+     * Add-to-cart as a single statement: insert the line or bump its quantity,
+     * guarded inline by the product stock. Returns 0 when the stock guard fails.
+     * Relies on the unique (cart_id, product_id) constraint.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO cart_items (cart_id, user_id, product_id, quantity, price_at_time, added_at, updated_at) " +
+           "SELECT :cartId, :userId, p.id, :quantity, p.price, now(), now() FROM products p " +
+           "WHERE p.id = :productId AND p.stock >= :quantity " +
+           "ON CONFLICT (cart_id, product_id) DO UPDATE " +
+           "SET quantity = cart_items.quantity + EXCLUDED.quantity, updated_at = EXCLUDED.updated_at " +
+           "WHERE cart_items.quantity + EXCLUDED.quantity <= " +
+           "  (SELECT p2.stock FROM products p2 WHERE p2.id = EXCLUDED.product_id)",
+           nativeQuery = true)
+    int upsertQuantity(@Param("cartId") Long cartId,
+                       @Param("userId") Long userId,
+                       @Param("productId") Long productId,
+                       @Param("quantity") int quantity);
+    
     // Count items in cart for a user
     @Query("SELECT COUNT(c) FROM CartItem c WHERE c.user.id = :userId")
     Long countByUserId(@Param("userId") Long userId);
@@ -35,4 +70,9 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     
     // Delete cart item by user and product
     void deleteByUserAndProduct(User user, Product product);
+    
+    // Delete all items of the given carts (used by the cart sweeper)
+    @Modifying
+    @Query("DELETE FROM CartItem c WHERE c.cart.id IN :cartIds")
+    int deleteByCartIdIn(@Param("cartIds") List<Long> cartIds);
 }
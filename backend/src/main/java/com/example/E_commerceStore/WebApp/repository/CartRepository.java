@@ -3,10 +3,13 @@ package com.example.E_commerceStore.WebApp.repository;
 import com.example.E_commerceStore.WebApp.model.Cart;
 import com.example.E_commerceStore.WebApp.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -38,8 +41,61 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     /**
      * ลบตะกร้าที่ว่างเปล่า
      */
+    @Modifying
     @Query("DELETE FROM Cart c WHERE SIZE(c.cartItems) = 0")
-    void deleteEmptyCarts();
+    int deleteEmptyCarts();
+    
+    /**
+     * ค้นหา id ของตะกร้าที่ค้าง (keyset ตาม id) สำหรับ sweeper
+     * - ตะกร้าว่างที่ไม่ได้แตะเกิน emptyCutoff
+     * - ตะกร้าที่มีสินค้าแต่ทั้งตะกร้าและรายการไม่ได้แตะเกิน abandonedCutoff
+     * Locks the returned carts (skipping carts being edited right now) until the
+     * sweeper's transaction ends. Every cart change bumps the cart row first, so a
+     * cart touched after this snapshot is either re-checked against updated_at
+     * here or waits for the delete and then sees the cart is gone.
+     */
+    @Query(value = "SELECT c.id FROM carts c " +
+           "WHERE c.id > :afterId AND (" +
+           "  (NOT EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = c.id) " +
+           "   AND COALESCE(c.updated_at, c.created_at) < :emptyCutoff) " +
+           "  OR (COALESCE(c.updated_at, c.created_at) < :abandonedCutoff " +
+           "   AND NOT EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = c.id " +
+           "                   AND COALESCE(ci.updated_at, ci.added_at) >= :abandonedCutoff))) " +
+           "ORDER BY c.id LIMIT :limit FOR UPDATE OF c SKIP LOCKED", nativeQuery = true)
+    List<Long> findStaleCartIds(@Param("afterId") long afterId,
+                                @Param("emptyCutoff") LocalDateTime emptyCutoff,
+                                @Param("abandonedCutoff") LocalDateTime abandonedCutoff,
+                                @Param("limit") int limit);
+    
+    /**
+     * ลบตะกร้าตาม id (ต้องลบ cart_items ก่อน)
+     */
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+    
+    /**
+     * เวอร์ชันปัจจุบันของตะกร้า (ใช้เป็น ETag)
+     */
+    @Query("SELECT c.version FROM Cart c WHERE c.id = :cartId")
+    Optional<Long> findVersionById(@Param("cartId") Long cartId);
+    
+    /**
+     * เพิ่มเวอร์ชันตะกร้าหลังมีการแก้ไข
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.version = c.version + 1, c.updatedAt = :now WHERE c.id = :cartId")
+    int bumpVersion(@Param("cartId") Long cartId, @Param("now") LocalDateTime now);
+    
+    /**
+     * เพิ่มเวอร์ชันตะกร้าเฉพาะเมื่อเวอร์ชันตรงกับที่ client ส่งมา (If-Match)
+     * คืน 0 ถ้ามีการแก้ไขจากที่อื่นไปก่อนแล้ว
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.version = c.version + 1, c.updatedAt = :now WHERE c.id = :cartId AND c.version = :expectedVersion")
+    int bumpVersionIfMatches(@Param("cartId") Long cartId,
+                             @Param("expectedVersion") Long expectedVersion,
+                             @Param("now") LocalDateTime now);
     
     /**
      * ตรวจสอบว่า User มีตะกร้าหรือไม่
@@ -0,0 +1,57 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import com.example.E_commerceStore.WebApp.model.CheckoutJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CheckoutJobRepository extends JpaRepository<CheckoutJob, Long> {
+    
+    Optional<CheckoutJob> findByToken(String token);
+    
+    // A user may only have one checkout in flight (both would order the same cart)
+    boolean existsByUserIdAndStatus(Long userId, CheckoutJob.Status status);
+    
+    /**
+     * Lock the oldest queued jobs; rows locked by other workers are skipped, not waited on.
+     * Must run inside a transaction.
+     */
+    @Query(value = "SELECT * FROM checkout_jobs WHERE status = 'QUEUED' ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<CheckoutJob> lockNextQueued(@Param("limit") int limit);
+    
+    // Only a still-queued job is failed, so a concurrent successful attempt is never overwritten
+    @Modifying
+    @Query("UPDATE CheckoutJob j SET j.status = 'FAILED', j.errorMessage = :errorMessage, j.updatedAt = :now " +
+           "WHERE j.id = :jobId AND j.status = 'QUEUED'")
+    int markFailed(@Param("jobId") Long jobId,
+                   @Param("errorMessage") String errorMessage,
+                   @Param("now") LocalDateTime now);
+    
+    /**
+     * นับครั้งที่ล้มเหลวแบบชั่วคราว (job ยังอยู่ในคิว); fails it once max attempts are used up
+     */
+    @Modifying
+    @Query("UPDATE CheckoutJob j SET j.attempts = j.attempts + 1, j.updatedAt = :now " +
+           "WHERE j.id = :jobId AND j.status = 'QUEUED'")
+    int recordAttempt(@Param("jobId") Long jobId, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE CheckoutJob j SET j.status = 'FAILED', j.errorMessage = :errorMessage, j.updatedAt = :now " +
+           "WHERE j.id = :jobId AND j.status = 'QUEUED' AND j.attempts >= :maxAttempts")
+    int failIfOutOfAttempts(@Param("jobId") Long jobId,
+                            @Param("maxAttempts") int maxAttempts,
+                            @Param("errorMessage") String errorMessage,
+                            @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("DELETE FROM CheckoutJob j WHERE j.status IN ('COMPLETED', 'FAILED') AND j.updatedAt < :before")
+    int deleteFinishedBefore(@Param("before") LocalDateTime before);
+}
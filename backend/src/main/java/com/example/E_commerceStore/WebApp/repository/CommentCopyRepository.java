@@ -0,0 +1,74 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Bulk loading of comments through the Postgres COPY protocol.
+ *
+ * One COPY streams a whole batch of rows in a single round trip and skips the
+ * per-statement parse/plan/execute of INSERTs, which is what makes migrating
+ * millions of reviews from other marketplaces feasible. Rows go in as CSV;
+ * columns not listed (id, vote counters) take their table defaults.
+ */
+@Repository
+public class CommentCopyRepository {
+
+    private static final String COPY_SQL =
+        "COPY comments (user_id, product_id, content, rating, created_at, updated_at, is_edited, " +
+        "moderation_status, moderation_reason) FROM STDIN WITH (FORMAT csv)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * id ของ users ทั้งหมด เรียงจากน้อยไปมาก (ใช้ Arrays.binarySearch ตรวจ reference)
+     */
+    public long[] findAllUserIds() {
+        return sortedIds("SELECT id FROM users ORDER BY id");
+    }
+
+    /**
+     * id ของ products ทั้งหมด เรียงจากน้อยไปมาก
+     */
+    public long[] findAllProductIds() {
+        return sortedIds("SELECT id FROM products ORDER BY id");
+    }
+
+    /**
+     * ส่ง rows แบบ CSV (ตามลำดับคอลัมน์ใน COPY_SQL) เข้า comments ใน COPY เดียว (joins the current transaction)
+     *
+     * @return จำนวน rows ที่ถูกเพิ่ม
+     */
+    public long copyIn(byte[] csv, int length) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn(COPY_SQL, new ByteArrayInputStream(csv, 0, length));
+            } catch (IOException e) {
+                throw new RuntimeException("COPY into comments failed: " + e.getMessage(), e);
+            }
+        });
+        return rows != null ? rows : 0;
+    }
+
+    // primitive array: a few million ids cost 8 bytes each instead of a boxed HashSet entry
+    private long[] sortedIds(String sql) {
+        long[][] ids = {new long[1024]};
+        int[] size = {0};
+        jdbcTemplate.query(sql, rs -> {
+            if (size[0] == ids[0].length) {
+                ids[0] = Arrays.copyOf(ids[0], size[0] * 2);
+            }
+            ids[0][size[0]++] = rs.getLong(1);
+        });
+        return Arrays.copyOf(ids[0], size[0]);
+    }
+}
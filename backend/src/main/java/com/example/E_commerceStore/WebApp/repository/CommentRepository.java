@@ -1,31 +1,56 @@
 package com.example.E_commerceStore.WebApp.repository;
 
+import com.example.E_commerceStore.WebApp.dto.CommentView;
 import com.example.E_commerceStore.WebApp.model.Comment;
+import com.example.E_commerceStore.WebApp.model.ModerationStatus;
 import com.example.E_commerceStore.WebApp.model.Product;
 import com.example.E_commerceStore.WebApp.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     
+    // เงื่อนไขแสดงต่อสาธารณะใน JPQL (comment ที่ผ่านการตรวจเนื้อหาแล้ว)
+    String APPROVED = "com.example.E_commerceStore.WebApp.model.ModerationStatus.APPROVED";
+    
+    // ล็อกแถว comment ก่อนแก้/ตรวจ: delta ของ rating stats คำนวณจากสถานะเดิม ถ้าสองคำขอ
+    // อ่านสถานะเดียวกันพร้อมกัน จะนับ delta ซ้ำ
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Comment c WHERE c.id = :commentId")
+    Optional<Comment> findByIdForUpdate(@Param("commentId") Long commentId);
+    
+    // คอลัมน์ของ CommentView (comment + ชื่อ/รูปผู้เขียน)
+    String COMMENT_VIEW_COLUMNS = "c.id AS \"id\", c.parent_comment_id AS \"parentId\", c.product_id AS \"productId\", " +
+        "c.content AS \"content\", c.rating AS \"rating\", c.created_at AS \"createdAt\", " +
+        "c.updated_at AS \"updatedAt\", c.is_edited AS \"isEdited\", c.helpful_count AS \"helpfulCount\", " +
+        "c.unhelpful_count AS \"unhelpfulCount\", c.moderation_status AS \"moderationStatus\", " +
+        "c.moderation_reason AS \"moderationReason\", u.id AS \"userId\", " +
+        "COALESCE(u.name, u.first_name || ' ' || u.last_name) AS \"userName\", u.picture AS \"userPicture\" ";
+    
     // หา comments ของสินค้า (เฉพาะ parent comments ไม่รวม replies)
-    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId AND c.parentComment IS NULL ORDER BY c.createdAt DESC")
+    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId AND c.parentComment IS NULL " +
+           "AND c.moderationStatus = " + APPROVED + " ORDER BY c.createdAt DESC")
     Page<Comment> findByProductIdOrderByCreatedAtDesc(@Param("productId") Long productId, Pageable pageable);
     
     // หา comments ของสินค้า (ทั้งหมดรวม replies)
-    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId ORDER BY c.createdAt DESC")
+    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId AND c.moderationStatus = " + APPROVED +
+           " ORDER BY c.createdAt DESC")
     List<Comment> findAllByProductId(@Param("productId") Long productId);
     
     // หา replies ของ comment
-    @Query("SELECT c FROM Comment c WHERE c.parentComment.id = :parentId ORDER BY c.createdAt ASC")
+    @Query("SELECT c FROM Comment c WHERE c.parentComment.id = :parentId AND c.moderationStatus = " + APPROVED +
+           " ORDER BY c.createdAt ASC")
     List<Comment> findRepliesByParentId(@Param("parentId") Long parentId);
     
     // หา comments ของ user
@@ -45,11 +70,12 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     Optional<Double> findAverageRatingByProductId(@Param("productId") Long productId);
     
     // หา comments ที่มีคะแนน
-    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId AND c.rating IS NOT NULL ORDER BY c.createdAt DESC")
+    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId AND c.rating IS NOT NULL " +
+           "AND c.moderationStatus = " + APPROVED + " ORDER BY c.createdAt DESC")
     List<Comment> findByProductIdWithRating(@Param("productId") Long productId);
     
     // หา comments ล่าสุดของระบบ
-    @Query("SELECT c FROM Comment c ORDER BY c.createdAt DESC")
+    @Query("SELECT c FROM Comment c WHERE c.moderationStatus = " + APPROVED + " ORDER BY c.createdAt DESC")
     Page<Comment> findLatestComments(Pageable pageable);
     
     // ตรวจสอบว่า user เคย comment สินค้านี้แล้วหรือไม่
@@ -57,9 +83,118 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     boolean existsByUserAndProduct(@Param("userId") Long userId, @Param("productId") Long productId);
     
     // หา comments ตาม rating
-    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId AND c.rating = :rating ORDER BY c.createdAt DESC")
+    @Query("SELECT c FROM Comment c WHERE c.product.id = :productId AND c.rating = :rating " +
+           "AND c.moderationStatus = " + APPROVED + " ORDER BY c.createdAt DESC")
     List<Comment> findByProductIdAndRating(@Param("productId") Long productId, @Param("rating") Integer rating);
     
+    // หน้าหนึ่งของ comment หลักพร้อมข้อมูลผู้เขียน (rating = null คือทุกคะแนน)
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.product_id = :productId AND c.parent_comment_id IS NULL AND c.moderation_status = 'APPROVED' " +
+           "AND (CAST(:rating AS integer) IS NULL OR c.rating = CAST(:rating AS integer)) " +
+           "ORDER BY c.created_at DESC, c.id DESC LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<CommentView> findRootViews(@Param("productId") Long productId,
+                                    @Param("rating") Integer rating,
+                                    @Param("limit") int limit,
+                                    @Param("offset") long offset);
+    
+    // หน้าหนึ่งของ comment หลักเรียงตาม helpful_score (Wilson lower bound) มากไปน้อย
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.product_id = :productId AND c.parent_comment_id IS NULL AND c.moderation_status = 'APPROVED' " +
+           "AND (CAST(:rating AS integer) IS NULL OR c.rating = CAST(:rating AS integer)) " +
+           "ORDER BY c.helpful_score DESC, c.id DESC LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<CommentView> findRootViewsByHelpful(@Param("productId") Long productId,
+                                             @Param("rating") Integer rating,
+                                             @Param("limit") int limit,
+                                             @Param("offset") long offset);
+    
+    // Public lookups only: PENDING/REJECTED comments are visible to admins through the moderation queue
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.id = :commentId AND c.moderation_status = 'APPROVED'",
+           nativeQuery = true)
+    Optional<CommentView> findApprovedViewById(@Param("commentId") Long commentId);
+    
+    /**
+     * Every reply below the given comments (any depth up to maxDepth) in one recursive query,
+     * oldest first so children can be appended to their parents in order.
+     */
+    @Query(value = "WITH RECURSIVE thread (id, depth) AS ( " +
+           "  SELECT r.id, 1 FROM comments r " +
+           "  WHERE r.parent_comment_id IN (:parentIds) AND r.moderation_status = 'APPROVED' " +
+           "  UNION ALL " +
+           "  SELECT r.id, t.depth + 1 FROM comments r JOIN thread t ON r.parent_comment_id = t.id " +
+           "  WHERE t.depth < :maxDepth AND r.moderation_status = 'APPROVED' " +
+           ") " +
+           "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM thread t JOIN comments c ON c.id = t.id JOIN users u ON u.id = c.user_id " +
+           "ORDER BY c.created_at ASC, c.id ASC",
+           nativeQuery = true)
+    List<CommentView> findReplyViews(@Param("parentIds") List<Long> parentIds, @Param("maxDepth") int maxDepth);
+    
+    // Keyset pagination on (created_at, id), newest first: the rows strictly before the cursor
+    
+    // comment หลักของสินค้า (rating = null คือทุกคะแนน)
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.product_id = :productId AND c.parent_comment_id IS NULL AND c.moderation_status = 'APPROVED' " +
+           "AND (CAST(:rating AS integer) IS NULL OR c.rating = CAST(:rating AS integer)) " +
+           "AND (c.created_at, c.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY c.created_at DESC, c.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<CommentView> findRootViewsBefore(@Param("productId") Long productId,
+                                          @Param("rating") Integer rating,
+                                          @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                          @Param("cursorId") long cursorId,
+                                          @Param("limit") int limit);
+    
+    // comments ของ user
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.user_id = :userId AND (c.created_at, c.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY c.created_at DESC, c.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<CommentView> findUserViewsBefore(@Param("userId") Long userId,
+                                          @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                          @Param("cursorId") long cursorId,
+                                          @Param("limit") int limit);
+    
+    // comments ล่าสุดของระบบ แบบ offset (หน้าลึกกว่า buffer ของ LatestCommentFeedService)
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.moderation_status = 'APPROVED' " +
+           "ORDER BY c.created_at DESC, c.id DESC LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<CommentView> findLatestViews(@Param("limit") int limit, @Param("offset") long offset);
+    
+    // comments ล่าสุดของระบบ
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.moderation_status = 'APPROVED' AND (c.created_at, c.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY c.created_at DESC, c.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<CommentView> findLatestViewsBefore(@Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                            @Param("cursorId") long cursorId,
+                                            @Param("limit") int limit);
+    
+    // นับ comment หลักที่ตรงเงื่อนไข (สำหรับ totalPages)
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.product.id = :productId AND c.parentComment IS NULL " +
+           "AND c.moderationStatus = " + APPROVED + " AND (:rating IS NULL OR c.rating = :rating)")
+    long countRoots(@Param("productId") Long productId, @Param("rating") Integer rating);
+    
+    // คิวตรวจเนื้อหา: comments ที่รอ admin ตรวจ เก่าสุดก่อน
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS +
+           "FROM comments c JOIN users u ON u.id = c.user_id " +
+           "WHERE c.moderation_status = 'PENDING' " +
+           "ORDER BY c.created_at ASC, c.id ASC LIMIT :limit",
+           nativeQuery = true)
+    List<CommentView> findPendingModerationViews(@Param("limit") int limit);
+    
+    long countByModerationStatus(ModerationStatus moderationStatus);
+    
     // ลบ comments ของ user
     void deleteByUser(User user);
     
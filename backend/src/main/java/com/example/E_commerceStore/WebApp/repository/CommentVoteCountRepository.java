@@ -0,0 +1,54 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Helpful/unhelpful counters on comments and the helpful_score they rank by.
+ *
+ * helpful_score is the lower bound of the 95% Wilson score interval of the
+ * helpful ratio, so a review with 40/50 helpful votes outranks one with 2/2.
+ * It is recomputed in the same statement that changes the counters.
+ *
+ * Counters are always recounted from comment_votes (never incremented), so every
+ * node can refresh any comment without knowing what other nodes have pending.
+ */
+@Repository
+public class CommentVoteCountRepository {
+
+    // Wilson lower bound, z = 1.96: (h + z²/2)/n - z·sqrt(h·u/n + z²/4)/n, divided by 1 + z²/n
+    private static final String WILSON_SCORE =
+        "CASE WHEN v.h + v.u = 0 THEN 0 ELSE " +
+        "((v.h + 1.9208) / (v.h + v.u) - 1.96 * sqrt(v.h * v.u / (v.h + v.u) + 0.9604) / (v.h + v.u)) " +
+        "/ (1 + 3.8416 / (v.h + v.u)) END";
+
+    private static final String RECOUNT_SQL =
+        "UPDATE comments c SET helpful_count = v.h, unhelpful_count = v.u, helpful_score = " + WILSON_SCORE + " " +
+        "FROM (SELECT COUNT(*) FILTER (WHERE cv.helpful)::float8 AS h, " +
+        "             COUNT(*) FILTER (WHERE NOT cv.helpful)::float8 AS u " +
+        "      FROM comment_votes cv WHERE cv.comment_id = ?) v " +
+        "WHERE c.id = ? AND (c.helpful_count <> v.h OR c.unhelpful_count <> v.u)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * นับ counters ของ comments ที่ระบุใหม่จาก comment_votes ใน JDBC batch เดียว
+     * เรียงตาม comment id (joins the current transaction)
+     */
+    public void recount(Collection<Long> commentIds) {
+        List<Long> ids = commentIds.stream().sorted().distinct().toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(RECOUNT_SQL, ids, ids.size(), (ps, id) -> {
+            ps.setLong(1, id);
+            ps.setLong(2, id);
+        });
+    }
+}
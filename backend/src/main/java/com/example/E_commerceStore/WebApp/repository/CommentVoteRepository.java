@@ -0,0 +1,26 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import com.example.E_commerceStore.WebApp.model.CommentVote;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import java.util.Optional;
+
+@Repository
+public interface CommentVoteRepository extends JpaRepository<CommentVote, Long> {
+    
+    // โหวตเดิมของ user (ล็อกแถวไว้เพื่อให้การเปลี่ยนโหวตซ้อนกันไม่นับซ้ำ)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM CommentVote v WHERE v.commentId = :commentId AND v.userId = :userId")
+    Optional<CommentVote> findForUpdate(@Param("commentId") Long commentId, @Param("userId") Long userId);
+    
+    // ลบโหวตทั้งหมดของ comment (เมื่อ comment ถูกลบ)
+    @Modifying
+    @Query("DELETE FROM CommentVote v WHERE v.commentId = :commentId")
+    int deleteByCommentId(@Param("commentId") Long commentId);
+}
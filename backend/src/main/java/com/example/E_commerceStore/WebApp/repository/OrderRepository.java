@@ -1,13 +1,17 @@
 package com.example.E_commerceStore.WebApp.repository;
 
+import com.example.E_commerceStore.WebApp.dto.OrderSummaryView;
 import com.example.E_commerceStore.WebApp.model.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +26,43 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Find order by order number
     Optional<Order> findByOrderNumber(String orderNumber);
     
+    // Row-locked reads for status changes: the outbox relay, customer cancels and admin
+    // updates can race on the same order, so check-then-write happens under the lock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :orderId")
+    Optional<Order> findByIdForUpdate(@Param("orderId") Long orderId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderNumber = :orderNumber")
+    Optional<Order> findByOrderNumberForUpdate(@Param("orderNumber") String orderNumber);
+    
+    // Order with its items and products in one query (detail pages)
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product WHERE o.id = :orderId")
+    Optional<Order> findByIdWithItems(@Param("orderId") Long orderId);
+    
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product WHERE o.orderNumber = :orderNumber")
+    Optional<Order> findByOrderNumberWithItems(@Param("orderNumber") String orderNumber);
+    
+    /**
+     * Order list rows (item count + first item's image) in one aggregate query,
+     * keyset-paginated on (created_at, id) descending.
+     */
+    @Query(value = "SELECT o.id AS \"id\", o.order_number AS \"orderNumber\", o.status AS \"status\", " +
+           "o.total_amount AS \"totalAmount\", o.created_at AS \"createdAt\", " +
+           "COALESCE(SUM(oi.quantity), 0) AS \"itemCount\", " +
+           "(SELECT m.url FROM order_items fi JOIN media_items m ON m.product_id = fi.product_id " +
+           " WHERE fi.order_id = o.id ORDER BY fi.id, m.display_order LIMIT 1) AS \"thumbnailUrl\" " +
+           "FROM orders o LEFT JOIN order_items oi ON oi.order_id = o.id " +
+           "WHERE o.user_id = :userId AND (o.created_at, o.id) < (:cursorCreatedAt, :cursorId) " +
+           "GROUP BY o.id " +
+           "ORDER BY o.created_at DESC, o.id DESC " +
+           "LIMIT :limit",
+           nativeQuery = true)
+    List<OrderSummaryView> findOrderSummaries(@Param("userId") Long userId,
+                                              @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                              @Param("cursorId") long cursorId,
+                                              @Param("limit") int limit);
+    
     // Find orders by status
     @Query("SELECT o FROM Order o WHERE o.status = :status ORDER BY o.createdAt DESC")
     List<Order> findByStatus(@Param("status") Order.OrderStatus status);
@@ -36,6 +77,18 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "AND oi.order.status = 'DELIVERED'")
     boolean hasUserPurchasedProduct(@Param("userId") Long userId, @Param("productId") Long productId);
     
+    // Products the user has received (review eligibility index)
+    @Query("SELECT DISTINCT oi.product.id FROM OrderItem oi " +
+           "WHERE oi.order.userId = :userId AND oi.order.status = 'DELIVERED'")
+    List<Long> findDeliveredProductIds(@Param("userId") Long userId);
+    
+    // Orders that became DELIVERED after the buyers Bloom filter was built (possibly on another node)
+    boolean existsByUserIdAndStatusAndUpdatedAtAfter(Long userId, Order.OrderStatus status, LocalDateTime after);
+    
+    // Users with at least one delivered order (seeds the buyers Bloom filter)
+    @Query("SELECT DISTINCT o.userId FROM Order o WHERE o.status = 'DELIVERED'")
+    List<Long> findUserIdsWithDeliveredOrders();
+    
     // Get user's orders for a specific product
     @Query("SELECT DISTINCT o FROM Order o " +
            "JOIN o.orderItems oi " +
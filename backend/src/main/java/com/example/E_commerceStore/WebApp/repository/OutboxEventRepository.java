@@ -0,0 +1,64 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    
+    boolean existsByEventKey(String eventKey);
+    
+    /**
+     * Lock the oldest due events; rows locked by another relay are skipped, not waited on.
+     * Must run inside a transaction.
+     */
+    @Query(value = "SELECT * FROM outbox_events WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+           "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OutboxEvent> lockNextDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    // Push the claimed rows out of reach of other relays while they are being dispatched
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.nextAttemptAt = :leaseUntil, e.leaseOwner = :owner WHERE e.id IN :ids")
+    int lease(@Param("ids") List<Long> ids,
+              @Param("owner") String owner,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    // The results below only apply while the caller still holds the lease: once it expired and another
+    // relay claimed the event, the late writer changes nothing
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = 'PROCESSED', e.processedAt = :now, e.attempts = e.attempts + 1, " +
+           "e.lastError = null, e.leaseOwner = null " +
+           "WHERE e.id IN :ids AND e.leaseOwner = :owner AND e.status = 'PENDING'")
+    int markProcessed(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, " +
+           "e.lastError = :error, e.leaseOwner = null WHERE e.id = :id AND e.leaseOwner = :owner AND e.status = 'PENDING'")
+    int markRetry(@Param("id") Long id,
+                  @Param("owner") String owner,
+                  @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                  @Param("error") String error);
+    
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = 'FAILED', e.attempts = e.attempts + 1, e.lastError = :error, " +
+           "e.leaseOwner = null WHERE e.id = :id AND e.leaseOwner = :owner AND e.status = 'PENDING'")
+    int markFailed(@Param("id") Long id, @Param("owner") String owner, @Param("error") String error);
+    
+    long countByStatus(OutboxEvent.Status status);
+    
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e WHERE e.status = 'PENDING'")
+    Optional<LocalDateTime> findOldestPendingCreatedAt();
+    
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = 'PROCESSED' AND e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
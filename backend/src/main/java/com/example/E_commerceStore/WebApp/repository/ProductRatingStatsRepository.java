@@ -0,0 +1,68 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import com.example.E_commerceStore.WebApp.model.ProductRatingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductRatingStatsRepository extends JpaRepository<ProductRatingStats, Long> {
+    
+    /**
+     * Add the deltas to a product's row (creating it on first use) in one statement;
+     * concurrent reviews serialize on the row lock instead of losing updates.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_stats " +
+           "(product_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, updated_at) " +
+           "VALUES (:productId, :commentDelta, :ratingDelta, :sumDelta, :star1, :star2, :star3, :star4, :star5, now()) " +
+           "ON CONFLICT (product_id) DO UPDATE SET " +
+           "comment_count = product_rating_stats.comment_count + EXCLUDED.comment_count, " +
+           "rating_count = product_rating_stats.rating_count + EXCLUDED.rating_count, " +
+           "rating_sum = product_rating_stats.rating_sum + EXCLUDED.rating_sum, " +
+           "star1 = product_rating_stats.star1 + EXCLUDED.star1, " +
+           "star2 = product_rating_stats.star2 + EXCLUDED.star2, " +
+           "star3 = product_rating_stats.star3 + EXCLUDED.star3, " +
+           "star4 = product_rating_stats.star4 + EXCLUDED.star4, " +
+           "star5 = product_rating_stats.star5 + EXCLUDED.star5, " +
+           "updated_at = EXCLUDED.updated_at",
+           nativeQuery = true)
+    int applyDelta(@Param("productId") Long productId,
+                   @Param("commentDelta") int commentDelta,
+                   @Param("ratingDelta") int ratingDelta,
+                   @Param("sumDelta") int sumDelta,
+                   @Param("star1") int star1,
+                   @Param("star2") int star2,
+                   @Param("star3") int star3,
+                   @Param("star4") int star4,
+                   @Param("star5") int star5);
+    
+    /**
+     * Recompute every product's row from the comments table (backfill / repair).
+     * Rows of products without approved reviews any more are deleted in the same
+     * statement; a missing row reads as no reviews.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "WITH fresh AS (" +
+           "SELECT product_id, COUNT(*) AS comment_count, COUNT(rating) AS rating_count, " +
+           "COALESCE(SUM(rating), 0) AS rating_sum, " +
+           "COUNT(*) FILTER (WHERE rating = 1) AS star1, COUNT(*) FILTER (WHERE rating = 2) AS star2, " +
+           "COUNT(*) FILTER (WHERE rating = 3) AS star3, COUNT(*) FILTER (WHERE rating = 4) AS star4, " +
+           "COUNT(*) FILTER (WHERE rating = 5) AS star5 " +
+           "FROM comments WHERE parent_comment_id IS NULL AND moderation_status = 'APPROVED' GROUP BY product_id), " +
+           "stale AS (DELETE FROM product_rating_stats s " +
+           "WHERE NOT EXISTS (SELECT 1 FROM fresh f WHERE f.product_id = s.product_id)) " +
+           "INSERT INTO product_rating_stats " +
+           "(product_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, updated_at) " +
+           "SELECT product_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, now() " +
+           "FROM fresh " +
+           "ON CONFLICT (product_id) DO UPDATE SET " +
+           "comment_count = EXCLUDED.comment_count, rating_count = EXCLUDED.rating_count, " +
+           "rating_sum = EXCLUDED.rating_sum, star1 = EXCLUDED.star1, star2 = EXCLUDED.star2, " +
+           "star3 = EXCLUDED.star3, star4 = EXCLUDED.star4, star5 = EXCLUDED.star5, " +
+           "updated_at = EXCLUDED.updated_at",
+           nativeQuery = true)
+    int rebuildAll();
+}
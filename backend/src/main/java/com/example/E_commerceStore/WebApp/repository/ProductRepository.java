@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
@@ -32,6 +33,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findFeaturedProducts();
 
     List<Product> findByStockLessThan(Integer threshold);
+
     List<Product> findByStock(Integer stock);
     List<Product> findTop10ByOrderByCreatedAtDesc();
 
@@ -39,4 +41,8 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     // ✅ ใช้แนว ManyToOne: ต้องเป็น findByStore_Id (มีขีดล่าง)
     List<Product> findByStore_Id(Long storeId);
+
+    // ร้านของสินค้า (ไม่โหลด Product ทั้งตัว)
+    @Query("SELECT p.store.id FROM Product p WHERE p.id = :productId")
+    Optional<Long> findStoreIdById(@Param("productId") Long productId);
 }
\ No newline at end of file
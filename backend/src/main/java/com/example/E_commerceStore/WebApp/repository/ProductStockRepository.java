@@ -0,0 +1,97 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stock updates as conditional SQL instead of read-modify-write on Product
+ * entities, so concurrent checkouts can never oversell or lose an update.
+ *
+ * Lines are applied in ascending product id order: every transaction locks
+ * product rows in the same order, which rules out lock-order deadlocks.
+ */
+@Repository
+public class ProductStockRepository {
+
+    private static final String DECREMENT_SQL =
+        "UPDATE products SET stock = stock - ?, updated_at = now() WHERE id = ? AND stock >= ?";
+
+    // Takes up to ? units (never below zero) and returns how many were taken
+    private static final String LEASE_SQL =
+        "WITH p AS (SELECT id, stock FROM products WHERE id = ? FOR UPDATE) " +
+        "UPDATE products SET stock = products.stock - LEAST(p.stock, ?), updated_at = now() " +
+        "FROM p WHERE products.id = p.id AND p.stock > 0 " +
+        "RETURNING LEAST(p.stock, ?)";
+
+    private static final String ADJUST_SQL =
+        "UPDATE products SET stock = stock + ?, updated_at = now() WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * ตัดสต็อกทุกรายการใน JDBC batch เดียว (joins the current transaction)
+     *
+     * @param quantities productId -> จำนวนที่ต้องตัด
+     * @return product ids ที่สต็อกไม่พอ (ไม่มีแถวถูกอัปเดต); caller ต้อง rollback ถ้าไม่ว่าง
+     */
+    public List<Long> decrementStock(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        if (lines.isEmpty()) {
+            return List.of();
+        }
+
+        int[][] counts = jdbcTemplate.batchUpdate(DECREMENT_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        });
+
+        List<Long> failed = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (counts[0][i] == 0) {
+                failed.add(lines.get(i).getKey());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * คืนสต็อก (เช่น ยกเลิกคำสั่งซื้อ) ใน JDBC batch เดียว เรียงตาม product id เช่นกัน
+     */
+    public void incrementStock(Map<Long, Integer> quantities) {
+        adjustStock(quantities);
+    }
+
+    /**
+     * ดึงสต็อกออกมาไม่เกิน maxUnits (เหลือน้อยกว่าก็ได้เท่าที่เหลือ) สำหรับ flash sale counter
+     *
+     * @return จำนวนที่ดึงได้ (0 ถ้าหมด)
+     */
+    public int leaseStock(Long productId, int maxUnits) {
+        List<Integer> leased = jdbcTemplate.queryForList(LEASE_SQL, Integer.class, productId, maxUnits, maxUnits);
+        return leased.isEmpty() ? 0 : leased.get(0);
+    }
+
+    /**
+     * บวก/ลบสต็อกตาม delta โดยไม่ตรวจ stock >= 0 ใช้เมื่อจำนวนถูกกันไว้ที่อื่นแล้ว
+     * (เช่น คืนหน่วยที่ flash sale ดึงไปแต่ขายไม่หมด)
+     */
+    public void adjustStock(Map<Long, Integer> deltas) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(deltas).entrySet());
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(ADJUST_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+        });
+    }
+}
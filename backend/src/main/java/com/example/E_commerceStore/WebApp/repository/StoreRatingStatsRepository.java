@@ -0,0 +1,68 @@
+package com.example.E_commerceStore.WebApp.repository;
+
+import com.example.E_commerceStore.WebApp.model.StoreRatingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StoreRatingStatsRepository extends JpaRepository<StoreRatingStats, Long> {
+    
+    /**
+     * Add a product's rating deltas to its store's row (creating it on first use) in one statement
+     */
+    @Modifying
+    @Query(value = "INSERT INTO store_rating_stats " +
+           "(store_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, updated_at) " +
+           "VALUES (:storeId, :commentDelta, :ratingDelta, :sumDelta, :star1, :star2, :star3, :star4, :star5, now()) " +
+           "ON CONFLICT (store_id) DO UPDATE SET " +
+           "comment_count = store_rating_stats.comment_count + EXCLUDED.comment_count, " +
+           "rating_count = store_rating_stats.rating_count + EXCLUDED.rating_count, " +
+           "rating_sum = store_rating_stats.rating_sum + EXCLUDED.rating_sum, " +
+           "star1 = store_rating_stats.star1 + EXCLUDED.star1, " +
+           "star2 = store_rating_stats.star2 + EXCLUDED.star2, " +
+           "star3 = store_rating_stats.star3 + EXCLUDED.star3, " +
+           "star4 = store_rating_stats.star4 + EXCLUDED.star4, " +
+           "star5 = store_rating_stats.star5 + EXCLUDED.star5, " +
+           "updated_at = EXCLUDED.updated_at",
+           nativeQuery = true)
+    int applyDelta(@Param("storeId") Long storeId,
+                   @Param("commentDelta") int commentDelta,
+                   @Param("ratingDelta") int ratingDelta,
+                   @Param("sumDelta") int sumDelta,
+                   @Param("star1") int star1,
+                   @Param("star2") int star2,
+                   @Param("star3") int star3,
+                   @Param("star4") int star4,
+                   @Param("star5") int star5);
+    
+    /**
+     * Recompute every store's row from the approved top-level comments of its products (backfill / repair).
+     * Rows of stores left without such comments are deleted in the same statement.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "WITH fresh AS (" +
+           "SELECT p.store_id, COUNT(*) AS comment_count, COUNT(c.rating) AS rating_count, " +
+           "COALESCE(SUM(c.rating), 0) AS rating_sum, " +
+           "COUNT(*) FILTER (WHERE c.rating = 1) AS star1, COUNT(*) FILTER (WHERE c.rating = 2) AS star2, " +
+           "COUNT(*) FILTER (WHERE c.rating = 3) AS star3, COUNT(*) FILTER (WHERE c.rating = 4) AS star4, " +
+           "COUNT(*) FILTER (WHERE c.rating = 5) AS star5 " +
+           "FROM comments c JOIN products p ON p.id = c.product_id " +
+           "WHERE c.parent_comment_id IS NULL AND c.moderation_status = 'APPROVED' AND p.store_id IS NOT NULL " +
+           "GROUP BY p.store_id), " +
+           "stale AS (DELETE FROM store_rating_stats s " +
+           "WHERE NOT EXISTS (SELECT 1 FROM fresh f WHERE f.store_id = s.store_id)) " +
+           "INSERT INTO store_rating_stats " +
+           "(store_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, updated_at) " +
+           "SELECT store_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, now() " +
+           "FROM fresh " +
+           "ON CONFLICT (store_id) DO UPDATE SET " +
+           "comment_count = EXCLUDED.comment_count, rating_count = EXCLUDED.rating_count, " +
+           "rating_sum = EXCLUDED.rating_sum, star1 = EXCLUDED.star1, star2 = EXCLUDED.star2, " +
+           "star3 = EXCLUDED.star3, star4 = EXCLUDED.star4, star5 = EXCLUDED.star5, " +
+           "updated_at = EXCLUDED.updated_at",
+           nativeQuery = true)
+    int rebuildAll();
+}
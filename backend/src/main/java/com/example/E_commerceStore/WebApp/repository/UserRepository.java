@@ -21,6 +21,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
     
+    // Role only (JWT authentication checks the token's role claim against it)
+    @Query("SELECT u.role FROM User u WHERE u.id = :id")
+    Optional<com.example.E_commerceStore.WebApp.model.UserRole> findRoleById(@Param("id") Long id);
+    
+    // Row lock on the user (serializes per-user operations such as checkout enqueue)
+    @Query(value = "SELECT id FROM users WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+    
     // Find users by role
     java.util.List<User> findByRole(com.example.E_commerceStore.WebApp.model.UserRole role);
     
@@ -180,6 +180,6 @@ public class AuthService {
 
     // 🔑 JWT Token Generation
     public String generateToken(User user) {
-        return jwtUtil.generateToken(user.getEmail());
+        return jwtUtil.generateToken(user);
     }
 }
@@ -1,5 +1,7 @@
 package com.example.E_commerceStore.WebApp.service;
 
+import com.example.E_commerceStore.WebApp.dto.CheckoutLine;
+import com.example.E_commerceStore.WebApp.dto.CheckoutValidationReport;
 import com.example.E_commerceStore.WebApp.model.Cart;
 import com.example.E_commerceStore.WebApp.model.CartItem;
 import com.example.E_commerceStore.WebApp.model.User;
@@ -12,6 +14,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +31,12 @@ public class CartService {
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private FlashSaleInventoryService flashSaleInventoryService;
+    
     /**
      * รับหรือสร้างตะกร้าสำหรับผู้ใช้
      */
@@ -43,49 +52,78 @@ public class CartService {
         return cartRepository.save(cart);
     }
     
+    /**
+     * เพิ่มเวอร์ชันตะกร้าก่อนแก้ไข ถ้า client ส่ง expectedVersion มา (If-Match)
+     * แล้วไม่ตรงกับเวอร์ชันปัจจุบัน แปลว่ามีแท็บ/อุปกรณ์อื่นแก้ตะกร้าไปก่อน
+     *
+     * @return เวอร์ชันใหม่ที่การแก้ไขนี้สร้าง (แถวถูกล็อกจน commit จึงไม่มีใครแก้แทรกได้)
+     */
+    private Long bumpCartVersion(Cart cart, Long expectedVersion) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = expectedVersion == null
+            ? cartRepository.bumpVersion(cart.getId(), now)
+            : cartRepository.bumpVersionIfMatches(cart.getId(), expectedVersion, now);
+        if (updated == 0) {
+            throw new CartVersionConflictException(expectedVersion);
+        }
+        return expectedVersion != null
+            ? Long.valueOf(expectedVersion + 1)
+            : cartRepository.findVersionById(cart.getId()).orElse(null);
+    }
+    
     /**
      * เพิ่มสินค้าลงตะกร้า
+     * ใช้ upsert คำสั่งเดียว (INSERT ... ON CONFLICT) จึงไม่เกิดรายการซ้ำเมื่อกดเพิ่มพร้อมกันหลายครั้ง
      */
     public CartItem addToCart(User user, Long productId, Integer quantity) {
+        return addToCart(user, productId, quantity, null).cartItem();
+    }
+    
+    public CartItemChange addToCart(User user, Long productId, Integer quantity, Long expectedVersion) {
+        if (quantity == null || quantity <= 0) {
+            throw new RuntimeException("Quantity must be greater than 0");
+        }
+        
         Product product = productRepository.findById(productId)
             .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
         
-        // ตรวจสอบสต็อก
-        if (product.getStock() < quantity) {
-            throw new RuntimeException("Insufficient stock. Available: " + product.getStock() + ", Requested: " + quantity);
+        // ตรวจสอบสต็อก (หัก hold ของผู้ใช้คนอื่นแล้ว)
+        int available = stockReservationService.getAvailableFor(user.getId(), productId, product.getStock());
+        if (available < quantity) {
+            throw new RuntimeException("Insufficient stock. Available: " + available + ", Requested: " + quantity);
         }
         
         // รับหรือสร้างตะกร้า
         Cart cart = getOrCreateCart(user);
+        Long version = bumpCartVersion(cart, expectedVersion);
         
-        // ตรวจสอบว่ามีสินค้าอยู่ในตะกร้าแล้วหรือไม่
-        CartItem existingItem = cart.findCartItemByProduct(product);
+        // เพิ่มหรือบวกจำนวน พร้อมตรวจสต็อกในคำสั่งเดียวกัน
+        int affected = cartItemRepository.upsertQuantity(cart.getId(), user.getId(), productId, quantity);
+        if (affected == 0) {
+            throw new RuntimeException("Cannot add more items. Total would exceed available stock.");
+        }
         
-        if (existingItem != null) {
-            // อัปเดตปริมาณ
-            int newQuantity = existingItem.getQuantity() + quantity;
-            
-            if (product.getStock() < newQuantity) {
-                throw new RuntimeException("Cannot add more items. Total would exceed available stock.");
-            }
-            
-            existingItem.setQuantity(newQuantity);
-            existingItem.setUpdatedAt(LocalDateTime.now());
-            return cartItemRepository.save(existingItem);
-        } else {
-            // เพิ่มรายการใหม่
-            CartItem cartItem = new CartItem(user, product, quantity);
-            cartItem.setCart(cart);
-            cart.addCartItem(cartItem);
-            cartRepository.save(cart); // บันทึก cart จะบันทึก cartItem ด้วย
-            return cartItem;
+        CartItem cartItem = cartItemRepository.findByCartIdAndProductId(cart.getId(), productId)
+            .orElseThrow(() -> new RuntimeException("Cart item not found for product: " + productId));
+        
+        // จองสต็อกแบบ soft hold ตามจำนวนทั้งหมดในตะกร้า (ถ้าไม่ได้ จะ rollback upsert และคืน hold)
+        if (!stockReservationService.holdInTransaction(user.getId(), productId, cartItem.getQuantity(), product.getStock())) {
+            throw new RuntimeException("Cannot add more items. Total would exceed available stock.");
         }
+        
+        return new CartItemChange(cartItem, version);
     }
     
     /**
      * อัปเดตปริมาณในตะกร้า
      */
     public CartItem updateCartItem(User user, Long cartItemId, Integer quantity) {
+        return updateCartItem(user, cartItemId, quantity, null).cartItem();
+    }
+    
+    public CartItemChange updateCartItem(User user, Long cartItemId, Integer quantity, Long expectedVersion) {
+        Long version = bumpCartVersion(getOrCreateCart(user), expectedVersion);
+        
         CartItem cartItem = cartItemRepository.findById(cartItemId)
             .orElseThrow(() -> new RuntimeException("Cart item not found: " + cartItemId));
         
@@ -94,17 +132,28 @@ public class CartService {
             throw new RuntimeException("Unauthorized access to cart item");
         }
         
-        // ตรวจสอบสต็อก
-        if (cartItem.getProduct().getStock() < quantity) {
-            throw new RuntimeException("Insufficient stock. Available: " + cartItem.getProduct().getStock());
+        // ตรวจสอบสต็อกและปรับ hold ให้ตรงกับจำนวนใหม่
+        Product product = cartItem.getProduct();
+        if (!stockReservationService.holdInTransaction(user.getId(), product.getId(), quantity, product.getStock())) {
+            throw new RuntimeException("Insufficient stock. Available: "
+                + stockReservationService.getAvailableFor(user.getId(), product.getId(), product.getStock()));
         }
         
         cartItem.setQuantity(quantity);
-        return cartItemRepository.save(cartItem);
+        return new CartItemChange(cartItemRepository.save(cartItem), version);
     }
     
     // ลบสินค้าออกจากตะกร้า
     public void removeFromCart(User user, Long cartItemId) {
+        removeFromCart(user, cartItemId, null);
+    }
+    
+    /**
+     * @return เวอร์ชันตะกร้าหลังลบ
+     */
+    public Long removeFromCart(User user, Long cartItemId, Long expectedVersion) {
+        Long version = bumpCartVersion(getOrCreateCart(user), expectedVersion);
+        
         CartItem cartItem = cartItemRepository.findById(cartItemId)
             .orElseThrow(() -> new RuntimeException("Cart item not found: " + cartItemId));
         
@@ -114,6 +163,8 @@ public class CartService {
         }
         
         cartItemRepository.delete(cartItem);
+        stockReservationService.releaseInTransaction(user.getId(), cartItem.getProduct().getId());
+        return version;
     }
     
     // ดูตะกร้าของผู้ใช้
@@ -138,22 +189,69 @@ public class CartService {
      * ล้างตะกร้า
      */
     public void clearCart(User user) {
+        clearCart(user, null);
+    }
+    
+    /**
+     * @return เวอร์ชันตะกร้าหลังล้าง (null ถ้ายังไม่มีตะกร้า)
+     */
+    public Long clearCart(User user, Long expectedVersion) {
         Cart cart = cartRepository.findByUser(user).orElse(null);
+        Long version = null;
         if (cart != null) {
-            cart.clearCart();
-            cartRepository.save(cart);
+            version = bumpCartVersion(cart, expectedVersion);
+            cartItemRepository.deleteByCartIdIn(List.of(cart.getId()));
+        }
+        stockReservationService.releaseAllInTransaction(user.getId());
+        return version;
+    }
+    
+    /**
+     * ต่ออายุการจองสต็อกของสินค้าทั้งหมดในตะกร้า (เรียกระหว่างอยู่หน้า checkout)
+     */
+    public List<Long> extendReservations(User user) {
+        List<Long> unavailableProductIds = new ArrayList<>();
+        for (CartItem item : cartItemRepository.findByUser(user)) {
+            Product product = item.getProduct();
+            // hold ซ้ำด้วยจำนวนเดิม = ต่ออายุ (หรือจองใหม่ถ้า hold เดิมหมดอายุไปแล้ว)
+            if (!stockReservationService.hold(user.getId(), product.getId(), item.getQuantity(), product.getStock())) {
+                unavailableProductIds.add(product.getId());
+            }
         }
+        return unavailableProductIds;
     }
     
     /**
      * ตรวจสอบสต็อกทั้งหมดในตะกร้า
      */
     public boolean validateCartStock(User user) {
-        Cart cart = cartRepository.findByUser(user).orElse(null);
-        if (cart == null || cart.isEmpty()) {
-            return true;
+        return !validateCheckout(user.getId()).hasStockIssues();
+    }
+    
+    /**
+     * ตรวจตะกร้าก่อนชำระเงิน: ดึงราคาและสต็อกปัจจุบันของทุกรายการในคำสั่งเดียว
+     * แล้วเทียบกับราคาตอนใส่ตะกร้าและสต็อกที่เหลือ (หัก hold ของผู้ใช้คนอื่นแล้ว)
+     */
+    @Transactional(readOnly = true)
+    public CheckoutValidationReport validateCheckout(Long userId) {
+        List<CheckoutLine> lines = cartItemRepository.findCheckoutLinesByUserId(userId);
+        for (CheckoutLine line : lines) {
+            // flash sale: หน่วยที่ node นี้ดึงออกจาก DB ไว้แล้วยังขายได้
+            int stock = flashSaleInventoryService.getStock(line.getProductId(), line.getStock());
+            int available = stockReservationService.getAvailableFor(userId, line.getProductId(), stock);
+            line.setAvailableQuantity(Math.min(available, line.getRequestedQuantity()));
+            line.setPriceChanged(line.getPriceAtTime() == null
+                || line.getPriceAtTime().compareTo(line.getCurrentPrice()) != 0);
+            
+            if (available <= 0) {
+                line.setStatus(CheckoutLine.Status.OUT_OF_STOCK);
+            } else if (available < line.getRequestedQuantity()) {
+                line.setStatus(CheckoutLine.Status.QUANTITY_REDUCED);
+            } else if (line.isPriceChanged()) {
+                line.setStatus(CheckoutLine.Status.PRICE_CHANGED);
+            }
         }
-        return cart.getCartItems().stream().allMatch(CartItem::isValidQuantity);
+        return new CheckoutValidationReport(lines);
     }
     
     /**
@@ -200,4 +298,23 @@ public class CartService {
      * รับสินค้ายอดนิยมตามหมวดหมู่
      */
     // Removed getPopularProductsByCategory(String category) as Product now uses tags, not category.
+    
+    /**
+     * รายการที่ถูกแก้พร้อมเวอร์ชันตะกร้าที่การแก้ไขนั้นสร้าง (ใช้เป็น ETag ของ response)
+     */
+    public record CartItemChange(CartItem cartItem, Long version) {}
+    
+    /**
+     * ตะกร้าถูกแก้ไขจากที่อื่นหลังจากที่ client โหลดมา (If-Match ไม่ตรง)
+     */
+    public static class CartVersionConflictException extends RuntimeException {
+        private final Long expectedVersion;
+        
+        public CartVersionConflictException(Long expectedVersion) {
+            super("Cart was modified by another session. Please reload and try again.");
+            this.expectedVersion = expectedVersion;
+        }
+        
+        public Long getExpectedVersion() { return expectedVersion; }
+    }
 }
@@ -0,0 +1,121 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.repository.CartItemRepository;
+import com.example.E_commerceStore.WebApp.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Background job that removes abandoned and empty carts.
+ *
+ * Walks the carts table by id (keyset) and deletes at most {@code batch-size}
+ * carts per transaction, so a sweep never holds long locks or a huge undo log.
+ * The selected carts stay row-locked until they are deleted, so a user editing
+ * a cart at the same moment cannot lose the edit to the sweeper.
+ */
+@Service
+public class CartSweeperService {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.cart-sweeper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cart-sweeper.abandoned-after-days:30}")
+    private long abandonedAfterDays;
+
+    @Value("${app.cart-sweeper.empty-after-hours:24}")
+    private long emptyAfterHours;
+
+    @Value("${app.cart-sweeper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.cart-sweeper.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    private TransactionTemplate transactionTemplate;
+    private Counter cartsRemoved;
+    private Counter itemsRemoved;
+    private Timer sweepTimer;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        cartsRemoved = Counter.builder("cart.sweeper.carts.removed")
+            .description("Stale carts deleted by the sweeper")
+            .register(meterRegistry);
+        itemsRemoved = Counter.builder("cart.sweeper.items.removed")
+            .description("Cart items deleted together with stale carts")
+            .register(meterRegistry);
+        sweepTimer = Timer.builder("cart.sweeper.duration")
+            .description("Time taken by one sweeper run")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.cart-sweeper.cron:0 30 3 * * *}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    /**
+     * ลบตะกร้าที่ค้างทีละ batch และคืนจำนวนตะกร้าที่ลบได้
+     */
+    public long sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime emptyCutoff = now.minusHours(emptyAfterHours);
+        LocalDateTime abandonedCutoff = now.minusDays(abandonedAfterDays);
+
+        return sweepTimer.record(() -> {
+            long totalCarts = 0;
+            long totalItems = 0;
+            long lastId = 0;
+
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                long afterId = lastId;
+                long[] removed = transactionTemplate.execute(status -> {
+                    List<Long> ids = cartRepository.findStaleCartIds(afterId, emptyCutoff, abandonedCutoff, batchSize);
+                    if (ids.isEmpty()) {
+                        return null;
+                    }
+                    int items = cartItemRepository.deleteByCartIdIn(ids);
+                    int carts = cartRepository.deleteByIdIn(ids);
+                    return new long[] {carts, items, ids.get(ids.size() - 1)};
+                });
+                if (removed == null) {
+                    break;
+                }
+                totalCarts += removed[0];
+                totalItems += removed[1];
+                lastId = removed[2];
+                cartsRemoved.increment(removed[0]);
+                itemsRemoved.increment(removed[1]);
+            }
+
+            System.out.println("[CartSweeper] Removed " + totalCarts + " carts and " + totalItems + " items");
+            return totalCarts;
+        });
+    }
+}
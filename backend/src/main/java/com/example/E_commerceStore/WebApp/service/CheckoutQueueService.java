@@ -0,0 +1,296 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.dto.CheckoutLine;
+import com.example.E_commerceStore.WebApp.dto.CheckoutValidationReport;
+import com.example.E_commerceStore.WebApp.model.CheckoutJob;
+import com.example.E_commerceStore.WebApp.model.Order;
+import com.example.E_commerceStore.WebApp.repository.CheckoutJobRepository;
+import com.example.E_commerceStore.WebApp.repository.UserRepository;
+import com.example.E_commerceStore.WebApp.util.TransientErrors;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous checkout: requests are validated and stored in checkout_jobs,
+ * and a pool of workers turns them into orders in batches.
+ *
+ * A batch is one transaction that locks up to {@code batch-size} queued jobs
+ * (SKIP LOCKED), creates all their orders and takes stock with one grouped
+ * update. If anything in the batch fails it is rolled back and the jobs are
+ * retried one per transaction, so one bad cart cannot fail its neighbours.
+ * Only business errors fail a job; a transient database error (deadlock, lock
+ * timeout) leaves it QUEUED for the next poll, up to {@code max-attempts}.
+ */
+@Service
+public class CheckoutQueueService {
+
+    @Autowired
+    private CheckoutJobRepository checkoutJobRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.checkout-queue.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.checkout-queue.workers:4}")
+    private int workers;
+
+    @Value("${app.checkout-queue.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.checkout-queue.poll-interval-ms:200}")
+    private long pollIntervalMillis;
+
+    @Value("${app.checkout-queue.retention-days:7}")
+    private long retentionDays;
+
+    @Value("${app.checkout-queue.max-attempts:5}")
+    private int maxAttempts;
+
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService workerPool;
+    private Counter completedCounter;
+    private Counter failedCounter;
+    private Counter batchFallbacks;
+    private Counter transientRetries;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        completedCounter = Counter.builder("checkout.queue.completed")
+            .description("Queued checkouts turned into orders")
+            .register(meterRegistry);
+        failedCounter = Counter.builder("checkout.queue.failed")
+            .description("Queued checkouts that could not be placed")
+            .register(meterRegistry);
+        batchFallbacks = Counter.builder("checkout.queue.batch.fallbacks")
+            .description("Batches rolled back and retried one job at a time")
+            .register(meterRegistry);
+        transientRetries = Counter.builder("checkout.queue.transient_retries")
+            .description("Jobs left queued after a transient database error")
+            .register(meterRegistry);
+        batchTimer = Timer.builder("checkout.queue.batch.duration")
+            .description("Time to process one batch of queued checkouts")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        workerPool = Executors.newScheduledThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "checkout-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.scheduleWithFixedDelay(this::drainQueue, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+    }
+
+    /**
+     * ตรวจตะกร้าแล้วเข้าคิว checkout; คืน job ที่มี token ไว้ให้ client ถามสถานะ
+     */
+    @Transactional
+    public CheckoutJob enqueue(Long userId, String shippingAddress, String phoneNumber) {
+        // Lock the user row so two enqueues of the same user run one after the other
+        // and the second one sees the first one's job in the check below
+        if (userRepository.lockById(userId).isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+        if (checkoutJobRepository.existsByUserIdAndStatus(userId, CheckoutJob.Status.QUEUED)) {
+            throw new RuntimeException("A checkout is already in progress");
+        }
+
+        CheckoutValidationReport report = cartService.validateCheckout(userId);
+        if (report.isEmpty()) {
+            throw new RuntimeException("Cart is empty");
+        }
+        if (report.hasStockIssues()) {
+            throw new RuntimeException("Insufficient stock for product: " + report.getLines().stream()
+                .filter(CheckoutLine::hasStockIssue)
+                .map(CheckoutLine::getProductName)
+                .collect(Collectors.joining(", ")));
+        }
+
+        try {
+            // uk_checkout_jobs_user_in_flight (V15, where applied) backs up the lock above
+            return checkoutJobRepository.saveAndFlush(new CheckoutJob(userId, shippingAddress, phoneNumber));
+        } catch (DataIntegrityViolationException e) {
+            throw new RuntimeException("A checkout is already in progress");
+        }
+    }
+
+    public Optional<CheckoutJob> getJob(String token) {
+        return checkoutJobRepository.findByToken(token);
+    }
+
+    /**
+     * ประมวลผลคิวจนหมด (เรียกโดย worker แต่ละตัวเป็นระยะ)
+     */
+    public void drainQueue() {
+        try {
+            while (processBatch() > 0) {
+                // keep going while there is work
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[CheckoutQueue] Worker error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of jobs taken from the queue
+     */
+    public int processBatch() {
+        long start = System.nanoTime();
+        AtomicInteger completed = new AtomicInteger();
+        try {
+            Integer processed = transactionTemplate.execute(status -> {
+                List<CheckoutJob> locked = checkoutJobRepository.lockNextQueued(batchSize);
+                if (locked.isEmpty()) {
+                    return 0;
+                }
+                List<CheckoutJob> jobs = oneJobPerUser(locked);
+                List<Order> orders = orderService.createOrdersInBatch(jobs);
+                for (int i = 0; i < jobs.size(); i++) {
+                    jobs.get(i).complete(orders.get(i));
+                }
+                completed.set(jobs.size());
+                return locked.size();
+            });
+            completedCounter.increment(completed.get());
+            return processed;
+        } catch (RuntimeException e) {
+            batchFallbacks.increment();
+            return processIndividually();
+        } finally {
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // two jobs of one user would order the same cart twice: the older one wins, the rest fail
+    private List<CheckoutJob> oneJobPerUser(List<CheckoutJob> locked) {
+        Set<Long> users = new HashSet<>();
+        List<CheckoutJob> jobs = new ArrayList<>(locked.size());
+        for (CheckoutJob job : locked) {
+            if (users.add(job.getUserId())) {
+                jobs.add(job);
+            } else {
+                job.fail("A checkout is already in progress");
+                failedCounter.increment();
+            }
+        }
+        return jobs;
+    }
+
+    private int processIndividually() {
+        int processed = 0;
+        for (int i = 0; i < batchSize; i++) {
+            AtomicLong jobId = new AtomicLong();
+            try {
+                Boolean found = transactionTemplate.execute(status -> {
+                    List<CheckoutJob> jobs = checkoutJobRepository.lockNextQueued(1);
+                    if (jobs.isEmpty()) {
+                        return false;
+                    }
+                    CheckoutJob job = jobs.get(0);
+                    jobId.set(job.getId());
+                    job.complete(orderService.createOrdersInBatch(List.of(job)).get(0));
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(found)) {
+                    break;
+                }
+                completedCounter.increment();
+            } catch (RuntimeException e) {
+                if (jobId.get() == 0) {
+                    throw e;
+                }
+                if (TransientErrors.isTransient(e)) {
+                    // deadlock / lock timeout: keep it queued and back off until the next poll
+                    recordTransientFailure(jobId.get(), e);
+                    break;
+                }
+                String message = e.getMessage() != null && e.getMessage().length() > 1000
+                    ? e.getMessage().substring(0, 1000)
+                    : e.getMessage();
+                transactionTemplate.executeWithoutResult(status ->
+                    checkoutJobRepository.markFailed(jobId.get(), message, LocalDateTime.now()));
+                failedCounter.increment();
+            }
+            processed++;
+        }
+        return processed;
+    }
+
+    private void recordTransientFailure(Long jobId, RuntimeException error) {
+        transientRetries.increment();
+        System.err.println("[CheckoutQueue] Transient error on job " + jobId + ", will retry: " + error.getMessage());
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            checkoutJobRepository.recordAttempt(jobId, now);
+            if (checkoutJobRepository.failIfOutOfAttempts(jobId, maxAttempts,
+                    "Gave up after " + maxAttempts + " attempts: database busy", now) > 0) {
+                failedCounter.increment();
+            }
+        });
+    }
+
+    /**
+     * ลบ job ที่จบแล้วเกิน retention
+     */
+    @Scheduled(cron = "${app.checkout-queue.cleanup-cron:0 15 4 * * *}")
+    @Transactional
+    public void purgeFinishedJobs() {
+        checkoutJobRepository.deleteFinishedBefore(LocalDateTime.now().minusDays(retentionDays));
+    }
+}
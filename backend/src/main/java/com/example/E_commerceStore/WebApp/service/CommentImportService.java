@@ -0,0 +1,509 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.ModerationStatus;
+import com.example.E_commerceStore.WebApp.repository.CommentCopyRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * นำเข้ารีวิวจำนวนมาก (ย้ายข้อมูลจาก marketplace อื่น) ผ่าน Postgres COPY
+ *
+ * A job streams the uploaded file once: each review is checked against user and
+ * product id sets loaded up front, run through the moderation filter, and
+ * appended as a CSV row to a batch that goes to the database in one COPY. Per-row
+ * side effects of addComment (rating deltas, feed, stream) are skipped; the rating
+ * aggregates are rebuilt in one pass when the job finishes and the latest feed
+ * is reloaded, also when a later batch failed after earlier ones committed. Jobs
+ * run one at a time on a background thread; finished jobs stay queryable for
+ * {@code job-retention-minutes}.
+ */
+@Service
+public class CommentImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    // fields read from each review; CSV header names and NDJSON keys
+    private static final String USER_ID = "user_id";
+    private static final String PRODUCT_ID = "product_id";
+    private static final String CONTENT = "content";
+    private static final String RATING = "rating";
+    private static final String CREATED_AT = "created_at";
+
+    @Autowired
+    private CommentCopyRepository commentCopyRepository;
+
+    @Autowired
+    private ModerationService moderationService;
+
+    @Autowired
+    private ProductRatingService productRatingService;
+
+    @Autowired
+    private LatestCommentFeedService latestCommentFeedService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.comment-import.batch-rows:50000}")
+    private int batchRows;
+
+    @Value("${app.comment-import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    @Value("${app.comment-import.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService importExecutor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        importExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "comment-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+    }
+
+    /**
+     * สถานะของงานนำเข้าหนึ่งงาน (อ่านได้ระหว่างที่งานยังทำอยู่)
+     */
+    public static final class ImportJob {
+        private final String id = UUID.randomUUID().toString();
+        private final Format format;
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong loaded = new AtomicLong();
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+        private volatile Status status = Status.QUEUED;
+        private volatile String message;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        private ImportJob(Format format) {
+            this.format = format;
+        }
+
+        public String getId() { return id; }
+        public Status getStatus() { return status; }
+
+        public Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("jobId", id);
+            snapshot.put("format", format);
+            snapshot.put("status", status);
+            snapshot.put("read", read.get());
+            snapshot.put("loaded", loaded.get());
+            snapshot.put("heldForModeration", pending.get());
+            snapshot.put("skipped", skipped.get());
+            synchronized (errors) {
+                snapshot.put("errors", List.copyOf(errors));
+            }
+            snapshot.put("message", message);
+            snapshot.put("startedAt", startedAt);
+            snapshot.put("finishedAt", finishedAt);
+            return snapshot;
+        }
+    }
+
+    /**
+     * เข้าคิวงานนำเข้าไฟล์ (ไฟล์ถูกลบเมื่องานจบ)
+     */
+    public ImportJob submit(Path file, Format format) {
+        pruneFinishedJobs();
+        ImportJob job = new ImportJob(format);
+        jobs.put(job.id, job);
+        importExecutor.execute(() -> run(job, file));
+        return job;
+    }
+
+    public ImportJob getJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Import job not found: " + jobId);
+        }
+        return job;
+    }
+
+    // keeps the job map bounded: finished jobs are dropped once they are older than the retention
+    private void pruneFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    /**
+     * ชนิดไฟล์จากพารามิเตอร์ format หรือ Content-Type (text/csv, application/x-ndjson)
+     */
+    public static Format formatOf(String format, String contentType) {
+        if (format != null && !format.isBlank()) {
+            try {
+                return Format.valueOf(format.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Unsupported import format: " + format);
+            }
+        }
+        String type = contentType != null ? contentType.toLowerCase() : "";
+        if (type.startsWith("application/x-ndjson") || type.startsWith("application/jsonl")) {
+            return Format.NDJSON;
+        }
+        if (type.startsWith("text/csv")) {
+            return Format.CSV;
+        }
+        throw new RuntimeException("Cannot tell the import format from " + contentType + "; pass format=csv or format=ndjson");
+    }
+
+    private void run(ImportJob job, Path file) {
+        job.status = Status.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long[] userIds = commentCopyRepository.findAllUserIds();
+            long[] productIds = commentCopyRepository.findAllProductIds();
+            System.out.println("[CommentImport] Job " + job.id + ": " + userIds.length + " users, "
+                + productIds.length + " products preloaded");
+
+            Batch batch = new Batch();
+            ReviewSource source = job.format == Format.CSV ? new CsvSource(reader) : new NdjsonSource(reader);
+            Map<String, String> review;
+            while ((review = source.next()) != null) {
+                job.read.incrementAndGet();
+                String error = append(batch, review, userIds, productIds, job);
+                if (error != null) {
+                    job.skipped.incrementAndGet();
+                    reportError(job, "line " + source.line() + ": " + error);
+                }
+                if (batch.rows >= batchRows) {
+                    flush(job, batch);
+                }
+            }
+            flush(job, batch);
+            job.status = Status.COMPLETED;
+        } catch (IOException | RuntimeException e) {
+            job.message = e.getMessage();
+            job.status = Status.FAILED;
+            System.err.println("[CommentImport] Job " + job.id + " failed: " + e.getMessage());
+        } finally {
+            // batches that committed before a failure still have to show up in the aggregates and the feed
+            if (job.loaded.get() > 0) {
+                refreshAggregates(job);
+            }
+            job.finishedAt = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // temp file; the OS cleans it up eventually
+            }
+        }
+        System.out.println("[CommentImport] Job " + job.id + " " + job.status + ": loaded " + job.loaded.get()
+            + ", held " + job.pending.get() + ", skipped " + job.skipped.get());
+    }
+
+    private void refreshAggregates(ImportJob job) {
+        try {
+            int products = productRatingService.rebuildAll();
+            latestCommentFeedService.reload();
+            String rebuilt = "Rebuilt rating stats for " + products + " products";
+            job.message = job.message != null ? job.message + "; " + rebuilt : rebuilt;
+        } catch (RuntimeException e) {
+            job.message = (job.message != null ? job.message + "; " : "") + "Rating stats rebuild failed: " + e.getMessage();
+            job.status = Status.FAILED;
+            System.err.println("[CommentImport] Job " + job.id + " could not rebuild rating stats: " + e.getMessage());
+        }
+    }
+
+    // validates one review and writes it as a COPY row; returns why it was skipped, or null
+    private String append(Batch batch, Map<String, String> review, long[] userIds, long[] productIds, ImportJob job)
+            throws IOException {
+        Long userId = parseId(review.get(USER_ID));
+        if (userId == null || Arrays.binarySearch(userIds, userId) < 0) {
+            return "unknown user_id " + review.get(USER_ID);
+        }
+        Long productId = parseId(review.get(PRODUCT_ID));
+        if (productId == null || Arrays.binarySearch(productIds, productId) < 0) {
+            return "unknown product_id " + review.get(PRODUCT_ID);
+        }
+        String content = review.get(CONTENT) != null ? review.get(CONTENT).trim() : "";
+        if (content.isEmpty()) {
+            return "empty content";
+        }
+        Integer rating = null;
+        String ratingText = review.get(RATING);
+        if (ratingText != null && !ratingText.isBlank()) {
+            try {
+                rating = Integer.valueOf(ratingText.trim());
+            } catch (NumberFormatException e) {
+                return "invalid rating " + ratingText;
+            }
+            if (rating < 1 || rating > 5) {
+                return "rating must be between 1 and 5";
+            }
+        }
+        LocalDateTime createdAt;
+        try {
+            createdAt = parseTimestamp(review.get(CREATED_AT));
+        } catch (DateTimeParseException e) {
+            return "invalid created_at " + review.get(CREATED_AT);
+        }
+
+        ModerationService.Verdict verdict = moderationService.review(content);
+        ModerationStatus status = verdict.flagged() ? ModerationStatus.PENDING : ModerationStatus.APPROVED;
+        if (verdict.flagged()) {
+            job.pending.incrementAndGet();
+        }
+
+        // user_id, product_id, content, rating, created_at, updated_at, is_edited, moderation_status, moderation_reason
+        Writer out = batch.writer;
+        out.write(userId + "," + productId + ",");
+        out.write(quote(content));
+        out.write("," + (rating != null ? rating : "") + ",");
+        out.write(createdAt + ",,false," + status + ",");
+        out.write(verdict.flagged() ? quote(truncate(verdict.summary(), 500)) : "");
+        out.write('\n');
+        batch.rows++;
+        return null;
+    }
+
+    // one COPY per batch, in its own transaction: a failure loses at most this batch
+    private void flush(ImportJob job, Batch batch) throws IOException {
+        if (batch.rows == 0) {
+            return;
+        }
+        batch.writer.flush();
+        byte[] csv = batch.bytes.toByteArray();
+        Long rows = transactionTemplate.execute(status -> commentCopyRepository.copyIn(csv, csv.length));
+        job.loaded.addAndGet(rows != null ? rows : 0);
+        batch.reset();
+    }
+
+    private void reportError(ImportJob job, String error) {
+        synchronized (job.errors) {
+            if (job.errors.size() < maxReportedErrors) {
+                job.errors.add(error);
+            }
+        }
+    }
+
+    private static Long parseId(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ISO local date-time, or with an offset (converted to server time); missing = now
+    private static LocalDateTime parseTimestamp(String value) {
+        if (value == null || value.isBlank()) {
+            return LocalDateTime.now();
+        }
+        String text = value.trim().replace(' ', 'T');
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            return OffsetDateTime.parse(text).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String truncate(String value, int max) {
+        return value.length() <= max ? value : value.substring(0, max);
+    }
+
+    private static final class Batch {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        private final Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        private int rows;
+
+        private void reset() {
+            bytes.reset();
+            rows = 0;
+        }
+    }
+
+    private interface ReviewSource {
+        // next review as field -> value, or null at end of input
+        Map<String, String> next() throws IOException;
+
+        long line();
+    }
+
+    /**
+     * CSV แบบ RFC 4180: แถวแรกเป็น header, ค่าที่มี comma/newline อยู่ในเครื่องหมายคำพูด
+     */
+    private static final class CsvSource implements ReviewSource {
+        private final BufferedReader reader;
+        private final List<String> header;
+        private long line;
+        private long recordLine;
+
+        private CsvSource(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> names = readRecord();
+            if (names == null) {
+                throw new RuntimeException("CSV file is empty");
+            }
+            header = names.stream().map(name -> name.trim().toLowerCase().replace("\uFEFF", "")).toList();
+            if (!header.contains(USER_ID) || !header.contains(PRODUCT_ID) || !header.contains(CONTENT)) {
+                throw new RuntimeException("CSV header must contain user_id, product_id and content");
+            }
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            List<String> values;
+            do {
+                values = readRecord();
+                if (values == null) {
+                    return null;
+                }
+            } while (values.size() == 1 && values.get(0).isEmpty());
+
+            Map<String, String> review = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                review.put(header.get(i), values.get(i));
+            }
+            return review;
+        }
+
+        @Override
+        public long line() {
+            return recordLine;
+        }
+
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            recordLine = ++line;
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            value.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        value.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    value.append((char) c);
+                }
+                c = reader.read();
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+
+    /**
+     * NDJSON: หนึ่ง JSON object ต่อบรรทัด
+     */
+    private final class NdjsonSource implements ReviewSource {
+        private final BufferedReader reader;
+        private long line;
+
+        private NdjsonSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                if (text == null) {
+                    return null;
+                }
+                line++;
+            } while (text.isBlank());
+
+            Map<String, String> review = new HashMap<>();
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (IOException e) {
+                // an unparseable line is reported like any other invalid review
+                return review;
+            }
+            for (String field : List.of(USER_ID, PRODUCT_ID, CONTENT, RATING, CREATED_AT)) {
+                JsonNode value = node.get(field);
+                if (value != null && !value.isNull()) {
+                    review.put(field, value.asText());
+                }
+            }
+            return review;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+    }
+}
@@ -1,19 +1,30 @@
 package com.example.E_commerceStore.WebApp.service;
 
+import com.example.E_commerceStore.WebApp.dto.CommentDTO;
+import com.example.E_commerceStore.WebApp.dto.CommentView;
+import com.example.E_commerceStore.WebApp.dto.RatingSummary;
 import com.example.E_commerceStore.WebApp.model.Comment;
+import com.example.E_commerceStore.WebApp.model.ModerationStatus;
 import com.example.E_commerceStore.WebApp.model.Product;
 import com.example.E_commerceStore.WebApp.model.User;
 import com.example.E_commerceStore.WebApp.repository.CommentRepository;
 import com.example.E_commerceStore.WebApp.repository.ProductRepository;
+import com.example.E_commerceStore.WebApp.util.KeysetCursor;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -26,6 +37,24 @@ public class CommentService {
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private ProductRatingService productRatingService;
+    
+    @Autowired
+    private CommentVoteService commentVoteService;
+    
+    @Autowired
+    private CommentStreamService commentStreamService;
+    
+    @Autowired
+    private ModerationService moderationService;
+    
+    @Autowired
+    private LatestCommentFeedService latestCommentFeedService;
+    
+    @Value("${app.comments.max-thread-depth:10}")
+    private int maxThreadDepth;
+    
     /**
      * เพิ่ม comment ใหม่
      */
@@ -44,7 +73,13 @@ public class CommentService {
         }
         
         Comment comment = new Comment(user, product, content.trim(), rating);
-        return commentRepository.save(comment);
+        moderate(comment);
+        Comment saved = commentRepository.save(comment);
+        if (saved.isApproved()) {
+            productRatingService.recordAdded(productId, rating);
+            TransactionCallbacks.afterCommit(() -> published(productId, saved.getId(), CommentStreamService.COMMENT_CREATED));
+        }
+        return saved;
     }
     
     /**
@@ -61,15 +96,28 @@ public class CommentService {
         
         Comment reply = new Comment(user, parentComment.getProduct(), content.trim());
         reply.setParentComment(parentComment);
+        moderate(reply);
         
-        return commentRepository.save(reply);
+        Comment saved = commentRepository.save(reply);
+        if (saved.isApproved()) {
+            Long productId = parentComment.getProduct().getId();
+            TransactionCallbacks.afterCommit(() -> published(productId, saved.getId(), CommentStreamService.REPLY_CREATED));
+        }
+        return saved;
     }
     
     /**
      * แก้ไข comment
      */
     public Comment updateComment(User user, Long commentId, String newContent) {
-        Comment comment = commentRepository.findById(commentId)
+        return updateComment(user, commentId, newContent, null);
+    }
+    
+    /**
+     * แก้ไข comment พร้อมเปลี่ยนคะแนน (newRating = null คือไม่เปลี่ยนคะแนน)
+     */
+    public Comment updateComment(User user, Long commentId, String newContent, Integer newRating) {
+        Comment comment = commentRepository.findByIdForUpdate(commentId)
             .orElseThrow(() -> new RuntimeException("Comment not found: " + commentId));
         
         // ตรวจสอบเจ้าของ comment
@@ -82,10 +130,52 @@ public class CommentService {
             throw new RuntimeException("Comment content cannot be empty");
         }
         
+        // ตรวจสอบ rating (ถ้ามี) - replies ไม่มีคะแนน
+        if (newRating != null && (newRating < 1 || newRating > 5)) {
+            throw new RuntimeException("Rating must be between 1 and 5");
+        }
+        if (newRating != null && comment.getParentComment() != null) {
+            throw new RuntimeException("Replies cannot have a rating");
+        }
+        
+        boolean wasApproved = comment.isApproved();
+        boolean wasCounted = wasApproved && comment.getParentComment() == null;
+        Integer oldRating = comment.getRating();
         comment.setContent(newContent.trim());
         comment.setUpdatedAt(LocalDateTime.now());
         comment.setIsEdited(true);
+        if (newRating != null) {
+            comment.setRating(newRating);
+        }
+        // ข้อความใหม่ต้องตรวจใหม่ แต่การแก้ไขไม่ลบล้างการตัดสินของ admin:
+        // REJECTED คงเดิม, PENDING ยังรอ admin อยู่, มีแค่ APPROVED ที่ตรวจซ้ำได้
+        if (comment.getModerationStatus() == ModerationStatus.PENDING) {
+            ModerationService.Verdict verdict = moderationService.review(comment.getContent());
+            comment.setModerationReason(verdict.flagged() ? truncate(verdict.summary(), 500) : "Edited while waiting for review");
+        } else if (comment.getModerationStatus() != ModerationStatus.REJECTED) {
+            moderate(comment);
+        }
         
+        boolean isCounted = comment.isApproved() && comment.getParentComment() == null;
+        Long productId = comment.getProduct().getId();
+        if (wasCounted && isCounted) {
+            productRatingService.recordRatingChanged(productId, oldRating, comment.getRating());
+        } else if (wasCounted) {
+            productRatingService.recordRemoved(productId, oldRating);
+        } else if (isCounted) {
+            productRatingService.recordAdded(productId, comment.getRating());
+        }
+        
+        boolean isApproved = comment.isApproved();
+        TransactionCallbacks.afterCommit(() -> {
+            if (wasApproved && isApproved) {
+                commentRepository.findApprovedViewById(commentId).map(CommentDTO::new).ifPresent(latestCommentFeedService::commentChanged);
+            } else if (wasApproved) {
+                latestCommentFeedService.commentRemoved(commentId);
+            } else if (isApproved) {
+                latestCommentFeedService.reload();
+            }
+        });
         return commentRepository.save(comment);
     }
     
@@ -93,7 +183,7 @@ public class CommentService {
      * ลบ comment
      */
     public void deleteComment(User user, Long commentId) {
-        Comment comment = commentRepository.findById(commentId)
+        Comment comment = commentRepository.findByIdForUpdate(commentId)
             .orElseThrow(() -> new RuntimeException("Comment not found: " + commentId));
         
         // ตรวจสอบเจ้าของ comment
@@ -102,6 +192,109 @@ public class CommentService {
         }
         
         commentRepository.delete(comment);
+        commentVoteService.deleteVotes(commentId);
+        if (comment.getParentComment() == null && comment.isApproved()) {
+            productRatingService.recordRemoved(comment.getProduct().getId(), comment.getRating());
+        }
+        if (comment.isApproved()) {
+            TransactionCallbacks.afterCommit(() -> latestCommentFeedService.commentRemoved(commentId));
+        }
+    }
+    
+    /**
+     * admin อนุมัติ comment ที่ถูกพักไว้: นับคะแนนและส่งให้ผู้ติดตาม live stream
+     */
+    public Comment approveComment(Long commentId) {
+        Comment comment = commentRepository.findByIdForUpdate(commentId)
+            .orElseThrow(() -> new RuntimeException("Comment not found: " + commentId));
+        if (comment.isApproved()) {
+            return comment;
+        }
+        
+        comment.setModerationStatus(ModerationStatus.APPROVED);
+        Long productId = comment.getProduct().getId();
+        boolean isReply = comment.getParentComment() != null;
+        if (!isReply) {
+            productRatingService.recordAdded(productId, comment.getRating());
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            // อยู่กลาง feed ตามเวลาที่เขียน: โหลด feed ใหม่แทนการต่อท้าย
+            latestCommentFeedService.reload();
+            commentRepository.findApprovedViewById(commentId).map(CommentDTO::new).ifPresent(dto -> stream(productId, dto,
+                isReply ? CommentStreamService.REPLY_CREATED : CommentStreamService.COMMENT_CREATED));
+        });
+        return commentRepository.save(comment);
+    }
+    
+    /**
+     * admin ปฏิเสธ comment (ซ่อนถาวร แต่ยังเก็บไว้ตรวจสอบย้อนหลัง)
+     */
+    public Comment rejectComment(Long commentId) {
+        Comment comment = commentRepository.findByIdForUpdate(commentId)
+            .orElseThrow(() -> new RuntimeException("Comment not found: " + commentId));
+        if (comment.isApproved() && comment.getParentComment() == null) {
+            productRatingService.recordRemoved(comment.getProduct().getId(), comment.getRating());
+        }
+        if (comment.isApproved()) {
+            TransactionCallbacks.afterCommit(() -> latestCommentFeedService.commentRemoved(commentId));
+        }
+        comment.setModerationStatus(ModerationStatus.REJECTED);
+        return commentRepository.save(comment);
+    }
+    
+    /**
+     * คิวตรวจเนื้อหา (เก่าสุดก่อน)
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getModerationQueue(int limit) {
+        return commentRepository.findPendingModerationViews(limit).stream()
+            .map(view -> {
+                Map<String, Object> item = new HashMap<>();
+                item.put("comment", new CommentDTO(view));
+                item.put("reason", view.getModerationReason());
+                return item;
+            })
+            .toList();
+    }
+    
+    @Transactional(readOnly = true)
+    public long getModerationQueueSize() {
+        return commentRepository.countByModerationStatus(ModerationStatus.PENDING);
+    }
+    
+    // หลัง commit: โหลดแถวแสดงผลครั้งเดียว แล้วส่งเข้า feed ล่าสุดและ live stream ของสินค้า
+    private void published(Long productId, Long commentId, String eventName) {
+        try {
+            commentRepository.findApprovedViewById(commentId).map(CommentDTO::new).ifPresent(comment -> {
+                latestCommentFeedService.commentAdded(comment);
+                stream(productId, comment, eventName);
+            });
+        } catch (RuntimeException e) {
+            System.err.println("[CommentService] Cannot publish comment " + commentId + ": " + e.getMessage());
+        }
+    }
+    
+    // the rating stats cache was invalidated by an earlier after-commit callback, so these stats include the comment
+    private void stream(Long productId, CommentDTO comment, String eventName) {
+        if (commentStreamService.hasSubscribers(productId)) {
+            commentStreamService.publish(productId, comment, getProductCommentStats(productId), eventName);
+        }
+    }
+    
+    // ตรวจเนื้อหา: ผ่าน = แสดงทันที, ไม่ผ่าน = พักไว้ในคิวให้ admin ตรวจ
+    private void moderate(Comment comment) {
+        ModerationService.Verdict verdict = moderationService.review(comment.getContent());
+        if (verdict.flagged()) {
+            comment.setModerationStatus(ModerationStatus.PENDING);
+            comment.setModerationReason(truncate(verdict.summary(), 500));
+        } else {
+            comment.setModerationStatus(ModerationStatus.APPROVED);
+            comment.setModerationReason(null);
+        }
+    }
+    
+    private static String truncate(String text, int maxLength) {
+        return text.length() <= maxLength ? text : text.substring(0, maxLength);
     }
     
     /**
@@ -112,6 +305,79 @@ public class CommentService {
         return commentRepository.findByProductIdOrderByCreatedAtDesc(productId, pageable);
     }
     
+    /**
+     * ดู comments ของสินค้าเป็น thread: หน้าหนึ่งของ comment หลักพร้อม replies ทุกชั้น
+     * Three queries regardless of thread size: the root page, one recursive query
+     * for all replies below it, and the count.
+     * sortByHelpful เรียง comment หลักตาม helpful_score แทนวันที่
+     */
+    @Transactional(readOnly = true)
+    public Page<CommentDTO> getProductCommentThreads(Long productId, Integer rating, boolean sortByHelpful, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        List<CommentView> rows = sortByHelpful
+            ? commentRepository.findRootViewsByHelpful(productId, rating, size, pageable.getOffset())
+            : commentRepository.findRootViews(productId, rating, size, pageable.getOffset());
+        List<CommentDTO> roots = rows.stream()
+            .map(CommentDTO::new)
+            .toList();
+        attachReplies(roots);
+        long total = commentRepository.countRoots(productId, rating);
+        return new PageImpl<>(roots, pageable, total);
+    }
+    
+    /**
+     * ดู comments ของสินค้าแบบ keyset (cursor) พร้อม replies ทุกชั้น
+     */
+    @Transactional(readOnly = true)
+    public List<CommentDTO> getProductCommentThreadsBefore(Long productId, Integer rating, KeysetCursor cursor, int limit) {
+        List<CommentDTO> roots = commentRepository.findRootViewsBefore(productId, rating, cursor.createdAt(), cursor.id(), limit).stream()
+            .map(CommentDTO::new)
+            .toList();
+        attachReplies(roots);
+        return roots;
+    }
+    
+    /**
+     * ดู comments ของ user แบบ keyset (cursor)
+     */
+    @Transactional(readOnly = true)
+    public List<CommentDTO> getUserCommentsBefore(Long userId, KeysetCursor cursor, int limit) {
+        return commentRepository.findUserViewsBefore(userId, cursor.createdAt(), cursor.id(), limit).stream()
+            .map(CommentDTO::new)
+            .toList();
+    }
+    
+    /**
+     * ดู comment เดียวพร้อม replies ทุกชั้น
+     */
+    @Transactional(readOnly = true)
+    public CommentDTO getCommentThread(Long commentId) {
+        CommentDTO comment = commentRepository.findApprovedViewById(commentId)
+            .map(CommentDTO::new)
+            .orElseThrow(() -> new RuntimeException("Comment not found: " + commentId));
+        attachReplies(List.of(comment));
+        return comment;
+    }
+    
+    // Load every descendant of the given comments at once and nest them under their parents
+    private void attachReplies(List<CommentDTO> parents) {
+        if (parents.isEmpty()) {
+            return;
+        }
+        Map<Long, CommentDTO> byId = new HashMap<>();
+        parents.forEach(parent -> byId.put(parent.id, parent));
+        List<CommentDTO> replies = commentRepository.findReplyViews(new ArrayList<>(byId.keySet()), maxThreadDepth).stream()
+            .map(CommentDTO::new)
+            .toList();
+        replies.forEach(reply -> byId.put(reply.id, reply));
+        for (CommentDTO reply : replies) {
+            CommentDTO parent = byId.get(reply.parentId);
+            if (parent != null) {
+                parent.replies.add(reply);
+            }
+        }
+    }
+    
     /**
      * ดู comments ของสินค้าทั้งหมด
      */
@@ -194,22 +460,21 @@ public class CommentService {
     }
     
     /**
-     * สถิติคะแนนของสินค้า
+     * สถิติคะแนนของสินค้า (จาก product_rating_stats ไม่ต้องโหลด comments)
      */
     public CommentStats getProductCommentStats(Long productId) {
-        List<Comment> commentsWithRating = getProductCommentsWithRating(productId);
-        long totalComments = getProductCommentCount(productId);
-        double averageRating = getProductAverageRating(productId);
-        
-        // นับคะแนนแต่ละระดับ
-        long fiveStar = commentsWithRating.stream().mapToLong(c -> c.getRating() == 5 ? 1 : 0).sum();
-        long fourStar = commentsWithRating.stream().mapToLong(c -> c.getRating() == 4 ? 1 : 0).sum();
-        long threeStar = commentsWithRating.stream().mapToLong(c -> c.getRating() == 3 ? 1 : 0).sum();
-        long twoStar = commentsWithRating.stream().mapToLong(c -> c.getRating() == 2 ? 1 : 0).sum();
-        long oneStar = commentsWithRating.stream().mapToLong(c -> c.getRating() == 1 ? 1 : 0).sum();
-        
-        return new CommentStats(totalComments, commentsWithRating.size(), averageRating,
-                               fiveStar, fourStar, threeStar, twoStar, oneStar);
+        RatingSummary summary = getProductRatingSummary(productId);
+        return new CommentStats(summary.totalComments(), summary.ratedComments(), summary.averageRating(),
+                               summary.fiveStar(), summary.fourStar(), summary.threeStar(),
+                               summary.twoStar(), summary.oneStar());
+    }
+    
+    /**
+     * สรุปคะแนนของสินค้า
+     */
+    @Transactional(readOnly = true)
+    public RatingSummary getProductRatingSummary(Long productId) {
+        return productRatingService.getSummary(productId);
     }
     
     /**
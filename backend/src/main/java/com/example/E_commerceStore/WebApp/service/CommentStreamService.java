@@ -0,0 +1,212 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.dto.CommentDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * สตรีมรีวิวใหม่ของสินค้าแบบ Server-Sent Events (in-process pub/sub)
+ *
+ * An idle subscriber is only an async servlet response plus a small bounded
+ * queue: no thread is held while nothing happens. A published event is
+ * offered to each subscriber's queue and a virtual thread drains it, so a
+ * client with a full TCP window blocks only its own virtual thread. A
+ * subscriber whose queue overflows is evicted and reconnects through
+ * EventSource's automatic retry.
+ */
+@Service
+public class CommentStreamService {
+
+    public static final String COMMENT_CREATED = "comment-created";
+    public static final String REPLY_CREATED = "reply-created";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.comment-stream.buffer-size:32}")
+    private int bufferSize;
+
+    @Value("${app.comment-stream.max-subscribers:50000}")
+    private int maxSubscribers;
+
+    @Value("${app.comment-stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    private final ConcurrentHashMap<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private ExecutorService deliveryExecutor;
+    private Counter eventsPublished;
+    private Counter slowConsumerEvictions;
+
+    @PostConstruct
+    public void init() {
+        deliveryExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("comment-stream-", 0).factory());
+        eventsPublished = Counter.builder("comment_stream.events.published")
+            .description("Comment events fanned out to product streams")
+            .register(meterRegistry);
+        slowConsumerEvictions = Counter.builder("comment_stream.evictions")
+            .description("Subscribers dropped because their buffer overflowed")
+            .register(meterRegistry);
+        Gauge.builder("comment_stream.subscribers", subscriberCount, AtomicInteger::get)
+            .description("Open comment stream connections")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        deliveryExecutor.shutdownNow();
+    }
+
+    /**
+     * เปิด stream ของสินค้า
+     */
+    public SseEmitter subscribe(Long productId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new RuntimeException("Too many live review subscribers, try again later");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(productId, emitter, bufferSize);
+        subscribers.compute(productId, (id, set) -> {
+            Set<Subscriber> listeners = set != null ? set : ConcurrentHashMap.newKeySet();
+            listeners.add(subscriber);
+            return listeners;
+        });
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        enqueue(subscriber, SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    /**
+     * ส่ง comment ใหม่ให้ทุก subscriber ของสินค้า (เรียกหลัง commit)
+     * data = {"comment": ..., "stats": ...} so clients apply it without refetching
+     */
+    public void publish(Long productId, CommentDTO comment, CommentService.CommentStats stats, String eventName) {
+        Set<Subscriber> listeners = subscribers.get(productId);
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("comment", comment);
+        data.put("stats", stats);
+        for (Subscriber subscriber : listeners) {
+            enqueue(subscriber, SseEmitter.event().name(eventName).id(String.valueOf(comment.id)).data(data));
+        }
+        eventsPublished.increment();
+    }
+
+    public boolean hasSubscribers(Long productId) {
+        Set<Subscriber> listeners = subscribers.get(productId);
+        return listeners != null && !listeners.isEmpty();
+    }
+
+    /**
+     * heartbeat กัน proxy ตัด connection ที่เงียบนาน และเก็บ subscriber ที่หลุดไปแล้ว
+     */
+    @Scheduled(fixedDelayString = "${app.comment-stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> enqueue(subscriber, SseEmitter.event().comment("ping"))));
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "subscribers", subscriberCount.get(),
+            "products", subscribers.size());
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.evicted.get()) {
+            return;
+        }
+        if (!subscriber.buffer.offer(event)) {
+            // ผู้รับช้าเกินไป: ตัดทิ้งแทนการกินหน่วยความจำไม่จำกัด
+            // complete() waits on the emitter lock held by a blocked send, so only the drainer calls it
+            if (subscriber.evicted.compareAndSet(false, true)) {
+                slowConsumerEvictions.increment();
+                remove(subscriber);
+            }
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            deliveryExecutor.execute(() -> drain(subscriber));
+        }
+    }
+
+    // One drainer per subscriber at a time keeps its events in order
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            while (!subscriber.evicted.get() && (event = subscriber.buffer.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    remove(subscriber);
+                    subscriber.buffer.clear();
+                    return;
+                }
+            }
+            if (subscriber.evicted.get()) {
+                // draining stays set: nobody delivers to this emitter again
+                subscriber.buffer.clear();
+                subscriber.emitter.complete();
+                return;
+            }
+            subscriber.draining.set(false);
+            // event (หรือการ evict) ที่เข้ามาระหว่างปิด flag ต้องมีคน drain
+            if ((subscriber.buffer.isEmpty() && !subscriber.evicted.get())
+                    || !subscriber.draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.removed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.productId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static final class Subscriber {
+        private final Long productId;
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private final AtomicBoolean evicted = new AtomicBoolean();
+
+        private Subscriber(Long productId, SseEmitter emitter, int bufferSize) {
+            this.productId = productId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.CommentVote;
+import com.example.E_commerceStore.WebApp.repository.CommentRepository;
+import com.example.E_commerceStore.WebApp.repository.CommentVoteCountRepository;
+import com.example.E_commerceStore.WebApp.repository.CommentVoteRepository;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * โหวต "มีประโยชน์ / ไม่มีประโยชน์" ของรีวิว
+ *
+ * A vote only writes the voter's own comment_votes row, so a popular review
+ * never becomes a hot row. The voted comment is marked dirty, and a periodic
+ * batch recounts comments.helpful_count / unhelpful_count / helpful_score of
+ * the dirty comments from comment_votes. Recounting (instead of adding
+ * in-memory deltas) keeps nodes independent: nothing one node has pending can
+ * be double counted by another. A comment whose refresh was lost in a crash is
+ * corrected by its next vote.
+ */
+@Service
+public class CommentVoteService {
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private CommentVoteRepository commentVoteRepository;
+
+    @Autowired
+    private CommentVoteCountRepository commentVoteCountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private TransactionTemplate transactionTemplate;
+    private Counter votesRecorded;
+    private Counter commentsFlushed;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        votesRecorded = Counter.builder("comment_votes.recorded")
+            .description("Helpful/unhelpful votes cast, changed or removed")
+            .register(meterRegistry);
+        commentsFlushed = Counter.builder("comment_votes.flushed")
+            .description("Comment counter updates written to the comments table")
+            .register(meterRegistry);
+    }
+
+    /**
+     * โหวต comment (helpful = null คือยกเลิกโหวต)
+     *
+     * @return โหวตปัจจุบันของ user หลังเปลี่ยน
+     */
+    @Transactional
+    public Optional<Boolean> vote(Long userId, Long commentId, Boolean helpful) {
+        if (!commentRepository.existsById(commentId)) {
+            throw new RuntimeException("Comment not found: " + commentId);
+        }
+
+        Optional<CommentVote> existing = commentVoteRepository.findForUpdate(commentId, userId);
+        Boolean previous = existing.map(CommentVote::isHelpful).orElse(null);
+        if (Objects.equals(previous, helpful)) {
+            return Optional.ofNullable(helpful);
+        }
+
+        if (helpful == null) {
+            commentVoteRepository.delete(existing.get());
+        } else if (existing.isPresent()) {
+            existing.get().setHelpful(helpful);
+        } else {
+            commentVoteRepository.save(new CommentVote(commentId, userId, helpful));
+        }
+
+        TransactionCallbacks.afterCommit(() -> {
+            dirty.add(commentId);
+            votesRecorded.increment();
+        });
+        return Optional.ofNullable(helpful);
+    }
+
+    /**
+     * ลบโหวตของ comment ที่ถูกลบ (joins the caller's transaction)
+     */
+    @Transactional
+    public void deleteVotes(Long commentId) {
+        commentVoteRepository.deleteByCommentId(commentId);
+        TransactionCallbacks.afterCommit(() -> dirty.remove(commentId));
+    }
+
+    /**
+     * นับ counters ของ comments ที่มีโหวตใหม่จาก comment_votes เป็น batch
+     */
+    @Scheduled(fixedDelayString = "${app.comment-votes.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<Long> commentIds = new ArrayList<>();
+        for (Long commentId : dirty) {
+            // removed before the recount reads comment_votes, so a vote committed meanwhile marks it again
+            if (dirty.remove(commentId)) {
+                commentIds.add(commentId);
+            }
+        }
+        if (commentIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> commentVoteCountRepository.recount(commentIds));
+            commentsFlushed.increment(commentIds.size());
+        } catch (RuntimeException e) {
+            // นับใหม่รอบถัดไป
+            dirty.addAll(commentIds);
+            System.err.println("[CommentVote] Counter flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+
 @Service
 public class EmailService {
 
@@ -73,4 +75,47 @@ public class EmailService {
             // Don't throw exception for welcome email failure
         }
     }
+
+    /**
+     * อีเมลยืนยันคำสั่งซื้อ (ส่งจาก outbox relay; throw เมื่อส่งไม่สำเร็จเพื่อให้ retry)
+     */
+    public void sendOrderConfirmationEmail(String toEmail, String firstName, String orderNumber, BigDecimal totalAmount) {
+        String emailBody = String.format(
+            "สวัสดี %s,\n\n" +
+            "เราได้รับชำระเงินสำหรับคำสั่งซื้อ %s เรียบร้อยแล้ว\n" +
+            "ยอดรวม: %.2f บาท\n\n" +
+            "ติดตามสถานะคำสั่งซื้อได้ที่ http://localhost:5174/order-success/%s\n\n" +
+            "ขอบคุณที่เลือกใช้บริการ E-Commerce Store\n\n" +
+            "ทีม E-Commerce Store",
+            firstName, orderNumber, totalAmount, orderNumber
+        );
+        sendOrderEmail(toEmail, "ยืนยันคำสั่งซื้อ " + orderNumber + " - E-Commerce Store", emailBody);
+    }
+
+    public void sendOrderCancelledEmail(String toEmail, String firstName, String orderNumber, boolean paymentFailed) {
+        String emailBody = String.format(
+            "สวัสดี %s,\n\n" +
+            "คำสั่งซื้อ %s ถูกยกเลิกแล้ว%s\n\n" +
+            "หากมีคำถามหรือต้องการความช่วยเหลือ กรุณาติดต่อเรา\n\n" +
+            "ทีม E-Commerce Store",
+            firstName, orderNumber, paymentFailed ? " เนื่องจากการชำระเงินไม่สำเร็จ" : ""
+        );
+        sendOrderEmail(toEmail, "ยกเลิกคำสั่งซื้อ " + orderNumber + " - E-Commerce Store", emailBody);
+    }
+
+    private void sendOrderEmail(String toEmail, String subject, String body) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(fromEmail);
+        message.setTo(toEmail);
+        message.setSubject(subject);
+        message.setText(body);
+
+        try {
+            mailSender.send(message);
+            System.out.println("✅ Order email sent to: " + toEmail);
+        } catch (Exception e) {
+            System.err.println("❌ Failed to send order email to: " + toEmail);
+            throw new RuntimeException("Failed to send order email: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,314 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.Product;
+import com.example.E_commerceStore.WebApp.repository.ProductRepository;
+import com.example.E_commerceStore.WebApp.repository.ProductStockRepository;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inventory for products flagged as flash sale.
+ *
+ * The database stays the only cap on stock: a node takes units out of
+ * products.stock in chunks (a conditional UPDATE that can never go below zero)
+ * and hands them to checkouts from a striped in-memory counter with CAS on one
+ * shard, so the product row is touched once per chunk instead of once per order.
+ * Units a node holds but has not sold go back to products.stock when the sale
+ * ends. A node that crashes loses its leased units, which undersells but never
+ * oversells.
+ */
+@Service
+public class FlashSaleInventoryService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductStockRepository productStockRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.flash-sale.shards:8}")
+    private int shardCount;
+
+    @Value("${app.flash-sale.lease-size:50}")
+    private int leaseSize;
+
+    private final ConcurrentHashMap<Long, StripedCounter> counters = new ConcurrentHashMap<>();
+    private TransactionTemplate transactionTemplate;
+    // Leases commit on their own: the units are taken even if the checkout that asked rolls back
+    private TransactionTemplate leaseTransaction;
+    private Counter unitsSold;
+    private Counter rejections;
+    private Counter unitsLeased;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        leaseTransaction = new TransactionTemplate(transactionManager);
+        leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        unitsSold = Counter.builder("flash_sale.units.sold")
+            .description("Units taken from flash sale counters by committed orders")
+            .register(meterRegistry);
+        rejections = Counter.builder("flash_sale.rejections")
+            .description("Checkouts rejected because a flash sale ran out of stock")
+            .register(meterRegistry);
+        unitsLeased = Counter.builder("flash_sale.units.leased")
+            .description("Units moved from products.stock into in-memory flash sale counters")
+            .register(meterRegistry);
+    }
+
+    /**
+     * เริ่ม flash sale: ตั้ง flag ใน DB (แต่ละ node จะดึงสต็อกเป็นก้อนเองเมื่อมีคนซื้อ)
+     */
+    public int startSale(Long productId) {
+        return transactionTemplate.execute(status -> {
+            Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
+            product.setFlashSale(true);
+            productRepository.save(product);
+            return stockOf(product);
+        });
+    }
+
+    /**
+     * จบ flash sale: ให้สินค้ากลับไปตัดสต็อกใน DB ตามปกติ แล้วคืนหน่วยที่ node นี้ดึงไว้แต่ยังขายไม่ได้
+     * (node อื่นคืนของตัวเองในรอบ {@link #returnEndedLeases()} ถัดไป)
+     */
+    public Map<String, Object> endSale(Long productId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
+            product.setFlashSale(false);
+            productRepository.save(product);
+        });
+        int returned = returnLease(productId);
+        int stock = productRepository.findById(productId).map(FlashSaleInventoryService::stockOf).orElse(0);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("productId", productId);
+        result.put("returnedUnits", returned);
+        result.put("databaseStock", stock);
+        return result;
+    }
+
+    /**
+     * สต็อกที่ใช้ตรวจตอน checkout: ค่าใน DB บวกหน่วยที่ node นี้ดึงมาไว้แล้วแต่ยังไม่ได้ขาย
+     */
+    public int getStock(Long productId, int databaseStock) {
+        StripedCounter counter = counters.get(productId);
+        return counter != null ? databaseStock + counter.sum() : databaseStock;
+    }
+
+    /**
+     * ตัดสต็อก flash sale ของคำสั่งซื้อแบบทั้งหมดหรือไม่เลย
+     * counter ที่เหลือไม่พอจะดึงก้อนใหม่จาก DB ก่อน หน่วยที่ตัดได้จะถูกคืนเข้า counter ถ้า transaction rollback
+     *
+     * @return product ids ที่สต็อกเหลือไม่พอ (ไม่มีการตัดใด ๆ เกิดขึ้น)
+     */
+    public List<Long> decrement(Map<Long, Integer> quantities) {
+        Map<Long, Integer> acquired = new HashMap<>();
+        List<Long> failed = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            StripedCounter counter = counters.computeIfAbsent(line.getKey(), id -> new StripedCounter(0, shardCount));
+            if (counter.tryAcquire(line.getValue()) || refillAndAcquire(line.getKey(), counter, line.getValue())) {
+                acquired.put(line.getKey(), line.getValue());
+            } else {
+                failed.add(line.getKey());
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            restore(acquired);
+            rejections.increment();
+            return failed;
+        }
+
+        TransactionCallbacks.afterRollback(() -> restore(acquired));
+        TransactionCallbacks.afterCommit(() -> acquired.values().forEach(unitsSold::increment));
+        return failed;
+    }
+
+    /**
+     * คืนหน่วยของ sale ที่จบแล้ว (รวมถึงที่ node อื่นสั่งจบ) กลับเข้า products.stock
+     */
+    @Scheduled(fixedDelayString = "${app.flash-sale.sync-interval-ms:5000}")
+    public void returnEndedLeases() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        try {
+            for (Product product : productRepository.findAllById(counters.keySet())) {
+                if (!product.isFlashSale()) {
+                    returnLease(product.getId());
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[FlashSale] Cannot return ended leases: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        new ArrayList<>(counters.keySet()).forEach(this::returnLease);
+    }
+
+    public Map<Long, Map<String, Integer>> getActiveSales() {
+        Map<Long, Map<String, Integer>> sales = new LinkedHashMap<>();
+        counters.forEach((productId, counter) -> sales.put(productId, Map.of("leasedRemaining", counter.sum())));
+        return sales;
+    }
+
+    // One refill per counter at a time; the DB decides how many units are left to lease
+    private boolean refillAndAcquire(Long productId, StripedCounter counter, int quantity) {
+        synchronized (counter) {
+            if (counter.tryAcquire(quantity)) {
+                return true;
+            }
+            if (counters.get(productId) != counter) {
+                // the sale ended and this counter was already returned
+                return false;
+            }
+            int wanted = Math.max(quantity - counter.sum(), leaseSize);
+            Integer leased = leaseTransaction.execute(status -> productStockRepository.leaseStock(productId, wanted));
+            if (leased == null || leased == 0) {
+                return false;
+            }
+            unitsLeased.increment(leased);
+            counter.release(leased);
+            return counter.tryAcquire(quantity);
+        }
+    }
+
+    private int returnLease(Long productId) {
+        StripedCounter counter = counters.remove(productId);
+        if (counter == null) {
+            return 0;
+        }
+        int units;
+        synchronized (counter) {
+            units = counter.drain();
+        }
+        if (units > 0) {
+            transactionTemplate.executeWithoutResult(status -> productStockRepository.adjustStock(Map.of(productId, units)));
+        }
+        return units;
+    }
+
+    private void restore(Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> {
+            StripedCounter counter = counters.get(productId);
+            if (counter != null) {
+                counter.release(quantity);
+            } else {
+                // sale ended meanwhile: the lease was already returned, so give these units to the database
+                transactionTemplate.executeWithoutResult(status ->
+                    productStockRepository.adjustStock(Map.of(productId, quantity)));
+            }
+        });
+    }
+
+    private static int stockOf(Product product) {
+        return product.getStock() != null ? product.getStock() : 0;
+    }
+
+    /**
+     * Stock split across shards so concurrent buyers rarely CAS the same cell.
+     */
+    private static final class StripedCounter {
+        private final AtomicInteger[] shards;
+
+        private StripedCounter(int total, int shardCount) {
+            int count = Math.max(1, shardCount);
+            shards = new AtomicInteger[count];
+            for (int i = 0; i < count; i++) {
+                shards[i] = new AtomicInteger(total / count + (i < total % count ? 1 : 0));
+            }
+        }
+
+        private boolean tryAcquire(int quantity) {
+            int start = ThreadLocalRandom.current().nextInt(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                AtomicInteger shard = shards[(start + i) % shards.length];
+                int current;
+                while ((current = shard.get()) >= quantity) {
+                    if (shard.compareAndSet(current, current - quantity)) {
+                        return true;
+                    }
+                }
+            }
+            return acquireAcrossShards(quantity, start);
+        }
+
+        // ไม่มี shard ไหนเหลือพอ: ค่อย ๆ เก็บจากหลาย shard แล้วคืนถ้ารวมแล้วยังไม่พอ
+        private boolean acquireAcrossShards(int quantity, int start) {
+            int[] taken = new int[shards.length];
+            int remaining = quantity;
+            for (int i = 0; i < shards.length && remaining > 0; i++) {
+                int index = (start + i) % shards.length;
+                AtomicInteger shard = shards[index];
+                int current;
+                while ((current = shard.get()) > 0) {
+                    int take = Math.min(current, remaining);
+                    if (shard.compareAndSet(current, current - take)) {
+                        taken[index] = take;
+                        remaining -= take;
+                        break;
+                    }
+                }
+            }
+            if (remaining > 0) {
+                for (int i = 0; i < shards.length; i++) {
+                    if (taken[i] > 0) {
+                        shards[i].addAndGet(taken[i]);
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+
+        private void release(int quantity) {
+            shards[ThreadLocalRandom.current().nextInt(shards.length)].addAndGet(quantity);
+        }
+
+        private int drain() {
+            int total = 0;
+            for (AtomicInteger shard : shards) {
+                total += shard.getAndSet(0);
+            }
+            return total;
+        }
+
+        private int sum() {
+            int total = 0;
+            for (AtomicInteger shard : shards) {
+                total += shard.get();
+            }
+            return total;
+        }
+    }
+}
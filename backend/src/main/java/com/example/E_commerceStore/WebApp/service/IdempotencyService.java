@@ -0,0 +1,310 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.IdempotencyRecord;
+import com.example.E_commerceStore.WebApp.repository.IdempotencyRecordRepository;
+import com.example.E_commerceStore.WebApp.util.LruCache;
+import com.example.E_commerceStore.WebApp.util.TransientErrors;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support for mutating endpoints (checkout, payment intents).
+ *
+ * The first request for an (owner, key) pair inserts an IN_PROGRESS row, runs
+ * and stores its response; later requests with the same key get that response
+ * replayed. Duplicates arriving while the first one still runs on this node
+ * wait for it in memory instead of hitting the database, and completed
+ * responses are served from a bounded LRU cache until they expire. Reusing a
+ * key with a different request body is rejected with 422.
+ *
+ * Only final answers are stored: 2xx and deterministic 4xx (validation,
+ * business rules). Anything else (5xx, 408/409/423/425/429, exceptions)
+ * releases the key so the client can retry with it.
+ *
+ * An IN_PROGRESS row is never taken over before it expires: its action may
+ * have committed on a node that died before storing the response, and running
+ * it again would, for example, create a second order. Such a key answers 409
+ * until its TTL runs out.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${app.idempotency.lock-timeout-seconds:60}")
+    private long lockTimeoutSeconds;
+
+    private TransactionTemplate transactionTemplate;
+    private LruCache<String, StoredResponse> cache;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private Counter replayedCounter;
+    private Counter coalescedCounter;
+    private Counter conflictCounter;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        cache = new LruCache<>(cacheSize);
+        replayedCounter = Counter.builder("idempotency.replayed")
+            .description("Responses replayed for a repeated Idempotency-Key")
+            .register(meterRegistry);
+        coalescedCounter = Counter.builder("idempotency.coalesced")
+            .description("Duplicate requests that waited for an in-flight original")
+            .register(meterRegistry);
+        conflictCounter = Counter.builder("idempotency.conflicts")
+            .description("Requests rejected because the key was in use or reused with another body")
+            .register(meterRegistry);
+    }
+
+    /**
+     * รัน action ครั้งเดียวต่อ (owner, key); ถ้าไม่มี key ก็รันตามปกติ
+     *
+     * @param owner       "user:<id>" or "session:<id>"
+     * @param requestPath method and path, part of the fingerprint
+     * @param requestBody request payload, part of the fingerprint
+     */
+    public ResponseEntity<?> execute(String owner, String key, String requestPath, Object requestBody,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > 255) {
+            return ResponseEntity.badRequest().body(Map.of("error", HEADER + " must be at most 255 characters"));
+        }
+
+        String fingerprint = fingerprint(requestPath, requestBody);
+        String cacheKey = owner + "|" + key;
+
+        StoredResponse cached = cache.get(cacheKey);
+        if (cached != null && cached.expiresAt().isAfter(LocalDateTime.now())) {
+            return replay(cached, fingerprint);
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> original = inFlight.putIfAbsent(cacheKey, mine);
+        if (original != null) {
+            coalescedCounter.increment();
+            return awaitOriginal(original, fingerprint);
+        }
+
+        try {
+            return runOnce(owner, key, cacheKey, requestPath, fingerprint, action, mine);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Waiters already hold the future; later duplicates go to the cache/table
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    private ResponseEntity<?> runOnce(String owner, String key, String cacheKey, String requestPath, String fingerprint,
+                                      Supplier<ResponseEntity<?>> action, CompletableFuture<StoredResponse> mine) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findByOwnerAndIdempotencyKey(owner, key);
+        if (existing.isPresent()) {
+            IdempotencyRecord record = existing.get();
+            boolean expired = record.getExpiresAt().isBefore(now);
+            if (!expired && record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                StoredResponse stored = StoredResponse.of(record);
+                cache.put(cacheKey, stored);
+                mine.complete(stored);
+                return replay(stored, fingerprint);
+            }
+            if (!expired) {
+                // Still running, or its response was never stored: the action may have committed
+                mine.complete(null);
+                return inProgress();
+            }
+            transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.deleteById(record.getId()));
+        }
+
+        IdempotencyRecord record;
+        try {
+            record = transactionTemplate.execute(status -> idempotencyRecordRepository.saveAndFlush(
+                new IdempotencyRecord(owner, key, requestPath, fingerprint, now.plusHours(ttlHours))));
+        } catch (DataIntegrityViolationException e) {
+            // Another node claimed the key between our read and insert
+            mine.complete(null);
+            return inProgress();
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            forget(record);
+            throw e;
+        }
+
+        if (!isFinal(response.getStatusCode().value())) {
+            // Not a final answer; let the client retry with the same key
+            forget(record);
+            mine.complete(null);
+            return response;
+        }
+
+        StoredResponse stored = new StoredResponse(fingerprint, response.getStatusCode().value(),
+            toJson(response.getBody()), record.getExpiresAt());
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                idempotencyRecordRepository.complete(record.getId(), stored.status(), stored.body()));
+        } catch (RuntimeException e) {
+            // The action already happened: answer it, the key stays IN_PROGRESS (409) until it expires
+            System.err.println("[IdempotencyService] Could not store response for key " + key + ": " + e.getMessage());
+        }
+        cache.put(cacheKey, stored);
+        mine.complete(stored);
+        return response;
+    }
+
+    /**
+     * error response สำหรับ action ที่รันใต้ {@link #execute}: ความผิดพลาดชั่วคราว (deadlock,
+     * timeout, connection) เป็น 503 ซึ่งไม่ถูกเก็บ ส่วน exception อื่นเป็น 400 ที่ตอบซ้ำได้
+     */
+    public static ResponseEntity<?> errorResponse(Exception e) {
+        if (TransientErrors.isTransient(e)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Temporary failure, please retry"));
+        }
+        if (e instanceof DataAccessException) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Unexpected database error"));
+        }
+        return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+    }
+
+    private static boolean isFinal(int status) {
+        if (status >= 200 && status < 300) {
+            return true;
+        }
+        return status >= 400 && status < 500
+            && status != 408 && status != 409 && status != 423 && status != 425 && status != 429;
+    }
+
+    private ResponseEntity<?> awaitOriginal(CompletableFuture<StoredResponse> original, String fingerprint) {
+        try {
+            StoredResponse stored = original.get(lockTimeoutSeconds, TimeUnit.SECONDS);
+            return stored != null ? replay(stored, fingerprint) : inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return inProgress();
+        } catch (Exception e) {
+            // The original failed (and released the key) or took too long
+            conflictCounter.increment();
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "The original request did not complete. Please retry."));
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String fingerprint) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            conflictCounter.increment();
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("error", HEADER + " was already used for a different request"));
+        }
+        replayedCounter.increment();
+        try {
+            return ResponseEntity.status(stored.status())
+                .header(REPLAYED_HEADER, "true")
+                .body(objectMapper.readTree(stored.body()));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Cannot read stored response", e);
+        }
+    }
+
+    private ResponseEntity<?> inProgress() {
+        conflictCounter.increment();
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .header("Retry-After", "1")
+            .body(Map.of("error", "A request with this " + HEADER + " is still being processed"));
+    }
+
+    private void forget(IdempotencyRecord record) {
+        transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.deleteById(record.getId()));
+    }
+
+    private String fingerprint(String requestPath, Object requestBody) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(requestPath.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(requestBody));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new RuntimeException("Cannot fingerprint request", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Cannot store response", e);
+        }
+    }
+
+    /**
+     * ลบ record ที่หมดอายุ
+     */
+    @Scheduled(cron = "${app.idempotency.cleanup-cron:0 0 * * * *}")
+    @Transactional
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        idempotencyRecordRepository.deleteExpired(now);
+        cache.removeIf(stored -> stored.expiresAt().isBefore(now));
+    }
+
+    private record StoredResponse(String fingerprint, int status, String body, LocalDateTime expiresAt) {
+        static StoredResponse of(IdempotencyRecord record) {
+            return new StoredResponse(record.getFingerprint(), record.getResponseStatus(),
+                record.getResponseBody(), record.getExpiresAt());
+        }
+    }
+}
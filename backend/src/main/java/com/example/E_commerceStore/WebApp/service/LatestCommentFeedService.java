@@ -0,0 +1,209 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.dto.CommentDTO;
+import com.example.E_commerceStore.WebApp.model.ModerationStatus;
+import com.example.E_commerceStore.WebApp.repository.CommentRepository;
+import com.example.E_commerceStore.WebApp.util.KeysetCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ฟีด "รีวิวล่าสุด" ของทั้งระบบ (หน้าแรก) จากหน่วยความจำ
+ *
+ * The newest comments, already mapped to display DTOs, sit in a concurrent
+ * sorted map keyed by (created_at, id) and bounded to the feed size. It is
+ * filled at startup, reloaded periodically (comments committed on other nodes
+ * only show up through the reload) and each comment committed here is inserted
+ * at its sorted position. Pages that fit inside the map never touch the
+ * database; deeper pages, and every page while the last reload is too old,
+ * fall back to a keyset/offset query. An edit replaces the entry and a delete
+ * or rejection removes it. An approval reloads the map.
+ */
+@Service
+public class LatestCommentFeedService {
+
+    private record Key(LocalDateTime createdAt, long id) implements Comparable<Key> {
+        static Key of(CommentDTO comment) {
+            return new Key(LocalDateTime.parse(comment.createdAt), comment.id);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byTime = createdAt.compareTo(other.createdAt);
+            return byTime != 0 ? byTime : Long.compare(id, other.id);
+        }
+    }
+
+    // addedAt = 0 for rows loaded from the database
+    private record Entry(CommentDTO comment, long addedAt) {}
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.comments.latest-feed-size:500}")
+    private int feedSize;
+
+    @Value("${app.comments.latest-feed-reload-ms:30000}")
+    private long reloadIntervalMillis;
+
+    private volatile ConcurrentSkipListMap<Key, Entry> feed = new ConcurrentSkipListMap<>();
+    // approved comments in the whole table; tells whether the feed holds all of them
+    private final AtomicLong totalComments = new AtomicLong();
+    private volatile long loadedAt;
+    private Counter memoryHits;
+    private Counter databaseFallbacks;
+
+    @PostConstruct
+    public void init() {
+        memoryHits = Counter.builder("comments.latest_feed.memory_hits")
+            .description("Latest-feed pages served from memory")
+            .register(meterRegistry);
+        databaseFallbacks = Counter.builder("comments.latest_feed.db_fallbacks")
+            .description("Latest-feed pages read from the database (too deep, or the feed is stale)")
+            .register(meterRegistry);
+    }
+
+    /**
+     * เติม feed จากฐานข้อมูล (ตอนเริ่มระบบ, เป็นระยะ, หรือเมื่อมี comment เก่าถูกอนุมัติ)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.comments.latest-feed-reload-ms:30000}",
+               fixedDelayString = "${app.comments.latest-feed-reload-ms:30000}")
+    public synchronized void reload() {
+        long started = System.currentTimeMillis();
+        try {
+            List<CommentDTO> newest = commentRepository
+                .findLatestViewsBefore(KeysetCursor.START.createdAt(), KeysetCursor.START.id(), feedSize).stream()
+                .map(CommentDTO::new)
+                .toList();
+            long total = commentRepository.countByModerationStatus(ModerationStatus.APPROVED);
+            ConcurrentSkipListMap<Key, Entry> filled = new ConcurrentSkipListMap<>();
+            newest.forEach(comment -> filled.put(Key.of(comment), new Entry(comment, 0)));
+            // keep comments committed here while the query ran
+            feed.forEach((key, entry) -> {
+                if (entry.addedAt() >= started) {
+                    filled.put(key, entry);
+                }
+            });
+            trim(filled);
+            feed = filled;
+            totalComments.set(total);
+            loadedAt = started;
+            System.out.println("[LatestFeed] Loaded " + newest.size() + " comments into the latest feed");
+        } catch (RuntimeException e) {
+            System.err.println("[LatestFeed] Cannot load latest comments: " + e.getMessage());
+        }
+    }
+
+    /**
+     * comment ใหม่ที่ commit แล้ว (และผ่านการตรวจเนื้อหา)
+     */
+    public void commentAdded(CommentDTO comment) {
+        ConcurrentSkipListMap<Key, Entry> current = feed;
+        current.put(Key.of(comment), new Entry(comment, System.currentTimeMillis()));
+        trim(current);
+        totalComments.incrementAndGet();
+    }
+
+    /**
+     * comment ถูกแก้ไข: แทนที่ใน feed ถ้ามีอยู่
+     */
+    public void commentChanged(CommentDTO comment) {
+        feed.computeIfPresent(Key.of(comment), (key, entry) -> new Entry(comment, entry.addedAt()));
+    }
+
+    /**
+     * comment ที่เคยแสดงถูกลบ หรือถูกปฏิเสธ
+     */
+    public void commentRemoved(Long commentId) {
+        feed.keySet().removeIf(key -> key.id() == commentId);
+        totalComments.updateAndGet(total -> Math.max(0, total - 1));
+    }
+
+    /**
+     * หน้าแบบ page/size: จากหน่วยความจำถ้าอยู่ในช่วงของ feed
+     */
+    public Page<CommentDTO> getPage(int page, int size) {
+        PageRequest pageable = PageRequest.of(page, size);
+        long total = totalComments.get();
+        long needed = pageable.getOffset() + size;
+        if (isFresh()) {
+            List<CommentDTO> newest = newestFirst(feed.descendingMap().values(), (int) Math.min(needed, feedSize));
+            if (newest.size() >= needed || newest.size() >= total) {
+                memoryHits.increment();
+                int from = (int) Math.min(pageable.getOffset(), newest.size());
+                int to = (int) Math.min(needed, newest.size());
+                return new PageImpl<>(newest.subList(from, to), pageable, Math.max(total, newest.size()));
+            }
+        }
+
+        databaseFallbacks.increment();
+        List<CommentDTO> rows = commentRepository.findLatestViews(size, pageable.getOffset()).stream()
+            .map(CommentDTO::new)
+            .toList();
+        return new PageImpl<>(rows, pageable, total);
+    }
+
+    /**
+     * หน้าแบบ keyset: rows ที่เก่ากว่า cursor จำนวน limit (caller ขอเกิน 1 แถวเพื่อรู้ว่ามีหน้าถัดไป)
+     */
+    public List<CommentDTO> getBefore(KeysetCursor cursor, int limit) {
+        if (isFresh()) {
+            ConcurrentSkipListMap<Key, Entry> current = feed;
+            List<CommentDTO> older = newestFirst(
+                current.headMap(new Key(cursor.createdAt(), cursor.id()), false).descendingMap().values(), limit);
+            // the feed can answer if it filled the page, or if it holds every comment there is
+            if (older.size() == limit || current.size() >= totalComments.get()) {
+                memoryHits.increment();
+                return older;
+            }
+        }
+
+        databaseFallbacks.increment();
+        return commentRepository.findLatestViewsBefore(cursor.createdAt(), cursor.id(), limit).stream()
+            .map(CommentDTO::new)
+            .toList();
+    }
+
+    // A feed that missed a few reloads no longer reflects comments made on other nodes
+    private boolean isFresh() {
+        return System.currentTimeMillis() - loadedAt <= 3 * reloadIntervalMillis;
+    }
+
+    private void trim(ConcurrentSkipListMap<Key, Entry> map) {
+        while (map.size() > feedSize) {
+            map.pollFirstEntry();
+        }
+    }
+
+    private static List<CommentDTO> newestFirst(Collection<Entry> entries, int max) {
+        List<CommentDTO> comments = new ArrayList<>(Math.min(max, 64));
+        for (Entry entry : entries) {
+            if (comments.size() == max) {
+                break;
+            }
+            comments.add(entry.comment());
+        }
+        return comments;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.util.AhoCorasick;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ตรวจเนื้อหารีวิวก่อนบันทึก: คำต้องห้าม (ไทย/อังกฤษ) ลิงก์ และข้อความซ้ำ ๆ
+ *
+ * Banned terms and link markers live in one Aho–Corasick automaton, so a
+ * comment is scanned once no matter how long the term list is. The list is
+ * reloaded when its file changes and the new automaton replaces the old one
+ * atomically. A flagged comment is not rejected here: it is held for review.
+ */
+@Service
+public class ModerationService {
+
+    // ลิงก์: นับเป็น URL ไม่ใช่คำต้องห้าม
+    private static final List<String> LINK_MARKERS = List.of(
+        "http://", "https://", "www.", ".com", ".net", ".org", ".xyz", ".shop",
+        ".co.th", ".in.th", "bit.ly/", "t.me/", "line.me/");
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.moderation.terms-location:classpath:moderation/banned-terms.txt}")
+    private String termsLocation;
+
+    @Value("${app.moderation.max-links:0}")
+    private int maxLinks;
+
+    @Value("${app.moderation.max-char-run:15}")
+    private int maxCharRun;
+
+    @Value("${app.moderation.max-word-repeats:5}")
+    private int maxWordRepeats;
+
+    private volatile Matcher matcher = new Matcher(new AhoCorasick(LINK_MARKERS), Set.copyOf(LINK_MARKERS), 0);
+    private Counter flaggedComments;
+
+    @PostConstruct
+    public void init() {
+        flaggedComments = Counter.builder("moderation.flagged")
+            .description("Comments held for review by the moderation filter")
+            .register(meterRegistry);
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // ยังตรวจลิงก์และข้อความซ้ำได้ แม้ไม่มีรายการคำ
+            System.err.println("[Moderation] " + e.getMessage());
+        }
+    }
+
+    /**
+     * ผลการตรวจ: flagged = ต้องรอ admin ตรวจก่อนแสดง
+     */
+    public record Verdict(boolean flagged, List<String> reasons) {
+        public String summary() {
+            return String.join(", ", reasons);
+        }
+    }
+
+    /**
+     * ตรวจข้อความหนึ่งรอบ (normalize + automaton + heuristics)
+     */
+    public Verdict review(String content) {
+        if (content == null || content.isEmpty()) {
+            return new Verdict(false, List.of());
+        }
+        Matcher current = matcher;
+        String text = normalize(content);
+        Set<String> reasons = new LinkedHashSet<>();
+
+        int links = 0;
+        int linkTokenEnd = -1;
+        for (AhoCorasick.Match match : current.automaton().findAll(text)) {
+            if (current.links().contains(match.pattern())) {
+                // one URL can hit several markers (https:// + www. + .com): count it once
+                if (match.start() >= linkTokenEnd) {
+                    links++;
+                    linkTokenEnd = tokenEnd(text, match.end());
+                }
+            } else if (!isLatinWord(match.pattern()) || isWholeWord(text, match.start(), match.end())) {
+                reasons.add("banned term: " + match.pattern());
+            }
+        }
+        if (links > maxLinks) {
+            reasons.add("links: " + links);
+        }
+        if (longestCharRun(text) >= maxCharRun) {
+            reasons.add("repeated characters");
+        }
+        if (longestWordRepeat(text) >= maxWordRepeats) {
+            reasons.add("repeated words");
+        }
+
+        if (!reasons.isEmpty()) {
+            flaggedComments.increment();
+        }
+        return new Verdict(!reasons.isEmpty(), List.copyOf(reasons));
+    }
+
+    /**
+     * โหลดรายการคำใหม่ถ้าไฟล์เปลี่ยน (file: locations; classpath resources in a jar never change)
+     */
+    @Scheduled(fixedDelayString = "${app.moderation.reload-interval-ms:30000}")
+    public void reloadIfChanged() {
+        try {
+            long lastModified = resourceLoader.getResource(termsLocation).lastModified();
+            if (lastModified != matcher.lastModified()) {
+                reload();
+            }
+        } catch (IOException e) {
+            // ไม่มี timestamp (เช่น อยู่ใน jar): ใช้ reload() ผ่าน admin endpoint แทน
+        } catch (RuntimeException e) {
+            System.err.println("[Moderation] " + e.getMessage());
+        }
+    }
+
+    /**
+     * โหลดรายการคำต้องห้ามใหม่ทันที
+     *
+     * @return จำนวนคำที่โหลด
+     */
+    public synchronized int reload() {
+        Resource resource = resourceLoader.getResource(termsLocation);
+        List<String> terms = new ArrayList<>();
+        long lastModified = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String term = normalize(line.strip());
+                if (!term.isEmpty() && !term.startsWith("#")) {
+                    terms.add(term);
+                }
+            }
+            try {
+                lastModified = resource.lastModified();
+            } catch (IOException ignored) {
+                // classpath resource inside a jar
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot load moderation terms from " + termsLocation + ": " + e.getMessage());
+        }
+
+        List<String> patterns = new ArrayList<>(terms);
+        patterns.addAll(LINK_MARKERS);
+        matcher = new Matcher(new AhoCorasick(patterns), Set.copyOf(LINK_MARKERS), lastModified);
+        System.out.println("[Moderation] Loaded " + terms.size() + " banned terms from " + termsLocation);
+        return terms.size();
+    }
+
+    // lower case, zero-width characters removed, common digit/symbol substitutions undone
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\u200B', '\u200C', '\u200D', '\uFEFF' -> { }
+                case '@' -> normalized.append('a');
+                case '$' -> normalized.append('s');
+                case '0' -> normalized.append(isLetterAround(text, i) ? 'o' : c);
+                case '1' -> normalized.append(isLetterAround(text, i) ? 'i' : c);
+                case '3' -> normalized.append(isLetterAround(text, i) ? 'e' : c);
+                default -> normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    // digits are only letter substitutes inside words ("sh1t"), not in prices or Thai laughter ("555")
+    private static boolean isLetterAround(String text, int i) {
+        return (i > 0 && isLatinLetter(text.charAt(i - 1))) || (i + 1 < text.length() && isLatinLetter(text.charAt(i + 1)));
+    }
+
+    private static boolean isLatinLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isLatinWord(String term) {
+        return term.chars().allMatch(c -> isLatinLetter((char) c) || c == ' ');
+    }
+
+    // English terms must not match inside other words ("class" is not "ass")
+    private static boolean isWholeWord(String text, int start, int end) {
+        return (start == 0 || !isLatinLetter(text.charAt(start - 1)))
+            && (end == text.length() || !isLatinLetter(text.charAt(end)));
+    }
+
+    private static int tokenEnd(String text, int from) {
+        int i = from;
+        while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int longestCharRun(String text) {
+        int longest = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            run = (i > 0 && c == text.charAt(i - 1) && !Character.isWhitespace(c)) ? run + 1 : 1;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
+    private static int longestWordRepeat(String text) {
+        String[] words = text.split("\\s+");
+        int longest = 0;
+        int run = 0;
+        for (int i = 0; i < words.length; i++) {
+            run = (i > 0 && !words[i].isEmpty() && words[i].equals(words[i - 1])) ? run + 1 : 1;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
+    private record Matcher(AhoCorasick automaton, Set<String> links, long lastModified) {}
+}
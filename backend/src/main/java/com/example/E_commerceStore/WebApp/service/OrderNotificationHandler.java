@@ -0,0 +1,46 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
+import com.example.E_commerceStore.WebApp.model.User;
+import com.example.E_commerceStore.WebApp.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * ส่งอีเมลแจ้งลูกค้าเมื่อ order ถูกยืนยันหรือยกเลิก
+ */
+@Component
+public class OrderNotificationHandler implements OutboxEventHandler {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Override
+    public boolean supports(String eventType) {
+        return OutboxEvent.ORDER_CONFIRMED.equals(eventType) || OutboxEvent.ORDER_CANCELLED.equals(eventType);
+    }
+
+    @Override
+    public void handle(OutboxEvent event, JsonNode payload) {
+        Optional<User> userOpt = userRepository.findById(payload.path("userId").asLong());
+        if (userOpt.isEmpty() || userOpt.get().getEmail() == null) {
+            return;
+        }
+        User user = userOpt.get();
+        String orderNumber = payload.path("orderNumber").asText();
+        if (OutboxEvent.ORDER_CONFIRMED.equals(event.getEventType())) {
+            emailService.sendOrderConfirmationEmail(user.getEmail(), user.getFirstName(), orderNumber,
+                new BigDecimal(payload.path("totalAmount").asText("0")));
+        } else {
+            emailService.sendOrderCancelledEmail(user.getEmail(), user.getFirstName(), orderNumber,
+                "payment_canceled".equals(payload.path("reason").asText()));
+        }
+    }
+}
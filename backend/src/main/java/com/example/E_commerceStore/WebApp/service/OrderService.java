@@ -1,20 +1,32 @@
 package com.example.E_commerceStore.WebApp.service;
 
+import com.example.E_commerceStore.WebApp.dto.CheckoutLine;
+import com.example.E_commerceStore.WebApp.dto.CheckoutValidationReport;
+import com.example.E_commerceStore.WebApp.dto.OrderSummaryView;
+import com.example.E_commerceStore.WebApp.model.CheckoutJob;
+import com.example.E_commerceStore.WebApp.model.Money;
 import com.example.E_commerceStore.WebApp.model.Order;
 import com.example.E_commerceStore.WebApp.model.OrderItem;
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
 import com.example.E_commerceStore.WebApp.model.Product;
 import com.example.E_commerceStore.WebApp.model.CartItem;
 import com.example.E_commerceStore.WebApp.repository.OrderRepository;
-import com.example.E_commerceStore.WebApp.repository.ProductRepository;
+import com.example.E_commerceStore.WebApp.repository.ProductStockRepository;
 import com.example.E_commerceStore.WebApp.repository.CartItemRepository;
+import com.example.E_commerceStore.WebApp.util.KeysetCursor;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
@@ -23,65 +35,153 @@ public class OrderService {
     private OrderRepository orderRepository;
     
     @Autowired
-    private ProductRepository productRepository;
+    private ProductStockRepository productStockRepository;
     
     @Autowired
     private CartItemRepository cartItemRepository;
     
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private CartService cartService;
+    
+    @Autowired
+    private FlashSaleInventoryService flashSaleInventoryService;
+    
+    @Autowired
+    private OutboxService outboxService;
+    
+    @Autowired
+    private PurchaseEligibilityService purchaseEligibilityService;
+    
     /**
      * Create order from cart items
      */
     @Transactional
     public Order createOrderFromCart(Long userId, String shippingAddress, String phoneNumber) {
-        // Get user's cart items
-        List<CartItem> cartItems = cartItemRepository.findByUserId(userId);
+        PreparedOrder prepared = prepareOrder(userId, shippingAddress, phoneNumber);
+        decrementStock(prepared.quantities(), prepared.cartItems());
+        return completeOrder(prepared);
+    }
+    
+    /**
+     * Create the orders of several queued checkouts in one transaction with a
+     * single grouped stock update. All or nothing: if any checkout fails, every
+     * order in the batch is rolled back and the caller retries them one by one.
+     */
+    @Transactional
+    public List<Order> createOrdersInBatch(List<CheckoutJob> jobs) {
+        List<PreparedOrder> preparedOrders = new ArrayList<>();
+        Map<Long, Integer> quantities = new HashMap<>();
+        List<CartItem> cartItems = new ArrayList<>();
+        for (CheckoutJob job : jobs) {
+            PreparedOrder prepared = prepareOrder(job.getUserId(), job.getShippingAddress(), job.getPhoneNumber());
+            preparedOrders.add(prepared);
+            prepared.quantities().forEach((productId, quantity) -> quantities.merge(productId, quantity, Integer::sum));
+            cartItems.addAll(prepared.cartItems());
+        }
         
-        if (cartItems.isEmpty()) {
+        decrementStock(quantities, cartItems);
+        return preparedOrders.stream().map(this::completeOrder).toList();
+    }
+    
+    /**
+     * Validate the cart and build the order with its items (nothing is written yet)
+     */
+    private PreparedOrder prepareOrder(Long userId, String shippingAddress, String phoneNumber) {
+        // Revalidate price and stock for the whole cart in one query
+        CheckoutValidationReport report = cartService.validateCheckout(userId);
+        if (report.isEmpty()) {
             throw new RuntimeException("Cart is empty");
         }
+        if (report.hasStockIssues()) {
+            throw new RuntimeException("Insufficient stock for product: " + report.getLines().stream()
+                .filter(CheckoutLine::hasStockIssue)
+                .map(CheckoutLine::getProductName)
+                .collect(Collectors.joining(", ")));
+        }
         
-        // Calculate total amount
-        double totalAmount = cartItems.stream()
-            .mapToDouble(item -> item.getQuantity() * item.getProduct().getPrice().doubleValue())
-            .sum();
+        // Get user's cart items together with their products
+        List<CartItem> cartItems = cartItemRepository.findByUserIdWithProduct(userId);
+        
+        // Calculate total amount exactly, in minor units
+        long totalAmount = 0;
+        for (CartItem cartItem : cartItems) {
+            totalAmount = Math.addExact(totalAmount,
+                Math.multiplyExact(Money.minorUnits(cartItem.getProduct().getPrice()), cartItem.getQuantity()));
+        }
         
         // Create order
-        Order order = new Order(userId, totalAmount, shippingAddress, phoneNumber);
+        Order order = new Order(userId, Money.ofMinor(totalAmount, Money.DEFAULT_CURRENCY), shippingAddress, phoneNumber);
         
         // Create order items from cart items
+        Map<Long, Integer> quantities = new HashMap<>();
         for (CartItem cartItem : cartItems) {
             Product product = cartItem.getProduct();
             
-            // Check stock availability
-            if (product.getStock() < cartItem.getQuantity()) {
-                throw new RuntimeException("Insufficient stock for product: " + product.getName());
-            }
-            
             // Create order item
             OrderItem orderItem = new OrderItem(
                 order, 
                 product, 
                 cartItem.getQuantity(), 
-                product.getPrice().doubleValue()
+                product.getPrice()
             );
             
             order.addOrderItem(orderItem);
-            
-            // Update product stock
-            product.setStock(product.getStock() - cartItem.getQuantity());
-            productRepository.save(product);
+            quantities.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
         }
         
-        // Save order
-        order = orderRepository.save(order);
+        return new PreparedOrder(order, cartItems, quantities);
+    }
+    
+    /**
+     * Take the stock for the given per-product quantities, or throw if any product runs short
+     */
+    private void decrementStock(Map<Long, Integer> quantities, List<CartItem> cartItems) {
+        // Flash sale products are taken from the in-memory counters, the rest directly in the database
+        Map<Long, Integer> databaseQuantities = new HashMap<>(quantities);
+        Map<Long, Integer> flashSaleQuantities = new HashMap<>();
+        cartItems.stream()
+            .map(CartItem::getProduct)
+            .filter(Product::isFlashSale)
+            .map(Product::getId)
+            .distinct()
+            .forEach(productId -> flashSaleQuantities.put(productId, databaseQuantities.remove(productId)));
+        List<Long> outOfStock = new ArrayList<>(flashSaleInventoryService.decrement(flashSaleQuantities));
+        if (outOfStock.isEmpty()) {
+            // Decrement stock atomically (stock >= qty checked by the database, not the entity we read)
+            outOfStock.addAll(productStockRepository.decrementStock(databaseQuantities));
+        }
+        if (!outOfStock.isEmpty()) {
+            throw new RuntimeException("Insufficient stock for product: " + cartItems.stream()
+                .map(CartItem::getProduct)
+                .filter(product -> outOfStock.contains(product.getId()))
+                .map(Product::getName)
+                .distinct()
+                .collect(Collectors.joining(", ")));
+        }
+    }
+    
+    /**
+     * Save the order, clear the cart and turn the soft holds into the order after commit
+     */
+    private Order completeOrder(PreparedOrder prepared) {
+        Order order = orderRepository.save(prepared.order());
         
         // Clear cart
-        List<CartItem> userCartItems = cartItemRepository.findByUserId(userId);
-        cartItemRepository.deleteAll(userCartItems);
+        cartItemRepository.deleteAll(prepared.cartItems());
+        
+        // Stock is now persisted, so the soft holds become the order
+        Long userId = order.getUserId();
+        List<Long> productIds = prepared.cartItems().stream().map(item -> item.getProduct().getId()).toList();
+        TransactionCallbacks.afterCommit(() -> stockReservationService.convert(userId, productIds));
         
         return order;
     }
     
+    private record PreparedOrder(Order order, List<CartItem> cartItems, Map<Long, Integer> quantities) {}
+    
     /**
      * Get order by ID
      */
@@ -96,6 +196,24 @@ public class OrderService {
         return orderRepository.findByOrderNumber(orderNumber);
     }
     
+    /**
+     * Get order with items and products loaded (detail view)
+     */
+    public Optional<Order> getOrderWithItems(Long orderId) {
+        return orderRepository.findByIdWithItems(orderId);
+    }
+    
+    public Optional<Order> getOrderWithItemsByOrderNumber(String orderNumber) {
+        return orderRepository.findByOrderNumberWithItems(orderNumber);
+    }
+    
+    /**
+     * Get one page of order summaries, newest first, after the given cursor
+     */
+    public List<OrderSummaryView> getUserOrderSummaries(Long userId, KeysetCursor cursor, int limit) {
+        return orderRepository.findOrderSummaries(userId, cursor.createdAt(), cursor.id(), limit);
+    }
+    
     /**
      * Get user's orders with pagination
      */
@@ -115,18 +233,19 @@ public class OrderService {
      */
     @Transactional
     public Order updateOrderStatus(Long orderId, Order.OrderStatus status) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findByIdForUpdate(orderId)
             .orElseThrow(() -> new RuntimeException("Order not found"));
         
+        purchaseEligibilityService.orderStatusChanged(order.getUserId(), order.getStatus(), status);
         order.setStatus(status);
         return orderRepository.save(order);
     }
     
     /**
-     * Check if user has purchased a product (for review eligibility)
+     * Check if user has purchased a product (for review eligibility), served from the eligibility cache
      */
     public boolean hasUserPurchasedProduct(Long userId, Long productId) {
-        return orderRepository.hasUserPurchasedProduct(userId, productId);
+        return purchaseEligibilityService.hasPurchased(userId, productId);
     }
     
     /**
@@ -155,7 +274,7 @@ public class OrderService {
      */
     @Transactional
     public Order cancelOrder(Long orderId, Long userId) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findByIdForUpdate(orderId)
             .orElseThrow(() -> new RuntimeException("Order not found"));
         
         // Verify order belongs to user
@@ -163,22 +282,84 @@ public class OrderService {
             throw new RuntimeException("Unauthorized to cancel this order");
         }
         
-        // Only allow cancellation if order is still pending or confirmed
-        if (order.getStatus() == Order.OrderStatus.PROCESSING || 
-            order.getStatus() == Order.OrderStatus.SHIPPED ||
-            order.getStatus() == Order.OrderStatus.DELIVERED) {
+        // Only allow cancellation if order is still pending or confirmed (a second cancel must not restock again)
+        if (order.getStatus() != Order.OrderStatus.PENDING &&
+            order.getStatus() != Order.OrderStatus.CONFIRMED) {
             throw new RuntimeException("Cannot cancel order at current status: " + order.getStatus().getDisplayName());
         }
         
+        return cancel(order, "customer");
+    }
+    
+    /**
+     * Confirm an order whose payment succeeded (called by the outbox relay).
+     * Idempotent: only a pending order is confirmed, redeliveries are ignored.
+     * The row is locked so a concurrent customer cancel cannot be overwritten.
+     */
+    @Transactional
+    public Optional<Order> confirmPaidOrder(String orderNumber) {
+        return orderRepository.findByOrderNumberForUpdate(orderNumber)
+            .filter(order -> order.getStatus() == Order.OrderStatus.PENDING)
+            .map(order -> {
+                order.setStatus(Order.OrderStatus.CONFIRMED);
+                order.setPaymentError(null);
+                Order saved = orderRepository.save(order);
+                outboxService.publish(OutboxEvent.ORDER_CONFIRMED, "order", saved.getId(), orderPayload(saved, null));
+                return saved;
+            });
+    }
+    
+    /**
+     * Remember why the last payment attempt failed. The order stays pending (and keeps
+     * its stock): the customer can still pay the same PaymentIntent with another card.
+     */
+    @Transactional
+    public Optional<Order> recordPaymentFailure(String orderNumber, String error) {
+        return orderRepository.findByOrderNumberForUpdate(orderNumber)
+            .filter(order -> order.getStatus() == Order.OrderStatus.PENDING)
+            .map(order -> {
+                order.setPaymentError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+                return orderRepository.save(order);
+            });
+    }
+    
+    /**
+     * Cancel a still-pending order whose PaymentIntent was canceled and give its stock back.
+     * Idempotent like {@link #confirmPaidOrder}.
+     */
+    @Transactional
+    public Optional<Order> cancelUnpaidOrder(String orderNumber) {
+        return orderRepository.findByOrderNumberForUpdate(orderNumber)
+            .filter(order -> order.getStatus() == Order.OrderStatus.PENDING)
+            .map(order -> cancel(order, "payment_canceled"));
+    }
+    
+    // Restore stock, cancel and record the notification in the same transaction
+    private Order cancel(Order order, String reason) {
         // Restore product stock
+        Map<Long, Integer> quantities = new HashMap<>();
         for (OrderItem orderItem : order.getOrderItems()) {
-            Product product = orderItem.getProduct();
-            product.setStock(product.getStock() + orderItem.getQuantity());
-            productRepository.save(product);
+            quantities.merge(orderItem.getProduct().getId(), orderItem.getQuantity(), Integer::sum);
         }
+        // flash sale units were already taken out of products.stock, so they come back there too
+        productStockRepository.incrementStock(quantities);
         
         // Update order status
         order.setStatus(Order.OrderStatus.CANCELLED);
-        return orderRepository.save(order);
+        Order saved = orderRepository.save(order);
+        outboxService.publish(OutboxEvent.ORDER_CANCELLED, "order", saved.getId(), orderPayload(saved, reason));
+        return saved;
+    }
+    
+    private Map<String, Object> orderPayload(Order order, String reason) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("orderId", order.getId());
+        payload.put("orderNumber", order.getOrderNumber());
+        payload.put("userId", order.getUserId());
+        payload.put("totalAmount", order.getTotalAmount().toPlainString());
+        if (reason != null) {
+            payload.put("reason", reason);
+        }
+        return payload;
     }
 }
@@ -0,0 +1,18 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * In-process consumer of outbox events. Every Spring bean implementing this
+ * interface is registered with the outbox relay.
+ *
+ * Delivery is at least once: an event is retried (with backoff) whenever any
+ * of its handlers throws, so handlers must be idempotent.
+ */
+public interface OutboxEventHandler {
+
+    boolean supports(String eventType);
+
+    void handle(OutboxEvent event, JsonNode payload);
+}
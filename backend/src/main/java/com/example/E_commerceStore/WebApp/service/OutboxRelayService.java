@@ -0,0 +1,248 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
+import com.example.E_commerceStore.WebApp.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers outbox events to the registered {@link OutboxEventHandler}s.
+ *
+ * Each poll claims up to {@code batch-size} due events with FOR UPDATE SKIP
+ * LOCKED and leases them (next_attempt_at moved forward) in a short
+ * transaction, so several relays/nodes can run side by side. Handlers run
+ * outside that transaction; results are written back in one transaction per
+ * batch. A failed event is retried with exponential backoff and marked FAILED
+ * after {@code max-attempts}. A relay that dies mid-batch just lets the lease
+ * expire and the events are picked up again.
+ */
+@Service
+public class OutboxRelayService {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private List<OutboxEventHandler> handlers;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.outbox.max-batches-per-poll:20}")
+    private int maxBatchesPerPoll;
+
+    @Value("${app.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.backoff-base-ms:1000}")
+    private long backoffBaseMillis;
+
+    @Value("${app.outbox.backoff-max-ms:600000}")
+    private long backoffMaxMillis;
+
+    @Value("${app.outbox.retention-days:7}")
+    private long retentionDays;
+
+    private TransactionTemplate transactionTemplate;
+    private Counter dispatchedCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Timer lagTimer;
+    private Timer batchTimer;
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong oldestPendingAgeSeconds = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        dispatchedCounter = Counter.builder("outbox.relay.dispatched")
+            .description("Outbox events delivered to their handlers")
+            .register(meterRegistry);
+        retriedCounter = Counter.builder("outbox.relay.retried")
+            .description("Outbox deliveries that failed and were rescheduled")
+            .register(meterRegistry);
+        failedCounter = Counter.builder("outbox.relay.failed")
+            .description("Outbox events given up on after max attempts")
+            .register(meterRegistry);
+        lagTimer = Timer.builder("outbox.relay.lag")
+            .description("Time from writing an outbox event to its successful delivery")
+            .register(meterRegistry);
+        batchTimer = Timer.builder("outbox.relay.batch.duration")
+            .description("Time to claim, dispatch and settle one batch")
+            .register(meterRegistry);
+        Gauge.builder("outbox.pending", pendingEvents, AtomicLong::get)
+            .description("Outbox events waiting for delivery")
+            .register(meterRegistry);
+        Gauge.builder("outbox.oldest.pending.age.seconds", oldestPendingAgeSeconds, AtomicLong::get)
+            .description("Age of the oldest undelivered outbox event")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:500}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (int batch = 0; batch < maxBatchesPerPoll; batch++) {
+                if (relayBatch() < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[OutboxRelay] Relay error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ส่ง event หนึ่ง batch ให้ handler แล้วบันทึกผล
+     * @return number of events claimed
+     */
+    public int relayBatch() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        String leaseOwner = UUID.randomUUID().toString();
+        List<OutboxEvent> events = transactionTemplate.execute(status -> {
+            List<OutboxEvent> due = outboxEventRepository.lockNextDue(now, batchSize);
+            if (!due.isEmpty()) {
+                outboxEventRepository.lease(due.stream().map(OutboxEvent::getId).toList(),
+                    leaseOwner, now.plusSeconds(leaseSeconds));
+            }
+            return due;
+        });
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> delivered = new ArrayList<>();
+        Map<OutboxEvent, String> failures = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            try {
+                dispatch(event);
+                delivered.add(event.getId());
+            } catch (RuntimeException e) {
+                failures.put(event, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+        }
+
+        LocalDateTime finishedAt = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!delivered.isEmpty()) {
+                int settled = outboxEventRepository.markProcessed(delivered, leaseOwner, finishedAt);
+                if (settled < delivered.size()) {
+                    System.err.println("[OutboxRelay] Lease expired for " + (delivered.size() - settled)
+                        + " delivered events; another relay owns them now");
+                }
+            }
+            failures.forEach((event, error) -> settleFailure(event, leaseOwner, error, finishedAt));
+        });
+
+        dispatchedCounter.increment(delivered.size());
+        for (OutboxEvent event : events) {
+            if (delivered.contains(event.getId())) {
+                lagTimer.record(Duration.between(event.getCreatedAt(), finishedAt));
+            }
+        }
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return events.size();
+    }
+
+    private void dispatch(OutboxEvent event) {
+        List<OutboxEventHandler> matching = handlers.stream()
+            .filter(handler -> handler.supports(event.getEventType()))
+            .toList();
+        if (matching.isEmpty()) {
+            throw new RuntimeException("No handler for event type " + event.getEventType());
+        }
+        JsonNode payload;
+        try {
+            payload = objectMapper.readTree(event.getPayload());
+        } catch (Exception e) {
+            throw new RuntimeException("Unreadable payload: " + e.getMessage());
+        }
+        for (OutboxEventHandler handler : matching) {
+            handler.handle(event, payload);
+        }
+    }
+
+    private void settleFailure(OutboxEvent event, String leaseOwner, String error, LocalDateTime now) {
+        String message = error.length() > 1000 ? error.substring(0, 1000) : error;
+        int attempt = event.getAttempts() + 1;
+        if (attempt >= maxAttempts) {
+            outboxEventRepository.markFailed(event.getId(), leaseOwner, message);
+            failedCounter.increment();
+            System.err.println("[OutboxRelay] Giving up on event " + event.getId() + " (" + event.getEventType() + "): " + message);
+        } else {
+            outboxEventRepository.markRetry(event.getId(), leaseOwner, now.plus(Duration.ofMillis(backoffMillis(attempt))), message);
+            retriedCounter.increment();
+        }
+    }
+
+    // base * 2^(attempt-1), capped, with up to 20% jitter so retries of one outage do not line up
+    private long backoffMillis(int attempt) {
+        long delay = backoffBaseMillis << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > backoffMaxMillis) {
+            delay = backoffMaxMillis;
+        }
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    @Scheduled(fixedRateString = "${app.outbox.stats-interval-ms:10000}")
+    public void refreshStats() {
+        try {
+            pendingEvents.set(outboxEventRepository.countByStatus(OutboxEvent.Status.PENDING));
+            oldestPendingAgeSeconds.set(outboxEventRepository.findOldestPendingCreatedAt()
+                .map(createdAt -> Duration.between(createdAt, LocalDateTime.now()).getSeconds())
+                .orElse(0L));
+        } catch (RuntimeException e) {
+            System.err.println("[OutboxRelay] Cannot refresh stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ลบ event ที่ส่งสำเร็จแล้วเกิน retention (FAILED เก็บไว้ให้ตรวจสอบ)
+     */
+    @Scheduled(cron = "${app.outbox.cleanup-cron:0 45 4 * * *}")
+    @Transactional
+    public void purgeProcessedEvents() {
+        outboxEventRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(retentionDays));
+    }
+}
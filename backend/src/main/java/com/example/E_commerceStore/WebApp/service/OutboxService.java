@@ -0,0 +1,51 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
+import com.example.E_commerceStore.WebApp.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+/**
+ * เขียน event ลง outbox ใน transaction เดียวกับการเปลี่ยนแปลงข้อมูล
+ * Side effects (emails, Stripe follow-ups) are never run here; the outbox
+ * relay picks the rows up after commit.
+ */
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional
+    public OutboxEvent publish(String eventType, String aggregateType, Object aggregateId, Map<String, Object> payload) {
+        return publish(eventType, aggregateType, aggregateId, payload, null);
+    }
+
+    /**
+     * @param eventKey optional de-duplication key; an event whose key was already
+     *                 recorded is ignored (returns null)
+     */
+    @Transactional
+    public OutboxEvent publish(String eventType, String aggregateType, Object aggregateId,
+                               Map<String, Object> payload, String eventKey) {
+        if (eventKey != null && outboxEventRepository.existsByEventKey(eventKey)) {
+            return null;
+        }
+        try {
+            OutboxEvent event = new OutboxEvent(eventType, aggregateType, String.valueOf(aggregateId),
+                objectMapper.writeValueAsString(payload));
+            event.setEventKey(eventKey);
+            return outboxEventRepository.save(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Cannot serialize outbox payload for " + eventType, e);
+        }
+    }
+}
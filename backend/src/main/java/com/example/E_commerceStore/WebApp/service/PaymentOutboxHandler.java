@@ -0,0 +1,40 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * ผลการชำระเงินจาก Stripe webhook -> ยืนยัน หรือยกเลิก order (คืน stock)
+ * A failed attempt is only recorded on the order: the customer may still pay the
+ * same PaymentIntent with another card. Only a canceled PaymentIntent cancels it.
+ */
+@Component
+public class PaymentOutboxHandler implements OutboxEventHandler {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Override
+    public boolean supports(String eventType) {
+        return OutboxEvent.PAYMENT_SUCCEEDED.equals(eventType)
+            || OutboxEvent.PAYMENT_FAILED.equals(eventType)
+            || OutboxEvent.PAYMENT_CANCELED.equals(eventType);
+    }
+
+    @Override
+    public void handle(OutboxEvent event, JsonNode payload) {
+        String orderNumber = payload.path("orderNumber").asText(null);
+        if (orderNumber == null || orderNumber.isBlank()) {
+            // Payment was not created for a stored order (e.g. direct card payment without checkout)
+            System.out.println("[PaymentOutbox] No order linked to payment " + event.getAggregateId());
+            return;
+        }
+        switch (event.getEventType()) {
+            case OutboxEvent.PAYMENT_SUCCEEDED -> orderService.confirmPaidOrder(orderNumber);
+            case OutboxEvent.PAYMENT_CANCELED -> orderService.cancelUnpaidOrder(orderNumber);
+            default -> orderService.recordPaymentFailure(orderNumber, payload.path("error").asText("Payment failed"));
+        }
+    }
+}
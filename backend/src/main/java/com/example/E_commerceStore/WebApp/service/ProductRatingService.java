@@ -0,0 +1,135 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.dto.RatingSummary;
+import com.example.E_commerceStore.WebApp.repository.ProductRatingStatsRepository;
+import com.example.E_commerceStore.WebApp.util.LruCache;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * คะแนนรีวิวรวมของสินค้า แบบอัปเดตทีละส่วน (ไม่ต้องสแกน comments ทุกครั้ง)
+ *
+ * Writers call the record* methods inside the transaction that changes the
+ * comment, which adds the deltas to product_rating_stats atomically. Reads are
+ * a primary-key lookup fronted by an LRU cache; a product's entry is dropped
+ * after the writing transaction commits.
+ */
+@Service
+public class ProductRatingService {
+
+    @Autowired
+    private ProductRatingStatsRepository productRatingStatsRepository;
+
+    @Autowired
+    private StoreRatingService storeRatingService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.rating-stats.cache-size:5000}")
+    private int cacheSize;
+
+    private TransactionTemplate transactionTemplate;
+    private LruCache<Long, RatingSummary> cache;
+    // Bumped on every invalidation; a load that raced with one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * เติมตารางสถิติจาก comments ที่มีอยู่ ถ้ายังว่าง (เช่น ฐานข้อมูลเดิมก่อนมีตารางนี้)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (productRatingStatsRepository.count() == 0) {
+                Integer products = transactionTemplate.execute(status -> productRatingStatsRepository.rebuildAll());
+                System.out.println("[ProductRating] Backfilled rating stats for " + products + " products");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[ProductRating] Cannot backfill rating stats: " + e.getMessage());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public RatingSummary getSummary(Long productId) {
+        RatingSummary summary = cache.get(productId);
+        if (summary != null) {
+            return summary;
+        }
+        long generation = invalidations.get();
+        summary = productRatingStatsRepository.findById(productId)
+            .map(RatingSummary::of)
+            .orElseGet(() -> RatingSummary.empty(productId));
+        if (invalidations.get() == generation) {
+            cache.put(productId, summary);
+        }
+        return summary;
+    }
+
+    public void recordAdded(Long productId, Integer rating) {
+        apply(productId, 1, null, rating);
+    }
+
+    public void recordRemoved(Long productId, Integer rating) {
+        apply(productId, -1, rating, null);
+    }
+
+    public void recordRatingChanged(Long productId, Integer oldRating, Integer newRating) {
+        if (oldRating == null ? newRating != null : !oldRating.equals(newRating)) {
+            apply(productId, 0, oldRating, newRating);
+        }
+    }
+
+    /**
+     * คำนวณใหม่ทั้งหมดจาก comments (ซ่อมข้อมูล)
+     */
+    @Transactional
+    public int rebuildAll() {
+        int products = productRatingStatsRepository.rebuildAll();
+        storeRatingService.rebuildAll();
+        TransactionCallbacks.afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.clear();
+        });
+        return products;
+    }
+
+    // Must run inside the caller's transaction (the comment change)
+    private void apply(Long productId, int commentDelta, Integer removedRating, Integer addedRating) {
+        int[] stars = new int[6];
+        int ratingDelta = 0;
+        int sumDelta = 0;
+        if (removedRating != null) {
+            stars[removedRating]--;
+            ratingDelta--;
+            sumDelta -= removedRating;
+        }
+        if (addedRating != null) {
+            stars[addedRating]++;
+            ratingDelta++;
+            sumDelta += addedRating;
+        }
+        productRatingStatsRepository.applyDelta(productId, commentDelta, ratingDelta, sumDelta,
+            stars[1], stars[2], stars[3], stars[4], stars[5]);
+        storeRatingService.applyProductDelta(productId, commentDelta, ratingDelta, sumDelta, stars);
+        TransactionCallbacks.afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.remove(productId);
+        });
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.Order;
+import com.example.E_commerceStore.WebApp.repository.OrderRepository;
+import com.example.E_commerceStore.WebApp.util.BloomFilter;
+import com.example.E_commerceStore.WebApp.util.LruCache;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ตรวจสิทธิ์รีวิว: ผู้ใช้เคยได้รับสินค้านี้แล้ว (order DELIVERED) หรือไม่
+ *
+ * Each user's delivered product ids are loaded once and kept in a bounded LRU
+ * cache for a short TTL, so the review form check and review submission no
+ * longer join orders and order_items on every call. A Bloom filter of users
+ * with at least one delivered order (rebuilt periodically) narrows a "no" down
+ * to one indexed check for orders delivered since the filter was built.
+ * On this node a user's entry is dropped after commit whenever one of their
+ * orders moves to or away from DELIVERED; other nodes catch up through the
+ * since-build check and the TTL.
+ */
+@Service
+public class PurchaseEligibilityService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.purchase-eligibility.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${app.purchase-eligibility.bloom-expected-users:100000}")
+    private long bloomExpectedUsers;
+
+    @Value("${app.purchase-eligibility.bloom-fpp:0.01}")
+    private double bloomFalsePositiveProbability;
+
+    @Value("${app.purchase-eligibility.cache-ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    // Allowed clock difference between nodes when comparing orders.updated_at with the build time
+    @Value("${app.purchase-eligibility.clock-skew-seconds:60}")
+    private long clockSkewSeconds;
+
+    private record DeliveredProducts(Set<Long> productIds, long expiresAt) {}
+
+    // covers DELIVERED orders last updated before builtAt
+    private record Buyers(BloomFilter filter, LocalDateTime builtAt) {}
+
+    private LruCache<Long, DeliveredProducts> deliveredProducts;
+    private volatile Buyers buyers;
+    // Bumped on every invalidation; a load that raced with one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+    private Counter bloomSkips;
+    private Counter cacheHits;
+    private Counter cacheLoads;
+
+    @PostConstruct
+    public void init() {
+        deliveredProducts = new LruCache<>(cacheSize);
+        bloomSkips = Counter.builder("purchase.eligibility.lookups").tag("result", "bloom_skip")
+            .description("Eligibility checks answered by the buyers Bloom filter")
+            .register(meterRegistry);
+        cacheHits = Counter.builder("purchase.eligibility.lookups").tag("result", "cache_hit")
+            .register(meterRegistry);
+        cacheLoads = Counter.builder("purchase.eligibility.lookups").tag("result", "db_load")
+            .register(meterRegistry);
+    }
+
+    /**
+     * สร้าง Bloom filter ของผู้ใช้ที่มี order DELIVERED (ก่อนสร้างเสร็จจะถามฐานข้อมูลตามปกติ)
+     * และสร้างใหม่เป็นระยะ เพื่อรวม order ที่ส่งถึงบน node อื่นและล้างผู้ใช้ที่ไม่มีสิทธิ์แล้ว
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.purchase-eligibility.bloom-rebuild-interval-ms:600000}",
+               fixedDelayString = "${app.purchase-eligibility.bloom-rebuild-interval-ms:600000}")
+    public void buildBuyersFilter() {
+        try {
+            LocalDateTime builtAt = LocalDateTime.now().minusSeconds(clockSkewSeconds);
+            List<Long> userIds = orderRepository.findUserIdsWithDeliveredOrders();
+            BloomFilter filter = new BloomFilter(Math.max(bloomExpectedUsers, userIds.size() * 2L), bloomFalsePositiveProbability);
+            userIds.forEach(filter::put);
+            buyers = new Buyers(filter, builtAt);
+            System.out.println("[PurchaseEligibility] Buyers filter built for " + userIds.size() + " users");
+        } catch (RuntimeException e) {
+            System.err.println("[PurchaseEligibility] Cannot build buyers filter: " + e.getMessage());
+        }
+    }
+
+    public boolean hasPurchased(Long userId, Long productId) {
+        if (userId == null || productId == null) {
+            return false;
+        }
+        Buyers current = buyers;
+        if (current != null && !current.filter().mightContain(userId)) {
+            if (!orderRepository.existsByUserIdAndStatusAndUpdatedAtAfter(userId, Order.OrderStatus.DELIVERED, current.builtAt())) {
+                bloomSkips.increment();
+                return false;
+            }
+            current.filter().put(userId);
+        }
+        return getDeliveredProductIds(userId).contains(productId);
+    }
+
+    public Set<Long> getDeliveredProductIds(Long userId) {
+        long now = System.currentTimeMillis();
+        DeliveredProducts cached = deliveredProducts.get(userId);
+        if (cached != null && cached.expiresAt() > now) {
+            cacheHits.increment();
+            return cached.productIds();
+        }
+        long generation = invalidations.get();
+        Set<Long> productIds = Set.copyOf(orderRepository.findDeliveredProductIds(userId));
+        cacheLoads.increment();
+        if (invalidations.get() == generation) {
+            deliveredProducts.put(userId, new DeliveredProducts(productIds, now + cacheTtlSeconds * 1000));
+        }
+        return productIds;
+    }
+
+    /**
+     * เรียกเมื่อสถานะ order เปลี่ยน; มีผลหลัง commit
+     */
+    public void orderStatusChanged(Long userId, Order.OrderStatus previous, Order.OrderStatus current) {
+        if (previous != Order.OrderStatus.DELIVERED && current != Order.OrderStatus.DELIVERED) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            Buyers filter = buyers;
+            if (current == Order.OrderStatus.DELIVERED && filter != null) {
+                filter.filter().put(userId);
+            }
+            invalidations.incrementAndGet();
+            deliveredProducts.remove(userId);
+        });
+    }
+}
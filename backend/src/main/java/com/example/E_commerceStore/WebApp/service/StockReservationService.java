@@ -0,0 +1,252 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.util.TimerWheel;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory soft holds on product stock while items sit in a cart / checkout.
+ *
+ * Each product has a ledger of per-user holds; available = stock - active holds.
+ * Holds are granted, extended and released inside the product's map entry (no DB
+ * row locks), which also lets a ledger be dropped as soon as its last hold goes,
+ * and expire on a timer wheel. Nothing is persisted until checkout decrements the
+ * real stock, at which point the hold is converted (released).
+ *
+ * Cart changes use the transactional variants: a larger hold is taken before the
+ * cart row is written and given back if the transaction rolls back, while a smaller
+ * hold or a release only frees stock once the cart change has committed.
+ */
+@Service
+public class StockReservationService {
+
+    @Value("${app.reservation.ttl-minutes:15}")
+    private long ttlMinutes;
+
+    @Value("${app.reservation.wheel-tick-ms:1000}")
+    private long wheelTickMillis;
+
+    @Value("${app.reservation.wheel-size:512}")
+    private int wheelSize;
+
+    private final ConcurrentHashMap<Long, ProductLedger> ledgers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<Long>> productsByUser = new ConcurrentHashMap<>();
+    private TimerWheel timerWheel;
+
+    @PostConstruct
+    public void init() {
+        timerWheel = new TimerWheel("stock-reservation-wheel", Duration.ofMillis(wheelTickMillis), wheelSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timerWheel.close();
+    }
+
+    /**
+     * ตั้งจำนวนที่ผู้ใช้จองไว้สำหรับสินค้า (แทนที่ hold เดิม) และต่ออายุ TTL
+     *
+     * @return false ถ้าสต็อกที่เหลือ (หลังหัก hold ของคนอื่น) ไม่พอ
+     */
+    public boolean hold(Long userId, Long productId, int quantity, int stock) {
+        boolean[] granted = {false};
+        ledgers.compute(productId, (id, ledger) -> {
+            if (ledger == null) {
+                ledger = new ProductLedger();
+            }
+            Hold current = ledger.holds.get(userId);
+            int previous = current != null ? current.quantity : 0;
+            if (ledger.tryAdjust(quantity - previous, stock)) {
+                if (current != null) {
+                    current.timeout.cancel();
+                }
+                if (quantity > 0) {
+                    ledger.holds.put(userId, newHold(productId, userId, quantity));
+                } else {
+                    ledger.holds.remove(userId);
+                }
+                granted[0] = true;
+            }
+            return ledger.holds.isEmpty() ? null : ledger;
+        });
+        if (granted[0] && quantity > 0) {
+            productsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(productId);
+        } else if (granted[0]) {
+            forgetProduct(userId, productId);
+        }
+        return granted[0];
+    }
+
+    /**
+     * {@link #hold} for a cart change in the current transaction: growing the hold
+     * happens now (so nobody else can take the stock) and is undone on rollback;
+     * shrinking it waits for the commit, so a rolled-back change never frees stock.
+     */
+    public boolean holdInTransaction(Long userId, Long productId, int quantity, int stock) {
+        int previous = getHeldQuantity(userId, productId);
+        if (quantity <= previous) {
+            TransactionCallbacks.afterCommit(() -> hold(userId, productId, quantity, stock));
+            return true;
+        }
+        if (!hold(userId, productId, quantity, stock)) {
+            return false;
+        }
+        // คืนค่าเดิม: จำนวนน้อยลงเสมอ จึงไม่มีทางถูกปฏิเสธ
+        TransactionCallbacks.afterRollback(() -> hold(userId, productId, previous, stock));
+        return true;
+    }
+
+    /**
+     * ต่ออายุ hold ของผู้ใช้สำหรับสินค้า (ถ้ายังไม่หมดอายุ)
+     */
+    public boolean extend(Long userId, Long productId) {
+        ProductLedger ledger = ledgers.get(productId);
+        if (ledger == null) {
+            return false;
+        }
+        Hold extended = ledger.holds.computeIfPresent(userId, (uid, current) -> {
+            current.timeout.cancel();
+            return newHold(productId, uid, current.quantity);
+        });
+        return extended != null;
+    }
+
+    public void release(Long userId, Long productId) {
+        ledgers.computeIfPresent(productId, (id, ledger) -> {
+            Hold current = ledger.holds.remove(userId);
+            if (current != null) {
+                current.timeout.cancel();
+                ledger.held.addAndGet(-current.quantity);
+            }
+            return ledger.holds.isEmpty() ? null : ledger;
+        });
+        forgetProduct(userId, productId);
+    }
+
+    public void releaseAll(Long userId) {
+        Set<Long> productIds = productsByUser.remove(userId);
+        if (productIds != null) {
+            productIds.forEach(productId -> release(userId, productId));
+        }
+    }
+
+    /**
+     * ปล่อย hold หลัง commit เท่านั้น (ถ้า rollback ตะกร้ายังมีสินค้าอยู่ จึงต้องจองไว้ต่อ)
+     */
+    public void releaseInTransaction(Long userId, Long productId) {
+        TransactionCallbacks.afterCommit(() -> release(userId, productId));
+    }
+
+    public void releaseAllInTransaction(Long userId) {
+        TransactionCallbacks.afterCommit(() -> releaseAll(userId));
+    }
+
+    /**
+     * เปลี่ยน hold เป็นคำสั่งซื้อ: สต็อกจริงถูกตัดแล้ว จึงปล่อย hold ออกจาก ledger
+     */
+    public void convert(Long userId, Collection<Long> productIds) {
+        productIds.forEach(productId -> release(userId, productId));
+    }
+
+    /**
+     * สต็อกที่ยังจองได้ (ไม่นับ hold ของใครเลย)
+     */
+    public int getAvailable(Long productId, int stock) {
+        ProductLedger ledger = ledgers.get(productId);
+        return ledger == null ? stock : Math.max(0, stock - ledger.held.get());
+    }
+
+    /**
+     * สต็อกที่ผู้ใช้คนนี้ใช้ได้ = stock - hold ของคนอื่น
+     */
+    public int getAvailableFor(Long userId, Long productId, int stock) {
+        ProductLedger ledger = ledgers.get(productId);
+        if (ledger == null) {
+            return stock;
+        }
+        Hold own = ledger.holds.get(userId);
+        int othersHeld = ledger.held.get() - (own != null ? own.quantity : 0);
+        return Math.max(0, stock - othersHeld);
+    }
+
+    public int getHeldQuantity(Long productId) {
+        ProductLedger ledger = ledgers.get(productId);
+        return ledger == null ? 0 : ledger.held.get();
+    }
+
+    /**
+     * จำนวนที่ผู้ใช้คนนี้จองสินค้านี้อยู่
+     */
+    public int getHeldQuantity(Long userId, Long productId) {
+        ProductLedger ledger = ledgers.get(productId);
+        Hold own = ledger == null ? null : ledger.holds.get(userId);
+        return own == null ? 0 : own.quantity;
+    }
+
+    int getLedgerCount() {
+        return ledgers.size();
+    }
+
+    private Hold newHold(Long productId, Long userId, int quantity) {
+        Hold hold = new Hold(quantity);
+        hold.timeout = timerWheel.schedule(() -> expire(productId, userId, hold), Duration.ofMinutes(ttlMinutes));
+        return hold;
+    }
+
+    private void expire(Long productId, Long userId, Hold hold) {
+        boolean[] expired = {false};
+        ledgers.computeIfPresent(productId, (id, ledger) -> {
+            if (ledger.holds.remove(userId, hold)) {
+                ledger.held.addAndGet(-hold.quantity);
+                expired[0] = true;
+            }
+            return ledger.holds.isEmpty() ? null : ledger;
+        });
+        if (expired[0]) {
+            forgetProduct(userId, productId);
+        }
+    }
+
+    private void forgetProduct(Long userId, Long productId) {
+        productsByUser.computeIfPresent(userId, (uid, productIds) -> {
+            productIds.remove(productId);
+            return productIds.isEmpty() ? null : productIds;
+        });
+    }
+
+    private static final class ProductLedger {
+        private final AtomicInteger held = new AtomicInteger();
+        private final ConcurrentHashMap<Long, Hold> holds = new ConcurrentHashMap<>();
+
+        private boolean tryAdjust(int delta, int stock) {
+            while (true) {
+                int current = held.get();
+                int next = current + delta;
+                if (delta > 0 && next > stock) {
+                    return false;
+                }
+                if (held.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static final class Hold {
+        private final int quantity;
+        private TimerWheel.Timeout timeout;
+
+        private Hold(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
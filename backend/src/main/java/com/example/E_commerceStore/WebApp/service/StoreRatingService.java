@@ -0,0 +1,140 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.dto.StoreRatingSummary;
+import com.example.E_commerceStore.WebApp.model.StoreRatingStats;
+import com.example.E_commerceStore.WebApp.repository.ProductRepository;
+import com.example.E_commerceStore.WebApp.repository.StoreRatingStatsRepository;
+import com.example.E_commerceStore.WebApp.util.LruCache;
+import com.example.E_commerceStore.WebApp.util.TransactionCallbacks;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * คะแนนรีวิวรวมของร้านค้า อัปเดตทีละส่วนพร้อมกับคะแนนของสินค้า
+ *
+ * ProductRatingService forwards every product delta here inside the same
+ * transaction, so store_rating_stats always equals the sum of its products'
+ * rows. Reads go through an LRU cache per store; a listing resolves all its
+ * cache misses with one query.
+ */
+@Service
+public class StoreRatingService {
+
+    @Autowired
+    private StoreRatingStatsRepository storeRatingStatsRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.store-rating-stats.cache-size:1000}")
+    private int cacheSize;
+
+    private TransactionTemplate transactionTemplate;
+    private LruCache<Long, StoreRatingSummary> cache;
+    // Bumped on every invalidation; a load that raced with one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * เติมตารางสถิติร้านจาก comments ที่มีอยู่ ถ้ายังว่าง
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (storeRatingStatsRepository.count() == 0) {
+                Integer stores = transactionTemplate.execute(status -> storeRatingStatsRepository.rebuildAll());
+                System.out.println("[StoreRating] Backfilled rating stats for " + stores + " stores");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[StoreRating] Cannot backfill store rating stats: " + e.getMessage());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public StoreRatingSummary getSummary(Long storeId) {
+        return getSummaries(List.of(storeId)).get(storeId);
+    }
+
+    /**
+     * สรุปคะแนนของหลายร้านในครั้งเดียว (cache ก่อน แล้วค่อย query ร้านที่เหลือรวมกัน)
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, StoreRatingSummary> getSummaries(Collection<Long> storeIds) {
+        Map<Long, StoreRatingSummary> summaries = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long storeId : storeIds) {
+            StoreRatingSummary cached = cache.get(storeId);
+            if (cached != null) {
+                summaries.put(storeId, cached);
+            } else {
+                misses.add(storeId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return summaries;
+        }
+
+        long generation = invalidations.get();
+        Map<Long, StoreRatingSummary> loaded = new HashMap<>();
+        for (StoreRatingStats stats : storeRatingStatsRepository.findAllById(misses)) {
+            loaded.put(stats.getStoreId(), StoreRatingSummary.of(stats));
+        }
+        for (Long storeId : misses) {
+            loaded.computeIfAbsent(storeId, StoreRatingSummary::empty);
+        }
+        if (invalidations.get() == generation) {
+            loaded.forEach(cache::put);
+        }
+        summaries.putAll(loaded);
+        return summaries;
+    }
+
+    /**
+     * บวก delta ของสินค้าเข้าร้านของสินค้านั้น (must run inside the comment change's transaction)
+     */
+    public void applyProductDelta(Long productId, int commentDelta, int ratingDelta, int sumDelta, int[] stars) {
+        productRepository.findStoreIdById(productId).ifPresent(storeId -> {
+            storeRatingStatsRepository.applyDelta(storeId, commentDelta, ratingDelta, sumDelta,
+                stars[1], stars[2], stars[3], stars[4], stars[5]);
+            TransactionCallbacks.afterCommit(() -> {
+                invalidations.incrementAndGet();
+                cache.remove(storeId);
+            });
+        });
+    }
+
+    /**
+     * คำนวณใหม่ทั้งหมดจาก comments (ซ่อมข้อมูล)
+     */
+    @Transactional
+    public int rebuildAll() {
+        int stores = storeRatingStatsRepository.rebuildAll();
+        TransactionCallbacks.afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.clear();
+        });
+        return stores;
+    }
+}
@@ -2,20 +2,26 @@ package com.example.E_commerceStore.WebApp.service;
 
 import com.example.E_commerceStore.WebApp.dto.PaymentIntentRequest.ProductItem;
 import com.example.E_commerceStore.WebApp.dto.CheckoutSessionRequest.CheckoutProductItem;
+import com.example.E_commerceStore.WebApp.model.OutboxEvent;
 import com.stripe.Stripe;
 import com.stripe.model.Event;
+import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.Account;
+import com.stripe.model.StripeObject;
 import com.stripe.model.checkout.Session;
 import com.stripe.net.Webhook;
 import com.stripe.param.PaymentIntentCreateParams;
 import com.stripe.net.RequestOptions;
 import com.stripe.param.checkout.SessionCreateParams;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,6 +39,9 @@ public class StripeService {
     @Value("${stripe.mode:test}")
     private String stripeMode; // 'test' or 'live'
 
+    @Autowired
+    private OutboxService outboxService;
+
     @PostConstruct
     public void init() {
         Stripe.apiKey = stripeApiKey;
@@ -53,6 +62,18 @@ public class StripeService {
      * Create a PaymentIntent for direct payments
      */
     public PaymentIntent createPaymentIntent(Long amount, String currency, List<ProductItem> products) throws Exception {
+        return createPaymentIntent(amount, currency, products, null, null);
+    }
+
+    /**
+     * Create a PaymentIntent linked to a stored order; the order number travels in
+     * the metadata so the webhook can confirm or cancel that order.
+     *
+     * @param idempotencyKey client supplied key (Idempotency-Key header); when null a
+     *                       key is derived from the amount, order and products
+     */
+    public PaymentIntent createPaymentIntent(Long amount, String currency, List<ProductItem> products,
+                                             String orderNumber, String idempotencyKey) throws Exception {
         if (Stripe.apiKey != null && Stripe.apiKey.length() > 18) {
             String masked = Stripe.apiKey.substring(0, 18) + "..." + Stripe.apiKey.substring(Stripe.apiKey.length() - 4);
             System.out.println("[StripeService] Creating PaymentIntent using secret=" + masked + ", amount=" + amount + ", currency=" + currency);
@@ -76,14 +97,23 @@ public class StripeService {
             paramsBuilder.putMetadata("product_" + i + "_price", String.valueOf(product.getPrice()));
         }
 
+        if (orderNumber != null && !orderNumber.isBlank()) {
+            paramsBuilder.putMetadata("order_number", orderNumber);
+        }
+
         PaymentIntentCreateParams params = paramsBuilder.build();
 
-        // Generate deterministic idempotency key (amount + product ids) to avoid duplicate charges if retried quickly
-        StringBuilder keyBuilder = new StringBuilder("pi:").append(amount).append(":");
-        for (int i = 0; i < Math.min(products.size(), 5); i++) {
-            keyBuilder.append(products.get(i).getId()).append('-');
+        if (idempotencyKey == null) {
+            // Generate deterministic idempotency key (amount + product ids) to avoid duplicate charges if retried quickly
+            StringBuilder keyBuilder = new StringBuilder("pi:").append(amount).append(":");
+            if (orderNumber != null && !orderNumber.isBlank()) {
+                keyBuilder.append(orderNumber).append(":");
+            }
+            for (int i = 0; i < Math.min(products.size(), 5); i++) {
+                keyBuilder.append(products.get(i).getId()).append('-');
+            }
+            idempotencyKey = keyBuilder.toString();
         }
-        String idempotencyKey = keyBuilder.toString();
         RequestOptions requestOptions = RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
         System.out.println("[StripeService] Creating PaymentIntent idempotencyKey=" + idempotencyKey);
         return PaymentIntent.create(params, requestOptions);
@@ -144,6 +174,9 @@ public class StripeService {
             case "payment_intent.payment_failed":
                 handlePaymentIntentFailed(event);
                 break;
+            case "payment_intent.canceled":
+                handlePaymentIntentCanceled(event);
+                break;
             case "checkout.session.completed":
                 handleCheckoutSessionCompleted(event);
                 break;
@@ -153,22 +186,58 @@ public class StripeService {
         }
     }
 
-    private void handlePaymentIntentSucceeded(Event event) {
-        // Handle successful payment
+    // Webhook handlers only record what happened; the outbox relay updates the order and sends emails.
+    // The Stripe event id is the outbox key, so a redelivered webhook is recorded once.
+
+    private void handlePaymentIntentSucceeded(Event event) throws Exception {
+        PaymentIntent paymentIntent = (PaymentIntent) deserialize(event);
         System.out.println("Payment succeeded: " + event.getId());
-        // TODO: Update order status, send confirmation email, etc.
+        recordPaymentEvent(OutboxEvent.PAYMENT_SUCCEEDED, event, paymentIntent.getId(), paymentIntent.getMetadata());
     }
 
-    private void handlePaymentIntentFailed(Event event) {
-        // Handle failed payment
+    // Not terminal: the customer can retry the same PaymentIntent with another card, so the order stays pending
+    private void handlePaymentIntentFailed(Event event) throws Exception {
+        PaymentIntent paymentIntent = (PaymentIntent) deserialize(event);
         System.out.println("Payment failed: " + event.getId());
-        // TODO: Update order status, notify customer, etc.
+        String error = paymentIntent.getLastPaymentError() != null ? paymentIntent.getLastPaymentError().getMessage() : null;
+        recordPaymentEvent(OutboxEvent.PAYMENT_FAILED, event, paymentIntent.getId(), paymentIntent.getMetadata(), error);
     }
 
-    private void handleCheckoutSessionCompleted(Event event) {
-        // Handle completed checkout session
+    // Terminal: the PaymentIntent can no longer be paid, so the order is cancelled and restocked
+    private void handlePaymentIntentCanceled(Event event) throws Exception {
+        PaymentIntent paymentIntent = (PaymentIntent) deserialize(event);
+        System.out.println("Payment canceled: " + event.getId());
+        recordPaymentEvent(OutboxEvent.PAYMENT_CANCELED, event, paymentIntent.getId(), paymentIntent.getMetadata());
+    }
+
+    private void handleCheckoutSessionCompleted(Event event) throws Exception {
+        Session session = (Session) deserialize(event);
         System.out.println("Checkout session completed: " + event.getId());
-        // TODO: Fulfill order, update inventory, etc.
+        if ("paid".equals(session.getPaymentStatus())) {
+            recordPaymentEvent(OutboxEvent.PAYMENT_SUCCEEDED, event, session.getId(), session.getMetadata());
+        }
+    }
+
+    private void recordPaymentEvent(String eventType, Event event, String paymentId, Map<String, String> metadata) {
+        recordPaymentEvent(eventType, event, paymentId, metadata, null);
+    }
+
+    private void recordPaymentEvent(String eventType, Event event, String paymentId, Map<String, String> metadata,
+                                    String error) {
+        Map<String, Object> payload = new HashMap<>();
+        if (error != null) {
+            payload.put("error", error);
+        }
+        payload.put("stripeEventId", event.getId());
+        payload.put("paymentId", paymentId);
+        payload.put("orderNumber", metadata != null ? metadata.get("order_number") : null);
+        outboxService.publish(eventType, "payment", paymentId, payload, "stripe:" + event.getId());
+    }
+
+    private StripeObject deserialize(Event event) throws Exception {
+        // Falls back to unsafe deserialization when the event API version differs from the library's
+        EventDataObjectDeserializer deserializer = event.getDataObjectDeserializer();
+        return deserializer.getObject().isPresent() ? deserializer.getObject().get() : deserializer.deserializeUnsafe();
     }
 
     /**
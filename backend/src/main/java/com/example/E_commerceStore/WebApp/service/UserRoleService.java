@@ -0,0 +1,58 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import com.example.E_commerceStore.WebApp.model.UserRole;
+import com.example.E_commerceStore.WebApp.repository.UserRepository;
+import com.example.E_commerceStore.WebApp.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * role ปัจจุบันของผู้ใช้จากตาราง users (ใช้ตรวจ role claim ใน JWT)
+ *
+ * A token's role claim is only a hint: authorization uses users.role. Lookups
+ * are cached per user for a short TTL, so most authenticated requests still
+ * cost no query and a demoted user loses the role within the TTL.
+ */
+@Service
+public class UserRoleService {
+
+    private record CachedRole(Optional<UserRole> role, long expiresAt) {}
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.jwt.role-cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${app.jwt.role-cache-ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private LruCache<Long, CachedRole> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * role ของผู้ใช้ หรือ empty ถ้าไม่มีผู้ใช้นี้แล้ว
+     */
+    public Optional<UserRole> getRole(Long userId) {
+        long now = System.currentTimeMillis();
+        CachedRole cached = cache.get(userId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.role();
+        }
+        Optional<UserRole> role = userRepository.findRoleById(userId);
+        cache.put(userId, new CachedRole(role, now + ttlSeconds * 1000));
+        return role;
+    }
+
+    public void evict(Long userId) {
+        cache.remove(userId);
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Virtual waiting room for hot launches.
+ *
+ * Arrivals take a ticket from a sequence and receive a signed queue token.
+ * Once per second the admission watermark moves forward by the configured
+ * rate; a token whose ticket is at or below the watermark may use checkout
+ * and cart mutations. Queue state is two counters in memory, so queued clients
+ * can poll as often as they like without touching the database.
+ *
+ * The signature covers the holder (user id, or session for guests), so a token
+ * only works for whoever joined with it, and an admitted token is only good for
+ * a short window after its first admitted use.
+ *
+ * Single node only: the ticket counter and the watermark are per-process, so a
+ * ticket's position means nothing on another instance. Run the waiting room on
+ * one node, or route /api/waiting-room and the guarded paths with sticky
+ * sessions; sharing the queue across nodes would need the counters in the database.
+ */
+@Service
+public class WaitingRoomService {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.waiting-room.enabled:false}")
+    private volatile boolean enabled;
+
+    @Value("${app.waiting-room.admit-per-second:50}")
+    private volatile int admitPerSecond;
+
+    @Value("${app.waiting-room.token-ttl-minutes:30}")
+    private long tokenTtlMinutes;
+
+    @Value("${app.waiting-room.admission-window-minutes:10}")
+    private long admissionWindowMinutes;
+
+    // HMAC key for queue tokens; from the environment so tokens survive a restart of this node
+    @Value("${app.waiting-room.secret}")
+    private String secret;
+
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final AtomicLong nextTicket = new AtomicLong();
+    private final AtomicLong admittedUpTo = new AtomicLong();
+    // ticket -> first admitted use (ms)
+    private final ConcurrentHashMap<Long, Long> firstAdmittedAt = new ConcurrentHashMap<>();
+    private SecretKeySpec signingKey;
+    private Counter admittedCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException(
+                "app.waiting-room.secret is not set; provide it through the WAITING_ROOM_SECRET environment variable");
+        }
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        if (key.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("app.waiting-room.secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        signingKey = new SecretKeySpec(key, "HmacSHA256");
+
+        Gauge.builder("waiting_room.queue.length", this, WaitingRoomService::getQueueLength)
+            .description("Tickets issued but not yet admitted")
+            .register(meterRegistry);
+        Gauge.builder("waiting_room.admit.rate", this, service -> service.admitPerSecond)
+            .description("Configured admissions per second")
+            .register(meterRegistry);
+        Gauge.builder("waiting_room.enabled", this, service -> service.enabled ? 1 : 0)
+            .register(meterRegistry);
+        admittedCounter = Counter.builder("waiting_room.admitted")
+            .description("Tickets moved past the admission watermark")
+            .register(meterRegistry);
+        rejectedCounter = Counter.builder("waiting_room.rejected")
+            .description("Guarded requests turned away while queued or without a token")
+            .register(meterRegistry);
+    }
+
+    /**
+     * เลื่อน watermark ทุกวินาทีตามอัตราที่ตั้งไว้ (ไม่เกินจำนวนตั๋วที่ออกไปแล้ว)
+     */
+    @Scheduled(fixedRate = 1000)
+    public void admitNextBatch() {
+        long issued = nextTicket.get();
+        long before = admittedUpTo.get();
+        long after = enabled ? Math.min(issued, before + admitPerSecond) : issued;
+        if (after > before && admittedUpTo.compareAndSet(before, after)) {
+            admittedCounter.increment(after - before);
+        }
+    }
+
+    /**
+     * ลืมตั๋วที่หมดช่วงเวลาใช้งานแล้ว
+     */
+    @Scheduled(fixedRate = 60_000)
+    public void purgeExpiredAdmissions() {
+        long cutoff = System.currentTimeMillis() - admissionWindowMinutes * 60_000;
+        firstAdmittedAt.values().removeIf(admittedAt -> admittedAt < cutoff);
+    }
+
+    /**
+     * ออกตั๋วใหม่ให้ผู้ถือ (subject = user หรือ session) และคืน token ที่เซ็นแล้ว
+     */
+    public Ticket join(String subject) {
+        long ticket = nextTicket.incrementAndGet();
+        long issuedAt = System.currentTimeMillis();
+        String payload = ticket + "." + issuedAt;
+        return new Ticket(ticket, payload + "." + sign(payload + "." + subject));
+    }
+
+    /**
+     * ตั๋วของ token (หรือ -1 ถ้า token ปลอม, ไม่ใช่ของ subject นี้, หมดอายุ หรือหมดช่วงเวลาหลังได้เข้า)
+     */
+    public long parseTicket(String token, String subject) {
+        if (token == null || subject == null) {
+            return -1;
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return -1;
+        }
+        String payload = parts[0] + "." + parts[1];
+        if (!MessageDigest.isEqual(sign(payload + "." + subject).getBytes(StandardCharsets.UTF_8),
+                                   parts[2].getBytes(StandardCharsets.UTF_8))) {
+            return -1;
+        }
+        try {
+            long issuedAt = Long.parseLong(parts[1]);
+            if (System.currentTimeMillis() - issuedAt > tokenTtlMinutes * 60_000) {
+                return -1;
+            }
+            long ticket = Long.parseLong(parts[0]);
+            Long admittedAt = firstAdmittedAt.get(ticket);
+            if (admittedAt != null && System.currentTimeMillis() - admittedAt > admissionWindowMinutes * 60_000) {
+                return -1;
+            }
+            return ticket;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public boolean isAdmitted(String token, String subject) {
+        if (!enabled) {
+            return true;
+        }
+        long ticket = parseTicket(token, subject);
+        boolean admitted = ticket > 0 && ticket <= admittedUpTo.get();
+        if (admitted) {
+            // the admission window starts with the first guarded request
+            firstAdmittedAt.putIfAbsent(ticket, System.currentTimeMillis());
+        } else {
+            rejectedCounter.increment();
+        }
+        return admitted;
+    }
+
+    /**
+     * จำนวนคนที่อยู่ข้างหน้าตั๋วนี้ (0 = เข้าได้แล้ว)
+     */
+    public long getPosition(long ticket) {
+        return Math.max(0, ticket - admittedUpTo.get());
+    }
+
+    public long getEstimatedWaitSeconds(long ticket) {
+        int rate = Math.max(1, admitPerSecond);
+        return (getPosition(ticket) + rate - 1) / rate;
+    }
+
+    public long getQueueLength() {
+        return Math.max(0, nextTicket.get() - admittedUpTo.get());
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getAdmitPerSecond() { return admitPerSecond; }
+    public void setAdmitPerSecond(int admitPerSecond) {
+        if (admitPerSecond <= 0) {
+            throw new RuntimeException("Admit rate must be greater than 0");
+        }
+        this.admitPerSecond = admitPerSecond;
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(signingKey);
+            byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot sign queue token", e);
+        }
+    }
+
+    public record Ticket(long number, String token) {}
+}
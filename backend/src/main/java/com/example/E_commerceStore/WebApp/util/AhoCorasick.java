@@ -0,0 +1,120 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho–Corasick automaton: finds every occurrence of thousands of patterns in
+ * one left-to-right pass over the text, in time linear in the text length.
+ *
+ * Immutable once built, so one instance can be shared by all threads and
+ * swapped atomically when the pattern list is reloaded. Patterns and text are
+ * matched exactly as given; callers normalize both the same way.
+ */
+public final class AhoCorasick {
+
+    private static final int ROOT = 0;
+
+    // goto function of the trie, one map per state; misses follow failure links
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final int[] failure;
+    // index into patterns of the pattern spelled by the state, or -1
+    private final int[] output;
+    // next state on the failure chain that has an output, or -1 (dictionary suffix link)
+    private final int[] outputLink;
+    private final String[] patterns;
+
+    public AhoCorasick(Collection<String> patterns) {
+        this.patterns = patterns.stream()
+            .filter(pattern -> pattern != null && !pattern.isEmpty())
+            .distinct()
+            .toArray(String[]::new);
+
+        transitions.add(new HashMap<>());
+        List<Integer> terminal = new ArrayList<>(List.of(-1));
+        for (int i = 0; i < this.patterns.length; i++) {
+            int state = ROOT;
+            for (char c : this.patterns[i].toCharArray()) {
+                Integer next = transitions.get(state).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.get(state).put(c, next);
+                    transitions.add(new HashMap<>());
+                    terminal.add(-1);
+                }
+                state = next;
+            }
+            terminal.set(state, i);
+        }
+
+        int states = transitions.size();
+        failure = new int[states];
+        output = new int[states];
+        outputLink = new int[states];
+        for (int s = 0; s < states; s++) {
+            output[s] = terminal.get(s);
+        }
+        Arrays.fill(outputLink, -1);
+
+        // BFS: a state's failure is the longest proper suffix of its path that is also a prefix in the trie
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(ROOT).values()) {
+            failure[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fallback = failure[state];
+            outputLink[state] = output[fallback] != -1 ? fallback : outputLink[fallback];
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                failure[child] = step(fallback, edge.getKey());
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * A pattern occurrence: text[start, end) equals the pattern.
+     */
+    public record Match(String pattern, int start, int end) {}
+
+    /**
+     * Every occurrence of every pattern in the text, in order of end position.
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            for (int s = output[state] != -1 ? state : outputLink[state]; s != -1; s = outputLink[s]) {
+                String pattern = patterns[output[s]];
+                matches.add(new Match(pattern, i + 1 - pattern.length(), i + 1));
+            }
+        }
+        return matches;
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            Integer next = transitions.get(state).get(c);
+            if (next != null) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failure[state];
+        }
+    }
+}
@@ -1,32 +1,61 @@
 package com.example.E_commerceStore.WebApp.util;
 
+import com.example.E_commerceStore.WebApp.model.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 @Component
 public class JwtUtil {
 
+    // access-token claims read by JwtAuthenticationFilter (no session or DB lookup per request)
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    // HS256 needs at least a 256-bit key
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private SecretKey signingKey;
+
+    /**
+     * ต้องตั้ง JWT_SECRET เอง (ไม่มีค่า default ใน repo): refuse to start with a missing or short key
+     */
+    @PostConstruct
+    public void init() {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("jwt.secret is not set; provide it through the JWT_SECRET environment variable");
+        }
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        if (key.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("jwt.secret must be at least 256 bits (" + MIN_SECRET_BYTES + " bytes)");
+        }
+        signingKey = Keys.hmacShaKeyFor(key);
+    }
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        return signingKey;
     }
 
-    public String generateToken(String email) {
+    public String generateToken(User user) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration);
 
         return Jwts.builder()
-                .subject(email)
+                .subject(user.getEmail())
+                .claim(USER_ID_CLAIM, user.getId())
+                .claim(ROLE_CLAIM, user.getRole() != null ? user.getRole().name() : "USER")
                 .issuedAt(now)
                 .expiration(expiryDate)
                 .signWith(getSigningKey())
@@ -46,6 +75,22 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * claims ของ access token ที่ถูกต้องและยังไม่หมดอายุ; null ถ้าไม่ผ่าน หรือเป็น reset token
+     */
+    public Claims parseAccessToken(String token) {
+        try {
+            Claims claims = Jwts.parser()
+                    .verifyWith(getSigningKey())
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+            return claims.get("type") == null ? claims : null;
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public String getEmailFromToken(String token) {
         Claims claims = Jwts.parser()
                 .verifyWith(getSigningKey())
@@ -0,0 +1,18 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns entity ids from {@link SnowflakeIdGenerator} before insert, so Hibernate
+ * can batch the inserts (IDENTITY columns force one round trip per row).
+ */
+@IdGeneratorType(SnowflakeIdentifierGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SnowflakeId {
+}
@@ -0,0 +1,91 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style 64-bit id generator: 41 bits of milliseconds since
+ * {@link #EPOCH_MILLIS}, 10 bits of node id and a 12-bit per-millisecond sequence.
+ *
+ * Ids are unique across nodes with distinct node ids and increase over time,
+ * so they sort by creation order. State is a single AtomicLong updated with CAS;
+ * if the sequence overflows or the clock moves backwards the generator keeps
+ * counting from the last timestamp instead of blocking or repeating ids.
+ */
+public class SnowflakeIdGenerator {
+
+    public static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static volatile SnowflakeIdGenerator defaultInstance;
+
+    private final long nodeId;
+    // (timestamp << SEQUENCE_BITS) | sequence ของ id ล่าสุดที่ออกไป
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            long previous = lastState.get();
+            long previousTimestamp = previous >>> SEQUENCE_BITS;
+
+            long next;
+            if (now > previousTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else if ((previous & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = previous + 1;
+            } else {
+                // sequence เต็มในมิลลิวินาทีนี้: ยืมมิลลิวินาทีถัดไป
+                next = (previousTimestamp + 1) << SEQUENCE_BITS;
+            }
+
+            if (lastState.compareAndSet(previous, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Milliseconds since the Unix epoch at which the id was generated.
+     */
+    public static long extractTimestamp(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * Generator shared by code that is not Spring-managed (entities, Hibernate id generators).
+     * Configured from app.id.node-id at startup; falls back to node 0.
+     */
+    public static SnowflakeIdGenerator getDefault() {
+        SnowflakeIdGenerator instance = defaultInstance;
+        if (instance == null) {
+            synchronized (SnowflakeIdGenerator.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new SnowflakeIdGenerator(0);
+                }
+                instance = defaultInstance;
+            }
+        }
+        return instance;
+    }
+
+    public static void setDefault(SnowflakeIdGenerator generator) {
+        defaultInstance = generator;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Hibernate bridge for {@link SnowflakeId}.
+ */
+public class SnowflakeIdentifierGenerator implements IdentifierGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object entity) {
+        return SnowflakeIdGenerator.getDefault().nextId();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.Set;
+
+/**
+ * Tells failures worth retrying (deadlock, lock or statement timeout, lost
+ * connection) from deterministic ones (validation, constraint violations).
+ *
+ * Looks through the whole cause chain, because JPA and transaction managers
+ * wrap the driver exception at different depths.
+ */
+public final class TransientErrors {
+
+    // serialization_failure, deadlock_detected, lock_not_available, query_canceled (statement/lock timeout)
+    private static final Set<String> TRANSIENT_SQL_STATES = Set.of("40001", "40P01", "55P03", "57014");
+
+    private TransientErrors() {}
+
+    public static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                || cause instanceof RecoverableDataAccessException
+                || cause instanceof CannotCreateTransactionException
+                || cause instanceof SQLTransientException
+                || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException sql && sql.getSQLState() != null) {
+                String state = sql.getSQLState();
+                if (TRANSIENT_SQL_STATES.contains(state) || state.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
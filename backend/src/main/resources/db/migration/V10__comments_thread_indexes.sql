@@ -0,0 +1,3 @@
+-- Thread loading: root comments of a product by recency, and replies by parent.
+CREATE INDEX IF NOT EXISTS idx_comments_parent ON comments (parent_comment_id);
+CREATE INDEX IF NOT EXISTS idx_comments_product_roots ON comments (product_id, created_at DESC, id DESC) WHERE parent_comment_id IS NULL;
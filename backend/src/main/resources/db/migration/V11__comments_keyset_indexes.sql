@@ -0,0 +1,7 @@
+-- Keyset pagination of comment feeds on (created_at, id), newest first.
+CREATE INDEX IF NOT EXISTS idx_comments_product_parent_created ON comments (product_id, parent_comment_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_comments_user_created ON comments (user_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_comments_created ON comments (created_at, id);
+
+-- Superseded by idx_comments_product_parent_created (product_id + parent_comment_id IS NULL prefix).
+DROP INDEX IF EXISTS idx_comments_product_roots;
@@ -0,0 +1,18 @@
+-- Helpful/unhelpful review votes: one row per voter, aggregated into comments asynchronously.
+CREATE TABLE IF NOT EXISTS comment_votes (
+    id         BIGINT PRIMARY KEY,
+    comment_id BIGINT NOT NULL REFERENCES comments (id) ON DELETE CASCADE,
+    user_id    BIGINT NOT NULL,
+    helpful    BOOLEAN NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP,
+    CONSTRAINT uk_comment_votes_comment_user UNIQUE (comment_id, user_id)
+);
+
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS helpful_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS unhelpful_count BIGINT NOT NULL DEFAULT 0;
+-- Lower bound of the 95% Wilson interval of helpful / (helpful + unhelpful)
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS helpful_score DOUBLE PRECISION NOT NULL DEFAULT 0;
+
+-- sort=helpful pages of a product's root comments
+CREATE INDEX IF NOT EXISTS idx_comments_product_parent_helpful ON comments (product_id, parent_comment_id, helpful_score, id);
@@ -0,0 +1,6 @@
+-- Review moderation: flagged comments are held as PENDING until an admin approves or rejects them.
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS moderation_status VARCHAR(20) NOT NULL DEFAULT 'APPROVED';
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS moderation_reason VARCHAR(500);
+
+-- Admin review queue, oldest first
+CREATE INDEX IF NOT EXISTS idx_comments_moderation_created ON comments (moderation_status, created_at, id);
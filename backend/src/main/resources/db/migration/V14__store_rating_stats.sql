@@ -0,0 +1,24 @@
+-- Per-store review aggregates: the sum of product_rating_stats over the store's products,
+-- kept up to date by the application in the same transaction as the product row.
+CREATE TABLE IF NOT EXISTS store_rating_stats (
+    store_id      BIGINT PRIMARY KEY,
+    comment_count BIGINT NOT NULL DEFAULT 0,
+    rating_count  BIGINT NOT NULL DEFAULT 0,
+    rating_sum    BIGINT NOT NULL DEFAULT 0,
+    star1         BIGINT NOT NULL DEFAULT 0,
+    star2         BIGINT NOT NULL DEFAULT 0,
+    star3         BIGINT NOT NULL DEFAULT 0,
+    star4         BIGINT NOT NULL DEFAULT 0,
+    star5         BIGINT NOT NULL DEFAULT 0,
+    updated_at    TIMESTAMP
+);
+
+-- Backfill from the product aggregates (products without a store are not counted)
+INSERT INTO store_rating_stats (store_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, updated_at)
+SELECT p.store_id, SUM(s.comment_count), SUM(s.rating_count), SUM(s.rating_sum),
+       SUM(s.star1), SUM(s.star2), SUM(s.star3), SUM(s.star4), SUM(s.star5), now()
+FROM product_rating_stats s
+JOIN products p ON p.id = s.product_id
+WHERE p.store_id IS NOT NULL
+GROUP BY p.store_id
+ON CONFLICT (store_id) DO NOTHING;
@@ -0,0 +1,28 @@
+-- Asynchronous checkout queue (rows are locked by workers with FOR UPDATE SKIP LOCKED).
+CREATE TABLE IF NOT EXISTS checkout_jobs (
+    id               BIGINT PRIMARY KEY,
+    token            VARCHAR(36)   NOT NULL UNIQUE,
+    user_id          BIGINT        NOT NULL,
+    shipping_address VARCHAR(255),
+    phone_number     VARCHAR(255),
+    status           VARCHAR(20)   NOT NULL,
+    attempts         INTEGER       NOT NULL DEFAULT 0,
+    order_id         BIGINT,
+    order_number     VARCHAR(255),
+    error_message    VARCHAR(1000),
+    created_at       TIMESTAMP     NOT NULL,
+    updated_at       TIMESTAMP
+);
+
+ALTER TABLE checkout_jobs ADD COLUMN IF NOT EXISTS attempts INTEGER NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_checkout_jobs_status_id ON checkout_jobs (status, id);
+CREATE INDEX IF NOT EXISTS idx_checkout_jobs_user_status ON checkout_jobs (user_id, status);
+
+-- Keep only the oldest in-flight job per user before enforcing uniqueness
+UPDATE checkout_jobs j SET status = 'FAILED', error_message = 'A checkout is already in progress', updated_at = now()
+WHERE j.status = 'QUEUED'
+  AND EXISTS (SELECT 1 FROM checkout_jobs o WHERE o.user_id = j.user_id AND o.status = 'QUEUED' AND o.id < j.id);
+
+-- One checkout in flight per user: jobs stay QUEUED while a worker holds them, so this covers processing too
+CREATE UNIQUE INDEX IF NOT EXISTS uk_checkout_jobs_user_in_flight ON checkout_jobs (user_id) WHERE status = 'QUEUED';
@@ -0,0 +1,5 @@
+-- Relay instance that currently holds the lease; settling an event requires still owning it
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(36);
+
+-- Last failed payment attempt; the order stays PENDING until the PaymentIntent succeeds or is canceled
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS payment_error VARCHAR(500);
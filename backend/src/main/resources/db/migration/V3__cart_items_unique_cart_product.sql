@@ -0,0 +1,24 @@
+-- SQL migration for enforcing one cart_items row per (cart_id, product_id)
+-- Required by the INSERT ... ON CONFLICT add-to-cart upsert
+
+-- Merge quantities of duplicate lines into the oldest row
+WITH ranked AS (
+    SELECT id,
+           SUM(quantity) OVER (PARTITION BY cart_id, product_id) AS total_quantity,
+           ROW_NUMBER() OVER (PARTITION BY cart_id, product_id ORDER BY id) AS rn
+    FROM cart_items
+    WHERE cart_id IS NOT NULL
+)
+UPDATE cart_items ci
+SET quantity = r.total_quantity
+FROM ranked r
+WHERE ci.id = r.id AND r.rn = 1;
+
+DELETE FROM cart_items ci
+USING cart_items keep
+WHERE ci.cart_id = keep.cart_id
+  AND ci.product_id = keep.product_id
+  AND ci.id > keep.id;
+
+ALTER TABLE cart_items
+ADD CONSTRAINT uk_cart_items_cart_product UNIQUE (cart_id, product_id);
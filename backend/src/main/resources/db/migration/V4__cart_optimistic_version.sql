@@ -0,0 +1,9 @@
+-- Version columns for optimistic locking of carts (ETag / If-Match) and cart lines.
+-- Existing rows start at 0 so Hibernate treats them as persisted entities.
+ALTER TABLE carts ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0;
+UPDATE carts SET version = 0 WHERE version IS NULL;
+ALTER TABLE carts ALTER COLUMN version SET NOT NULL;
+
+ALTER TABLE cart_items ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0;
+UPDATE cart_items SET version = 0 WHERE version IS NULL;
+ALTER TABLE cart_items ALTER COLUMN version SET NOT NULL;
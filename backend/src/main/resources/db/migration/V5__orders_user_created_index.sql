@@ -0,0 +1,2 @@
+-- Keyset pagination of a user's orders on (created_at, id), newest first.
+CREATE INDEX IF NOT EXISTS idx_orders_user_created ON orders (user_id, created_at, id);
@@ -0,0 +1,17 @@
+-- Transactional outbox: side effects written with the order/payment change, delivered by the relay.
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id              BIGINT PRIMARY KEY,
+    event_type      VARCHAR(50)   NOT NULL,
+    aggregate_type  VARCHAR(50)   NOT NULL,
+    aggregate_id    VARCHAR(255)  NOT NULL,
+    event_key       VARCHAR(255)  UNIQUE,
+    payload         TEXT          NOT NULL,
+    status          VARCHAR(20)   NOT NULL DEFAULT 'PENDING',
+    attempts        INTEGER       NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP     NOT NULL,
+    last_error      VARCHAR(1000),
+    created_at      TIMESTAMP     NOT NULL,
+    processed_at    TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_status_next ON outbox_events (status, next_attempt_at, id);
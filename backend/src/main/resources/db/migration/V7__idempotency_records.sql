@@ -0,0 +1,16 @@
+-- Stored responses for requests sent with an Idempotency-Key header, replayed until expires_at.
+CREATE TABLE IF NOT EXISTS idempotency_records (
+    id              BIGINT PRIMARY KEY,
+    owner           VARCHAR(100)  NOT NULL,
+    idempotency_key VARCHAR(255)  NOT NULL,
+    request_path    VARCHAR(255)  NOT NULL,
+    fingerprint     VARCHAR(64)   NOT NULL,
+    status          VARCHAR(20)   NOT NULL,
+    response_status INTEGER,
+    response_body   TEXT,
+    created_at      TIMESTAMP     NOT NULL,
+    expires_at      TIMESTAMP     NOT NULL,
+    CONSTRAINT uk_idempotency_owner_key UNIQUE (owner, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_expires ON idempotency_records (expires_at);
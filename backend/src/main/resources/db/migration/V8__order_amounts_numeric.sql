@@ -0,0 +1,4 @@
+-- Order amounts were double precision; store them exactly like product prices.
+ALTER TABLE orders ALTER COLUMN total_amount TYPE NUMERIC(12, 2) USING ROUND(total_amount::numeric, 2);
+ALTER TABLE order_items ALTER COLUMN price_at_time TYPE NUMERIC(12, 2) USING ROUND(price_at_time::numeric, 2);
+ALTER TABLE order_items ALTER COLUMN subtotal TYPE NUMERIC(12, 2) USING ROUND(subtotal::numeric, 2);
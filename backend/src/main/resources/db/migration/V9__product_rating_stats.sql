@@ -0,0 +1,24 @@
+-- Per-product review aggregates, kept up to date by the application on every comment change.
+CREATE TABLE IF NOT EXISTS product_rating_stats (
+    product_id    BIGINT PRIMARY KEY,
+    comment_count BIGINT NOT NULL DEFAULT 0,
+    rating_count  BIGINT NOT NULL DEFAULT 0,
+    rating_sum    BIGINT NOT NULL DEFAULT 0,
+    star1         BIGINT NOT NULL DEFAULT 0,
+    star2         BIGINT NOT NULL DEFAULT 0,
+    star3         BIGINT NOT NULL DEFAULT 0,
+    star4         BIGINT NOT NULL DEFAULT 0,
+    star5         BIGINT NOT NULL DEFAULT 0,
+    updated_at    TIMESTAMP
+);
+
+-- Backfill from existing top-level comments (replies carry no rating and are not counted)
+INSERT INTO product_rating_stats (product_id, comment_count, rating_count, rating_sum, star1, star2, star3, star4, star5, updated_at)
+SELECT product_id, COUNT(*), COUNT(rating), COALESCE(SUM(rating), 0),
+       COUNT(*) FILTER (WHERE rating = 1), COUNT(*) FILTER (WHERE rating = 2),
+       COUNT(*) FILTER (WHERE rating = 3), COUNT(*) FILTER (WHERE rating = 4),
+       COUNT(*) FILTER (WHERE rating = 5), now()
+FROM comments
+WHERE parent_comment_id IS NULL
+GROUP BY product_id
+ON CONFLICT (product_id) DO NOTHING;
@@ -0,0 +1,78 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Rough before/after timing of the cart total: one BigDecimal per line (the old
+ * Cart.getTotalAmount) against the minor-unit sum it uses now. Only the results
+ * are asserted; the timings are printed, since they vary too much between
+ * machines to fail a build on.
+ */
+class CartTotalTimingTests {
+
+	private static final int LINES = 50;
+	private static final int ROUNDS = 20_000;
+
+	@Test
+	void minorUnitTotalMatchesBigDecimalTotal() {
+		Cart cart = cartWithLines(LINES);
+
+		assertEquals(0, bigDecimalTotal(cart).compareTo(cart.getTotalAmount()));
+		assertEquals(new BigDecimal("0.00"), new Cart().getTotalAmount());
+	}
+
+	@Test
+	void timesBothTotals() {
+		Cart cart = cartWithLines(LINES);
+		// warm up both paths before measuring
+		long sink = run(cart, ROUNDS, true) + run(cart, ROUNDS, false);
+
+		long start = System.nanoTime();
+		sink += run(cart, ROUNDS, true);
+		long bigDecimalNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		sink += run(cart, ROUNDS, false);
+		long minorUnitNanos = System.nanoTime() - start;
+
+		System.out.printf("[CartTotalTimingTests] %d carts x %d lines: BigDecimal per line %d ns/cart, minor units %d ns/cart (checksum bit %d)%n",
+			ROUNDS, LINES, bigDecimalNanos / ROUNDS, minorUnitNanos / ROUNDS, sink & 1);
+	}
+
+	private static long run(Cart cart, int rounds, boolean bigDecimal) {
+		long sink = 0;
+		for (int i = 0; i < rounds; i++) {
+			BigDecimal total = bigDecimal ? bigDecimalTotal(cart) : cart.getTotalAmount();
+			sink += total.unscaledValue().longValue();
+		}
+		return sink;
+	}
+
+	// Cart.getTotalAmount before Money: a BigDecimal product and sum per line
+	private static BigDecimal bigDecimalTotal(Cart cart) {
+		return cart.getCartItems().stream()
+			.map(item -> item.getPriceAtTime().multiply(BigDecimal.valueOf(item.getQuantity())))
+			.reduce(BigDecimal.ZERO, BigDecimal::add);
+	}
+
+	private static Cart cartWithLines(int lines) {
+		Random random = new Random(42);
+		List<CartItem> items = new ArrayList<>();
+		for (int i = 0; i < lines; i++) {
+			CartItem item = new CartItem();
+			item.setPriceAtTime(BigDecimal.valueOf(100 + random.nextInt(500_000), 2));
+			item.setQuantity(1 + random.nextInt(5));
+			items.add(item);
+		}
+		Cart cart = new Cart();
+		cart.setCartItems(items);
+		return cart;
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.E_commerceStore.WebApp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTests {
+
+	@Test
+	void roundsHalfUpToMinorUnits() {
+		assertEquals(109999, Money.of(new BigDecimal("1099.99")).amount());
+		assertEquals(1001, Money.of(new BigDecimal("10.005")).amount());
+		assertEquals(1000, Money.of(new BigDecimal("10.004")).amount());
+		assertEquals(-1001, Money.of(new BigDecimal("-10.005")).amount());
+	}
+
+	@Test
+	void usesTheCurrencyExponent() {
+		assertEquals(1234, Money.of(new BigDecimal("1234.4"), "JPY").amount());
+		assertEquals(1235, Money.of(new BigDecimal("1234.5"), "jpy").amount());
+		assertEquals(1234567, Money.of(new BigDecimal("1234.567"), "KWD").amount());
+		assertEquals(new BigDecimal("12.345"), Money.toBigDecimal(12345, "KWD"));
+		assertEquals(new BigDecimal("12.34"), Money.ofMinor(1234, "THB").toBigDecimal());
+	}
+
+	@Test
+	void normalizesAndRequiresCurrency() {
+		assertEquals("USD", Money.ofMinor(1, "usd").currency());
+		assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(1, " "));
+		assertThrows(IllegalArgumentException.class, () -> Money.of(BigDecimal.ONE, "XYZ"));
+	}
+
+	@Test
+	void arithmeticStaysInMinorUnits() {
+		Money price = Money.of(new BigDecimal("0.10"));
+		Money total = Money.zero(Money.DEFAULT_CURRENCY);
+		for (int i = 0; i < 10; i++) {
+			total = total.plus(price);
+		}
+		assertEquals(Money.of(BigDecimal.ONE), total);
+		assertEquals(Money.ofMinor(300, "THB"), price.times(30));
+		assertEquals(0, Money.ofMinor(300, "THB").minus(price.times(30)).amount());
+		assertEquals("1.00 THB", total.toString());
+	}
+
+	@Test
+	void rejectsMixedCurrencies() {
+		assertThrows(IllegalArgumentException.class,
+			() -> Money.ofMinor(100, "THB").plus(Money.ofMinor(100, "USD")));
+		assertThrows(IllegalArgumentException.class,
+			() -> Money.ofMinor(100, "THB").compareTo(Money.ofMinor(100, "USD")));
+	}
+
+	@Test
+	void overflowIsAnError() {
+		assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE, "THB").times(2));
+		assertThrows(ArithmeticException.class,
+			() -> Money.ofMinor(Long.MAX_VALUE, "THB").plus(Money.ofMinor(1, "THB")));
+	}
+
+	@Test
+	void nullMajorAmountIsZero() {
+		assertEquals(0, Money.minorUnits(null));
+	}
+}
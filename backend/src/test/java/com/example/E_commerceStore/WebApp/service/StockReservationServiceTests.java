@@ -0,0 +1,210 @@
+package com.example.E_commerceStore.WebApp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockReservationServiceTests {
+
+	private static final Long ALICE = 1L;
+	private static final Long BOB = 2L;
+	private static final Long PRODUCT = 10L;
+
+	private StockReservationService reservations;
+
+	@BeforeEach
+	void setUp() {
+		reservations = new StockReservationService();
+		ReflectionTestUtils.setField(reservations, "ttlMinutes", 15L);
+		ReflectionTestUtils.setField(reservations, "wheelTickMillis", 1000L);
+		ReflectionTestUtils.setField(reservations, "wheelSize", 64);
+		reservations.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		reservations.shutdown();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void holdsAreSubtractedFromOtherUsersAvailability() {
+		assertTrue(reservations.hold(ALICE, PRODUCT, 3, 5));
+
+		assertEquals(2, reservations.getAvailable(PRODUCT, 5));
+		assertEquals(5, reservations.getAvailableFor(ALICE, PRODUCT, 5));
+		assertEquals(2, reservations.getAvailableFor(BOB, PRODUCT, 5));
+		assertFalse(reservations.hold(BOB, PRODUCT, 3, 5));
+		assertTrue(reservations.hold(BOB, PRODUCT, 2, 5));
+		assertEquals(5, reservations.getHeldQuantity(PRODUCT));
+	}
+
+	@Test
+	void holdReplacesThePreviousQuantity() {
+		assertTrue(reservations.hold(ALICE, PRODUCT, 4, 5));
+		assertTrue(reservations.hold(ALICE, PRODUCT, 1, 5));
+
+		assertEquals(1, reservations.getHeldQuantity(PRODUCT));
+		assertEquals(1, reservations.getHeldQuantity(ALICE, PRODUCT));
+	}
+
+	@Test
+	void emptyLedgersAreDropped() {
+		reservations.hold(ALICE, PRODUCT, 2, 5);
+		reservations.hold(ALICE, 11L, 1, 5);
+		assertEquals(2, reservations.getLedgerCount());
+
+		reservations.release(ALICE, PRODUCT);
+		assertEquals(1, reservations.getLedgerCount());
+
+		reservations.releaseAll(ALICE);
+		assertEquals(0, reservations.getLedgerCount());
+		assertEquals(5, reservations.getAvailable(PRODUCT, 5));
+	}
+
+	@Test
+	void growingHoldIsUndoneOnRollback() {
+		reservations.hold(ALICE, PRODUCT, 1, 5);
+		TransactionSynchronizationManager.initSynchronization();
+
+		assertTrue(reservations.holdInTransaction(ALICE, PRODUCT, 4, 5));
+		assertEquals(4, reservations.getHeldQuantity(PRODUCT));
+
+		complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+		assertEquals(1, reservations.getHeldQuantity(PRODUCT));
+	}
+
+	@Test
+	void shrinkingHoldWaitsForCommit() {
+		reservations.hold(ALICE, PRODUCT, 4, 5);
+		TransactionSynchronizationManager.initSynchronization();
+
+		assertTrue(reservations.holdInTransaction(ALICE, PRODUCT, 1, 5));
+		assertEquals(4, reservations.getHeldQuantity(PRODUCT));
+
+		complete(TransactionSynchronization.STATUS_COMMITTED);
+		assertEquals(1, reservations.getHeldQuantity(PRODUCT));
+	}
+
+	@Test
+	void releaseIsKeptWhenTheCartChangeRollsBack() {
+		reservations.hold(ALICE, PRODUCT, 3, 5);
+		TransactionSynchronizationManager.initSynchronization();
+
+		reservations.releaseAllInTransaction(ALICE);
+		complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		assertEquals(3, reservations.getHeldQuantity(PRODUCT));
+		assertEquals(2, reservations.getAvailableFor(BOB, PRODUCT, 5));
+	}
+
+	@Test
+	void concurrentHoldsNeverOversellAHotProduct() throws Exception {
+		int stock = 100;
+		AtomicInteger granted = new AtomicInteger();
+
+		runConcurrently(16, 25, (thread, i) -> {
+			long userId = thread * 1000L + i;
+			if (reservations.hold(userId, PRODUCT, 1, stock)) {
+				granted.incrementAndGet();
+			}
+		});
+
+		assertEquals(stock, granted.get());
+		assertEquals(stock, reservations.getHeldQuantity(PRODUCT));
+		assertEquals(0, reservations.getAvailable(PRODUCT, stock));
+	}
+
+	@Test
+	void concurrentCheckoutsOnAHotProductKeepStockConsistent() throws Exception {
+		int initialStock = 500;
+		// products.stock; the conditional decrement mirrors UPDATE ... SET stock = stock - ? WHERE stock >= ?
+		AtomicInteger stock = new AtomicInteger(initialStock);
+		AtomicInteger sold = new AtomicInteger();
+		AtomicInteger checkouts = new AtomicInteger();
+
+		long start = System.nanoTime();
+		runConcurrently(16, 200, (thread, i) -> {
+			long userId = thread * 1000L + i;
+			int quantity = 1 + ThreadLocalRandom.current().nextInt(3);
+			if (!reservations.hold(userId, PRODUCT, quantity, stock.get())) {
+				return;
+			}
+			int current;
+			do {
+				current = stock.get();
+			} while (current >= quantity && !stock.compareAndSet(current, current - quantity));
+			if (current >= quantity) {
+				sold.addAndGet(quantity);
+				checkouts.incrementAndGet();
+			}
+			reservations.convert(userId, List.of(PRODUCT));
+		});
+		long elapsedNanos = System.nanoTime() - start;
+
+		assertTrue(stock.get() >= 0);
+		assertEquals(initialStock - sold.get(), stock.get());
+		assertEquals(0, reservations.getHeldQuantity(PRODUCT));
+		assertEquals(0, reservations.getLedgerCount());
+		System.out.printf("[StockReservationServiceTests] %d checkouts on one product in %d ms (%.0f/s)%n",
+			checkouts.get(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), checkouts.get() * 1e9 / elapsedNanos);
+	}
+
+	private interface Step {
+		void run(int thread, int iteration);
+	}
+
+	// Start all threads together so they contend on the same ledger
+	private static void runConcurrently(int threads, int iterations, Step step) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < iterations; i++) {
+						step.run(thread, i);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Play the end of a transaction the way the transaction manager does
+	private static void complete(int status) {
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+		if (status == TransactionSynchronization.STATUS_COMMITTED) {
+			synchronizations.forEach(TransactionSynchronization::afterCommit);
+		}
+		synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+	}
+}
@@ -0,0 +1,56 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickTests {
+
+	@Test
+	void findsOverlappingPatterns() {
+		AhoCorasick matcher = new AhoCorasick(List.of("he", "she", "his", "hers"));
+
+		assertEquals(List.of(
+			new AhoCorasick.Match("she", 1, 4),
+			new AhoCorasick.Match("he", 2, 4),
+			new AhoCorasick.Match("hers", 2, 6)),
+			matcher.findAll("ushers"));
+	}
+
+	@Test
+	void findsPatternsNestedInsideEachOther() {
+		AhoCorasick matcher = new AhoCorasick(List.of("a", "aa", "aaa"));
+
+		// ที่ตำแหน่งจบเดียวกัน pattern ที่ยาวกว่ามาก่อน
+		assertEquals(List.of(
+			new AhoCorasick.Match("a", 0, 1),
+			new AhoCorasick.Match("aa", 0, 2),
+			new AhoCorasick.Match("a", 1, 2),
+			new AhoCorasick.Match("aaa", 0, 3),
+			new AhoCorasick.Match("aa", 1, 3),
+			new AhoCorasick.Match("a", 2, 3)),
+			matcher.findAll("aaa"));
+	}
+
+	@Test
+	void followsFailureLinksAcrossPartialMatches() {
+		AhoCorasick matcher = new AhoCorasick(List.of("abcd", "bce"));
+
+		assertEquals(List.of(new AhoCorasick.Match("bce", 2, 5)), matcher.findAll("abbce"));
+		assertEquals(List.of(new AhoCorasick.Match("bce", 1, 4)), matcher.findAll("abce"));
+	}
+
+	@Test
+	void ignoresEmptyAndDuplicatePatterns() {
+		AhoCorasick matcher = new AhoCorasick(Arrays.asList("spam", "", null, "spam"));
+
+		assertEquals(1, matcher.size());
+		assertEquals(2, matcher.findAll("spamspam").size());
+		assertTrue(matcher.findAll("spa m").isEmpty());
+		assertTrue(new AhoCorasick(List.of()).findAll("anything").isEmpty());
+	}
+}
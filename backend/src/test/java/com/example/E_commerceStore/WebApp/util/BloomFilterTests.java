@@ -0,0 +1,51 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+	@Test
+	void neverMissesAnInsertedKey() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		for (long key = 1; key <= 10_000; key++) {
+			filter.put(key * 7919);
+		}
+		for (long key = 1; key <= 10_000; key++) {
+			assertTrue(filter.mightContain(key * 7919));
+		}
+	}
+
+	@Test
+	void falsePositiveRateStaysNearTheTarget() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		for (long key = 0; key < 10_000; key++) {
+			filter.put(key);
+		}
+		int falsePositives = 0;
+		int probes = 100_000;
+		for (long key = 1_000_000; key < 1_000_000 + probes; key++) {
+			if (filter.mightContain(key)) {
+				falsePositives++;
+			}
+		}
+		// เป้า 1% เผื่อไว้สามเท่า
+		assertTrue(falsePositives < probes * 0.03);
+	}
+
+	@Test
+	void emptyFilterContainsNothing() {
+		BloomFilter filter = new BloomFilter(100, 0.01);
+		assertFalse(filter.mightContain(42));
+	}
+
+	@Test
+	void rejectsInvalidSizing() {
+		assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+		assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+		assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+	}
+}
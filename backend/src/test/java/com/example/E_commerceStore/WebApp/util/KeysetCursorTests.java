@@ -0,0 +1,34 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeysetCursorTests {
+
+	@Test
+	void encodeDecodeRoundTrips() {
+		KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2025, 3, 14, 15, 9, 26, 535_897_000), 9_007_199_254_740_993L);
+		assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+	}
+
+	@Test
+	void startRoundTrips() {
+		assertEquals(KeysetCursor.START, KeysetCursor.decode(KeysetCursor.START.encode()));
+	}
+
+	@Test
+	void missingCursorMeansFirstPage() {
+		assertEquals(KeysetCursor.START, KeysetCursor.decode(null));
+		assertEquals(KeysetCursor.START, KeysetCursor.decode(" "));
+	}
+
+	@Test
+	void rejectsMalformedCursor() {
+		assertThrows(RuntimeException.class, () -> KeysetCursor.decode("not-a-cursor"));
+		assertThrows(RuntimeException.class, () -> KeysetCursor.decode("%%%"));
+	}
+}
@@ -0,0 +1,58 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LruCacheTests {
+
+	@Test
+	void evictsTheLeastRecentlyUsedEntry() {
+		LruCache<String, Integer> cache = new LruCache<>(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("c", 3);
+
+		assertNull(cache.get("a"));
+		assertEquals(2, cache.get("b"));
+		assertEquals(3, cache.get("c"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	void getRefreshesRecency() {
+		LruCache<String, Integer> cache = new LruCache<>(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.get("a");
+		cache.put("c", 3);
+
+		assertEquals(1, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(3, cache.get("c"));
+	}
+
+	@Test
+	void removesMatchingValues() {
+		LruCache<String, Integer> cache = new LruCache<>(10);
+		for (int i = 0; i < 6; i++) {
+			cache.put("k" + i, i);
+		}
+		cache.removeIf(value -> value % 2 == 0);
+		cache.remove("k1");
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("k0"));
+		assertEquals(3, cache.get("k3"));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void requiresPositiveCapacity() {
+		assertThrows(IllegalArgumentException.class, () -> new LruCache<String, Integer>(0));
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTests {
+
+	@Test
+	void idsIncreaseMonotonically() {
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+		long previous = generator.nextId();
+		for (int i = 0; i < 200_000; i++) {
+			long id = generator.nextId();
+			assertTrue(id > previous);
+			previous = id;
+		}
+	}
+
+	@Test
+	void idsAreUniqueAcrossThreads() throws Exception {
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+		int threads = 8;
+		int perThread = 50_000;
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (int t = 0; t < threads; t++) {
+				pool.execute(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					for (int i = 0; i < perThread; i++) {
+						ids.add(generator.nextId());
+					}
+				});
+			}
+			start.countDown();
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(threads * perThread, ids.size());
+	}
+
+	@Test
+	void encodesNodeIdAndTimestamp() {
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1023);
+		long before = System.currentTimeMillis();
+		long id = generator.nextId();
+		long after = System.currentTimeMillis();
+
+		assertEquals(1023, (id >>> 12) & 1023);
+		long timestamp = SnowflakeIdGenerator.extractTimestamp(id);
+		assertTrue(timestamp >= before && timestamp <= after);
+	}
+
+	@Test
+	void rejectsNodeIdOutOfRange() {
+		assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+		assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+		assertEquals(0, new SnowflakeIdGenerator(0).getNodeId());
+	}
+}
@@ -0,0 +1,60 @@
+package com.example.E_commerceStore.WebApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTests {
+
+	@Test
+	void runsTaskAfterDelay() throws Exception {
+		try (TimerWheel wheel = new TimerWheel("test-wheel", Duration.ofMillis(10), 8)) {
+			CountDownLatch fired = new CountDownLatch(1);
+			long start = System.nanoTime();
+			wheel.schedule(fired::countDown, Duration.ofMillis(50));
+
+			assertTrue(fired.await(2, TimeUnit.SECONDS));
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		}
+	}
+
+	@Test
+	void delaysLongerThanOneRotationWaitForTheirRound() throws Exception {
+		// 4 ช่อง x 10ms = 40ms ต่อรอบ, 150ms ต้องวนหลายรอบก่อนทำงาน
+		try (TimerWheel wheel = new TimerWheel("test-wheel", Duration.ofMillis(10), 4)) {
+			CountDownLatch fired = new CountDownLatch(1);
+			long start = System.nanoTime();
+			wheel.schedule(fired::countDown, Duration.ofMillis(150));
+
+			assertTrue(fired.await(2, TimeUnit.SECONDS));
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+		}
+	}
+
+	@Test
+	void cancelledTaskNeverRuns() throws Exception {
+		try (TimerWheel wheel = new TimerWheel("test-wheel", Duration.ofMillis(10), 8)) {
+			AtomicBoolean ran = new AtomicBoolean();
+			CountDownLatch later = new CountDownLatch(1);
+			TimerWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), Duration.ofMillis(30));
+			wheel.schedule(later::countDown, Duration.ofMillis(100));
+			timeout.cancel();
+
+			assertTrue(timeout.isCancelled());
+			assertTrue(later.await(2, TimeUnit.SECONDS));
+			assertFalse(ran.get());
+		}
+	}
+
+	@Test
+	void rejectsNonPositiveTick() {
+		assertThrows(IllegalArgumentException.class, () -> new TimerWheel("test-wheel", Duration.ZERO, 8));
+	}
+}
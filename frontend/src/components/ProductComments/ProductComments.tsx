@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import './ProductComments.css';
 
 interface User {
@@ -20,6 +20,7 @@ interface Comment {
   content: string;
   rating?: number;
   parentComment?: Comment;
+  parentId?: number;
   replies?: Comment[];
   createdAt: string;
   updatedAt: string;
@@ -42,6 +43,22 @@ interface CommentStats {
   oneStarPercentage: number;
 }
 
+// Payload of the live stream's comment-created / reply-created events
+interface CommentStreamEvent {
+  comment: Comment;
+  stats: CommentStats;
+}
+
+// Put a pushed reply under its parent (at any depth); unchanged if the parent is not on this page
+const insertReply = (list: Comment[], reply: Comment): Comment[] =>
+  list.map((comment) => {
+    if (comment.id === reply.parentId) {
+      const replies = comment.replies ?? [];
+      return replies.some((r) => r.id === reply.id) ? comment : { ...comment, replies: [...replies, reply] };
+    }
+    return comment.replies?.length ? { ...comment, replies: insertReply(comment.replies, reply) } : comment;
+  });
+
 interface ProductCommentsProps {
   productId: number;
   isLoggedIn: boolean;
@@ -77,6 +94,37 @@ const ProductComments: React.FC<ProductCommentsProps> = ({
     // eslint-disable-next-line react-hooks/exhaustive-deps
   }, [productId, currentPage, filterByRating, isLoggedIn]);
 
+  // Page and filter for the stream handlers, so changing them does not reopen the stream
+  const viewRef = useRef({ currentPage, filterByRating });
+  viewRef.current = { currentPage, filterByRating };
+
+  // Live reviews: apply the pushed comment and stats instead of refetching
+  useEffect(() => {
+    const source = new EventSource(`http://localhost:8082/api/comments/product/${productId}/stream`, {
+      withCredentials: true
+    });
+    const handleNewComment = (event: MessageEvent) => {
+      const { comment, stats: pushedStats } = JSON.parse(event.data) as CommentStreamEvent;
+      setStats(pushedStats);
+      const { currentPage: page, filterByRating: rating } = viewRef.current;
+      // newest first: a new review only shows up on the first page (or in its rating filter)
+      if (rating ? comment.rating !== rating : page !== 0) {
+        return;
+      }
+      setComments((previous) => previous.some((c) => c.id === comment.id)
+        ? previous
+        : [comment, ...previous].slice(0, rating ? undefined : 10));
+    };
+    const handleNewReply = (event: MessageEvent) => {
+      const { comment: reply, stats: pushedStats } = JSON.parse(event.data) as CommentStreamEvent;
+      setStats(pushedStats);
+      setComments((previous) => insertReply(previous, reply));
+    };
+    source.addEventListener('comment-created', handleNewComment);
+    source.addEventListener('reply-created', handleNewReply);
+    return () => source.close();
+  }, [productId]);
+
   const loadComments = async () => {
     setLoading(true);
     try {
@@ -93,18 +141,17 @@ const ProductComments: React.FC<ProductCommentsProps> = ({
       if (response.ok) {
         const data = await response.json();
         
+        // Replies come nested in each comment's "replies"
         if (filterByRating) {
           // Make sure data is an array
           const commentsArray = Array.isArray(data) ? data : [];
           setComments(commentsArray);
           setTotalPages(1);
-          await loadRepliesForComments(commentsArray);
         } else {
           // Make sure data.content is an array
           const commentsArray = Array.isArray(data.content) ? data.content : [];
           setComments(commentsArray);
           setTotalPages(data.totalPages || 0);
-          await loadRepliesForComments(commentsArray);
         }
       }
     } catch (error) {
@@ -117,38 +164,6 @@ const ProductComments: React.FC<ProductCommentsProps> = ({
     }
   };
 
-  const loadRepliesForComments = async (commentsList: Comment[]) => {
-    // Ensure commentsList is an array
-    if (!Array.isArray(commentsList) || commentsList.length === 0) {
-      return;
-    }
-
-    try {
-      const commentsWithReplies = await Promise.all(
-        commentsList.map(async (comment) => {
-          try {
-            const response = await fetch(`http://localhost:8082/api/comments/${comment.id}/replies`, {
-              credentials: 'include'
-            });
-            if (response.ok) {
-              const replies = await response.json();
-              // Ensure replies is an array
-              const repliesArray = Array.isArray(replies) ? replies : [];
-              return { ...comment, replies: repliesArray };
-            }
-          } catch (error) {
-            console.error('Error loading replies:', error);
-          }
-          return comment;
-        })
-      );
-      
-      setComments(commentsWithReplies);
-    } catch (error) {
-      console.error('Error in loadRepliesForComments:', error);
-    }
-  };
-
   const loadStats = async () => {
     try {
   const response = await fetch(`http://localhost:8082/api/comments/product/${productId}/stats`, {